@@ -0,0 +1,238 @@
+package membership.bench;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.instance.HazelcastInstanceProxy;
+import com.hazelcast.internal.metrics.MetricsRegistry;
+import com.hazelcast.nio.serialization.DataSerializableFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// The membership classes live in the default package, which cannot be imported from a named package (and JMH refuses
+// to generate benchmarks for default package classes), so the benchmarks reach them reflectively through this class.
+final class Fixtures {
+
+    private Fixtures() { }
+
+    static DataSerializableFactory factory() {
+
+        return (DataSerializableFactory) newInstance("StateEntryDataSerializableFactory");
+    }
+
+    // The application's configuration, except that members discover each other over loopback TCP so that
+    // benchmarks do not depend on multicast
+    static Config config() {
+
+        Config config;
+
+        try {
+
+            config = (Config) invoke(null, method("MembershipManager", "newConfig"));
+
+        } catch (Throwable t) {
+
+            throw new IllegalStateException(t);
+        }
+
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        // The per connection byte counters read by bytesWritten are only registered from the INFO level
+        config.setProperty("hazelcast.diagnostics.metric.level", "INFO");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+
+        return config;
+    }
+
+    static HazelcastInstance[] startCluster(int size) {
+
+        HazelcastInstance[] instances = new HazelcastInstance[size];
+
+        for (int i = 0; i < size; i++) {
+
+            instances[i] = Hazelcast.newHazelcastInstance(config());
+        }
+
+        return instances;
+    }
+
+    // The bytes the instances have written to all of their TCP connections, from Hazelcast's connection metrics
+    static long bytesWritten(HazelcastInstance... instances) {
+
+        long total = 0;
+
+        for (HazelcastInstance instance : instances) {
+
+            MetricsRegistry metricsRegistry = ((HazelcastInstanceProxy) instance).getOriginal().node.getNodeEngine()
+                    .getMetricsRegistry();
+
+            for (String name : metricsRegistry.getNames()) {
+
+                if (name.startsWith("tcp.connection[") && name.endsWith("].out.bytesWritten")) {
+
+                    total += metricsRegistry.newLongGauge(name).read();
+                }
+            }
+        }
+
+        return total;
+    }
+
+    // Register size members in the registry and clusterState, all with the given status, in batches
+    static void populate(HazelcastInstance instance, int size, String status) {
+
+        IMap<Object, Object> mapClusterState = instance.getMap("clusterState");
+        IMap<Object, Object> mapRegistry = instance.getMap("registry");
+
+        Map<Object, Object> states = new HashMap<>();
+        Map<Object, Object> names = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+
+            String name = "member" + i;
+            Object key = keyOf(newMember(name));
+
+            states.put(key, newStateEntry(status, System.currentTimeMillis()));
+            names.put(name, key);
+
+            if (states.size() == 1000 || i == size - 1) {
+
+                mapClusterState.putAll(states);
+                mapRegistry.putAll(names);
+                states.clear();
+                names.clear();
+            }
+        }
+    }
+
+    static Object newClusterView(HazelcastInstance instance) {
+
+        Object clusterView = newInstance("ClusterView", new Class<?>[] {HazelcastInstance.class}, instance);
+
+        try {
+
+            invoke(clusterView, method("ClusterView", "start"));
+
+        } catch (Throwable t) {
+
+            throw new IllegalStateException(t);
+        }
+
+        return clusterView;
+    }
+
+    static Runnable newLeaderService(HazelcastInstance instance, Object member, Object clusterView) {
+
+        return (Runnable) newInstance("LeaderService", new Class<?>[] {HazelcastInstance.class, type("Member"),
+                type("ClusterView")}, instance, member, clusterView);
+    }
+
+    static Object newManager(HazelcastInstance instance) {
+
+        return newInstance("MembershipManager", new Class<?>[] {HazelcastInstance.class}, instance);
+    }
+
+    static Object newTimerWheel(Executor executor) {
+
+        return newInstance("TimerWheel", new Class<?>[] {String.class, Executor.class}, "benchmark-timers", executor);
+    }
+
+    // A handle for a method of any visibility
+    static MethodHandle method(String className, String name, Class<?>... parameterTypes) {
+
+        try {
+
+            Method method = type(className).getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+
+            return MethodHandles.lookup().unreflect(method);
+
+        } catch (ReflectiveOperationException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Object target, MethodHandle method) throws Throwable {
+
+        return target == null ? method.invoke() : method.invoke(target);
+    }
+
+    static Object newMember(String name) {
+
+        return newInstance("Member", new Class<?>[] {String.class}, name);
+    }
+
+    static Object keyOf(Object member) {
+
+        try {
+
+            return member.getClass().getMethod("getKey").invoke(member);
+
+        } catch (ReflectiveOperationException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Object newStateEntry(String status, long heartbeat) {
+
+        return newInstance("StateEntry", new Class<?>[] {type("ClusterStatus"), long.class},
+                enumValue("ClusterStatus", status), heartbeat);
+    }
+
+    static Runnable newHeartbeatService(HazelcastInstance instance, Object member) {
+
+        return (Runnable) newInstance("HeartbeatService", new Class<?>[] {HazelcastInstance.class, type("Member")},
+                instance, member);
+    }
+
+    static Object newInstance(String className) {
+
+        return newInstance(className, new Class<?>[0]);
+    }
+
+    static Object newInstance(String className, Class<?>[] parameterTypes, Object... args) {
+
+        try {
+
+            Constructor<?> constructor = type(className).getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+
+            return constructor.newInstance(args);
+
+        } catch (ReflectiveOperationException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Class<?> type(String className) {
+
+        try {
+
+            return Class.forName(className);
+
+        } catch (ClassNotFoundException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object enumValue(String className, String value) {
+
+        return Enum.valueOf((Class<Enum>) type(className), value);
+    }
+}
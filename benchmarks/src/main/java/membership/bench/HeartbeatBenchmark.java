@@ -0,0 +1,98 @@
+package membership.bench;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+// Compares the original heartbeat (get the StateEntry, update it locally, set it back) with the single round trip
+// entry processor used by HeartbeatService. The key is always owned by the other member so that every operation
+// crosses the network. After each iteration, the bytes both members wrote to their TCP connections during it are
+// divided by the heartbeats sent, which measures the requests, responses and backups as framed on the wire, along
+// with the little background traffic of the cluster itself.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeartbeatBenchmark {
+
+    private HazelcastInstance[] instances;
+    private IMap<Object, Object> mapClusterState;
+    private Object key;
+    private Object state;
+    private Runnable heartbeatService;
+    private MethodHandle updateHeartbeat;
+
+    private long heartbeats;
+    private long bytesWrittenBefore;
+
+    @Setup
+    public void setup() throws Exception {
+
+        this.instances = Fixtures.startCluster(2);
+        this.mapClusterState = this.instances[0].getMap("clusterState");
+
+        // Pick a member whose clusterState entry is owned by the remote instance
+        Object member;
+        do {
+
+            member = Fixtures.newMember("member1");
+            this.key = Fixtures.keyOf(member);
+
+        } while (this.instances[0].getPartitionService().getPartition(this.key).getOwner().localMember());
+
+        this.state = Fixtures.newStateEntry("ONLINE", 0L);
+        this.mapClusterState.set(this.key, this.state);
+
+        this.heartbeatService = Fixtures.newHeartbeatService(this.instances[0], member);
+        this.updateHeartbeat = MethodHandles.lookup().findVirtual(Fixtures.type("StateEntry"), "updateHeartbeat",
+                MethodType.methodType(Fixtures.type("StateEntry"), long.class));
+    }
+
+    @Setup(Level.Iteration)
+    public void startCounting() {
+
+        this.heartbeats = 0;
+        this.bytesWrittenBefore = Fixtures.bytesWritten(this.instances);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportBytes() {
+
+        long bytesWritten = Fixtures.bytesWritten(this.instances) - this.bytesWrittenBefore;
+        long perHeartbeat = this.heartbeats == 0 ? 0 : bytesWritten / this.heartbeats;
+
+        System.out.println("\nBytes on the wire per heartbeat: " + perHeartbeat + " (" + bytesWritten + " bytes over "
+                + this.heartbeats + " heartbeats)");
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        Hazelcast.shutdownAll();
+    }
+
+    @Benchmark
+    public void getAndSet() throws Throwable {
+
+        Object current = this.mapClusterState.get(this.key);
+        this.mapClusterState.set(this.key, this.updateHeartbeat.invoke(current, System.currentTimeMillis()));
+
+        this.heartbeats++;
+    }
+
+    @Benchmark
+    public void entryProcessor() {
+
+        this.heartbeatService.run();
+
+        this.heartbeats++;
+    }
+}
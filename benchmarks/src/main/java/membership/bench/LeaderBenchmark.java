@@ -0,0 +1,76 @@
+package membership.bench;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+// The leader's per-tick work against clusters of increasing size, one of them the leader itself. The timeout failure
+// detector is configured with a timeout longer than the run, so every invocation does the same work: deciding that no
+// member needs a transition.
+// One member is left JOINING so maybePrintMessage never prints; how much of the view it scans before finding that
+// member depends on iteration order.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LeaderBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int members;
+
+    private HazelcastInstance instance;
+    private Runnable leaderService;
+    private MethodHandle maybeChangeStatus;
+    private MethodHandle maybePrintMessage;
+
+    @Setup
+    public void setup() {
+
+        System.setProperty("membership.detection", "leader");
+        System.setProperty("membership.failureDetector", "timeout");
+        System.setProperty("membership.node.timeout.ms", String.valueOf(TimeUnit.HOURS.toMillis(1)));
+
+        this.instance = Fixtures.startCluster(1)[0];
+
+        Object leader = Fixtures.newMember("leader");
+        IMap<Object, Object> mapClusterState = this.instance.getMap("clusterState");
+
+        // A lease is only held by a member in the view
+        mapClusterState.set(Fixtures.keyOf(leader), Fixtures.newStateEntry("ONLINE", System.currentTimeMillis() / 1000L));
+        Fixtures.populate(this.instance, this.members - 2, "ONLINE");
+        Fixtures.populate(this.instance, 1, "JOINING");
+
+        Object clusterView = Fixtures.newClusterView(this.instance);
+        this.leaderService = Fixtures.newLeaderService(this.instance, leader, clusterView);
+
+        // Become leader, and start watching every member's heartbeats
+        this.leaderService.run();
+
+        this.maybeChangeStatus = Fixtures.method("LeaderService", "maybeChangeStatus");
+        this.maybePrintMessage = Fixtures.method("LeaderService", "maybePrintMessage");
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        Hazelcast.shutdownAll();
+    }
+
+    @Benchmark
+    public void maybeChangeStatus() throws Throwable {
+
+        this.maybeChangeStatus.invoke(this.leaderService);
+    }
+
+    @Benchmark
+    public void maybePrintMessage() throws Throwable {
+
+        this.maybePrintMessage.invoke(this.leaderService);
+    }
+}
@@ -0,0 +1,73 @@
+package membership.bench;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+// Routing a key to an ONLINE member on the consistent-hash ring, from several threads at once, at cluster sizes up to
+// 10,000 members. Run with -prof gc to check that lookups do not allocate.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RoutingBenchmark {
+
+    private static final MethodHandle ROUTE_HASH = Fixtures.method("RoutingTable", "route", long.class);
+    private static final MethodHandle ROUTE_KEY = Fixtures.method("RoutingTable", "route", Object.class);
+
+    @Param({"10", "1000", "10000"})
+    public int members;
+
+    private HazelcastInstance instance;
+    private Object routingTable;
+
+    private final String[] keys = new String[1024];
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        long next;
+    }
+
+    @Setup
+    public void setup() throws Throwable {
+
+        this.instance = Fixtures.startCluster(1)[0];
+
+        Fixtures.populate(this.instance, this.members, "ONLINE");
+
+        Object clusterView = Fixtures.newClusterView(this.instance);
+
+        this.routingTable = Fixtures.newInstance("RoutingTable", new Class<?>[] {Fixtures.type("MembershipView")}, clusterView);
+        Fixtures.method("RoutingTable", "start").invoke(this.routingTable);
+
+        for (int i = 0; i < this.keys.length; i++) {
+
+            this.keys[i] = "customer-" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        Hazelcast.shutdownAll();
+    }
+
+    @Benchmark
+    public Object routeHash(Cursor cursor) throws Throwable {
+
+        return ROUTE_HASH.invoke(this.routingTable, cursor.next++);
+    }
+
+    @Benchmark
+    public Object routeKey(Cursor cursor) throws Throwable {
+
+        return ROUTE_KEY.invoke(this.routingTable, (Object) this.keys[(int) (cursor.next++ & (this.keys.length - 1))]);
+    }
+}
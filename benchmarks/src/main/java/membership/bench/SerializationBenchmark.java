@@ -0,0 +1,64 @@
+package membership.bench;
+
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Serialization and deserialization of a clusterState entry, which happens on every heartbeat, every map event and
+// every backup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private InternalSerializationService serializationService;
+    private Object state;
+    private Object key;
+    private Data stateData;
+    private Data keyData;
+
+    @Setup
+    public void setup() {
+
+        this.serializationService = new DefaultSerializationServiceBuilder()
+                .addDataSerializableFactory(1, Fixtures.factory()).build();
+
+        this.state = Fixtures.newStateEntry("ONLINE", System.currentTimeMillis());
+        this.key = Fixtures.keyOf(Fixtures.newMember("member1"));
+        this.stateData = this.serializationService.toData(this.state);
+        this.keyData = this.serializationService.toData(this.key);
+
+        System.out.println("\nSerialized sizes: StateEntry = " + this.stateData.totalSize()
+                + " bytes, MemberKey = " + this.keyData.totalSize() + " bytes");
+    }
+
+    @Benchmark
+    public Data serializeStateEntry() {
+
+        return this.serializationService.toData(this.state);
+    }
+
+    @Benchmark
+    public Object deserializeStateEntry() {
+
+        return this.serializationService.toObject(this.stateData);
+    }
+
+    @Benchmark
+    public Data serializeMemberKey() {
+
+        return this.serializationService.toData(this.key);
+    }
+
+    @Benchmark
+    public Object deserializeMemberKey() {
+
+        return this.serializationService.toObject(this.keyData);
+    }
+}
@@ -0,0 +1,81 @@
+package membership.bench;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+// Rendering the status table for clusters of increasing size, in one string against streaming it a page at a time
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StatusBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int members;
+
+    private HazelcastInstance instance;
+    private Object manager;
+    private MethodHandle status;
+    private MethodHandle streamStatus;
+    private Object format;
+    private Object order;
+    private Object attributes;
+
+    // Discards what is written, so only rendering and paging are measured
+    private final Writer out = new Writer() {
+
+        @Override
+        public void write(char[] buffer, int offset, int length) { }
+
+        @Override
+        public void flush() { }
+
+        @Override
+        public void close() { }
+    };
+
+    @Setup
+    public void setup() {
+
+        this.instance = Fixtures.startCluster(1)[0];
+
+        Fixtures.populate(this.instance, this.members, "ONLINE");
+
+        this.manager = Fixtures.newManager(this.instance);
+        this.status = Fixtures.method("MembershipManager", "status");
+        this.streamStatus = Fixtures.method("MembershipManager", "status", Writer.class, Fixtures.type("StatusStream$Format"),
+                Fixtures.type("MemberComparator$Order"), int.class, Fixtures.type("ClusterStatus"),
+                Fixtures.type("MemberAttributes"));
+
+        this.format = Fixtures.enumValue("StatusStream$Format", "TEXT");
+        this.order = Fixtures.enumValue("MemberComparator$Order", "UUID");
+        this.attributes = Fixtures.newInstance("MemberAttributes", new Class<?>[] {String.class, String.class, String.class},
+                null, null, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        Hazelcast.shutdownAll();
+    }
+
+    @Benchmark
+    public Object status() throws Throwable {
+
+        return this.status.invoke(this.manager);
+    }
+
+    @Benchmark
+    public Object streamStatus() throws Throwable {
+
+        return this.streamStatus.invoke(this.manager, this.out, this.format, this.order, Integer.MAX_VALUE, (Object) null,
+                this.attributes);
+    }
+}
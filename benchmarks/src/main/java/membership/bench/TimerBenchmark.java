@@ -0,0 +1,82 @@
+package membership.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Scheduling and cancelling a timer, as every suspicion and probe timeout does, with a backlog of pending timers
+// already queued. The timer wheel is compared with the ScheduledThreadPoolExecutor it replaced.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimerBenchmark {
+
+    private static final MethodHandle SCHEDULE = Fixtures.method("TimerWheel", "schedule", Runnable.class, long.class,
+            TimeUnit.class);
+    private static final MethodHandle CANCEL = Fixtures.method("TimerWheel$Timeout", "cancel");
+    private static final MethodHandle START = Fixtures.method("TimerWheel", "start");
+    private static final MethodHandle STOP = Fixtures.method("TimerWheel", "stop");
+
+    private static final Runnable TASK = () -> { };
+
+    @Param({"0", "10000", "100000"})
+    public int pending;
+
+    private ExecutorService taskExecutorService;
+    private Object wheel;
+    private ScheduledThreadPoolExecutor scheduledExecutorService;
+
+    private final List<Object> backlog = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Throwable {
+
+        this.taskExecutorService = Executors.newSingleThreadExecutor();
+        this.wheel = Fixtures.newTimerWheel(this.taskExecutorService);
+        START.invoke(this.wheel);
+
+        this.scheduledExecutorService = new ScheduledThreadPoolExecutor(1);
+        this.scheduledExecutorService.setRemoveOnCancelPolicy(true);
+
+        for (int i = 0; i < this.pending; i++) {
+
+            this.backlog.add(SCHEDULE.invoke(this.wheel, TASK, 1L, TimeUnit.HOURS));
+            this.backlog.add(this.scheduledExecutorService.schedule(TASK, 1L, TimeUnit.HOURS));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Throwable {
+
+        STOP.invoke(this.wheel);
+        this.taskExecutorService.shutdownNow();
+        this.scheduledExecutorService.shutdownNow();
+        this.backlog.clear();
+    }
+
+    @Benchmark
+    public Object timerWheel() throws Throwable {
+
+        Object timeout = SCHEDULE.invoke(this.wheel, TASK, 30L, TimeUnit.SECONDS);
+
+        return CANCEL.invoke(timeout);
+    }
+
+    @Benchmark
+    public Object scheduledExecutor() {
+
+        ScheduledFuture<?> future = this.scheduledExecutorService.schedule(TASK, 30L, TimeUnit.SECONDS);
+
+        return future.cancel(false);
+    }
+}
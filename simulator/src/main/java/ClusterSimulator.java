@@ -0,0 +1,625 @@
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.instance.HazelcastInstanceFactory;
+import com.hazelcast.nio.Address;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+// Runs many logical nodes in one JVM on a few Hazelcast members that find each other over loopback TCP, injects
+// crashes, pauses and partitions, and reports how long the cluster takes to notice. Nodes run on the same schedule as
+// real ones, so the numbers are wall clock times that a deployment would see.
+public class ClusterSimulator {
+
+    static class Args {
+
+        @Parameter(names = "--nodes", description = "Logical nodes to join")
+        public int nodes = 20;
+
+        @Parameter(names = "--hazelcast-members", description = "Hazelcast members the nodes are spread across")
+        public int hazelcastMembers = 4;
+
+        @Parameter(names = "--port", description = "First port of the Hazelcast members")
+        public int port = 5801;
+
+        @Parameter(names = "--crashes", description = "Nodes to crash, one at a time")
+        public int crashes = 2;
+
+        @Parameter(names = "--failovers", description = "Leaders to crash, one at a time")
+        public int failovers = 1;
+
+        @Parameter(names = "--pauses", description = "Nodes to pause, one at a time")
+        public int pauses = 1;
+
+        @Parameter(names = "--pause-seconds", description = "How long each pause lasts")
+        public int pauseSeconds = 40;
+
+        @Parameter(names = "--partitions", description = "Times to cut off a quarter of the Hazelcast members")
+        public int partitions = 1;
+
+        @Parameter(names = "--partition-seconds", description = "How long each partition lasts")
+        public int partitionSeconds = 60;
+
+        @Parameter(names = "--timeout-seconds", description = "How long to wait for the cluster to notice a fault")
+        public int timeoutSeconds = 180;
+
+        @Parameter(names = "--seed", description = "Seed for choosing which nodes to fault")
+        public long seed = 1L;
+
+        @Parameter(names = "--verbose", description = "Show Hazelcast logging")
+        public boolean verbose = false;
+
+        @Parameter(names = "--help", help = true)
+        public boolean help = false;
+    }
+
+    private final Args args;
+    private final Random random;
+
+    private final List<HazelcastInstance> instances = new ArrayList<>();
+    private final List<FirewallNodeContext> firewalls = new ArrayList<>();
+    private final List<SimulatedNode> nodes = new ArrayList<>();
+    private final Map<MemberKey, SimulatedNode> nodesByKey = new HashMap<>();
+
+    // Every node's ticks run off one wheel, on a pool that grows with the number of ticks in flight
+    private final ExecutorService taskExecutorService = Executors.newCachedThreadPool();
+    private final TimerWheel timers = new TimerWheel("simulator-timers", this.taskExecutorService);
+
+    // Faults are observed from the first Hazelcast member, which is never cut off by a partition
+    private ClusterView observer;
+
+    private final Latencies joinLatencies = new Latencies("Join finalization");
+    private final Latencies readinessLatencies = new Latencies("Cluster readiness");
+    private final Latencies offlineLatencies = new Latencies("OFFLINE detection");
+    private final Latencies failoverLatencies = new Latencies("Leader failover");
+    private final Latencies pauseLatencies = new Latencies("Pause to OFFLINE");
+    private final Latencies resumeLatencies = new Latencies("Resume to ONLINE");
+    private final Latencies partitionLatencies = new Latencies("Partition to OFFLINE");
+    private final Latencies healLatencies = new Latencies("Heal to ONLINE");
+    private final Latencies convergenceLatencies = new Latencies("Heal to one view");
+
+    ClusterSimulator(Args args) {
+
+        this.args = args;
+        this.random = new Random(args.seed);
+    }
+
+    public static void main(String[] argv) {
+
+        Args args = new Args();
+        JCommander commander = JCommander.newBuilder().addObject(args).programName("ClusterSimulator").build();
+
+        try {
+
+            commander.parse(argv);
+
+        } catch (ParameterException e) {
+
+            System.out.println(e.getMessage());
+            commander.usage();
+            System.exit(1);
+        }
+
+        if (args.help) {
+
+            commander.usage();
+            return;
+        }
+
+        ClusterSimulator simulator = new ClusterSimulator(args);
+
+        try {
+
+            simulator.run();
+
+        } finally {
+
+            simulator.shutdown();
+        }
+
+        System.exit(0);
+    }
+
+    void run() {
+
+        log("Starting " + this.args.hazelcastMembers + " Hazelcast members");
+        this.startInstances();
+
+        this.observer = new ClusterView(this.instances.get(0));
+        this.observer.start();
+
+        this.timers.start();
+        this.joinAll();
+
+        for (int i = 0; i < this.args.crashes; i++) {
+
+            this.crashNode(this.pickNode());
+        }
+
+        for (int i = 0; i < this.args.failovers; i++) {
+
+            this.crashLeader();
+        }
+
+        for (int i = 0; i < this.args.pauses; i++) {
+
+            this.pauseNode(this.pickNode());
+        }
+
+        for (int i = 0; i < this.args.partitions && this.args.hazelcastMembers > 1; i++) {
+
+            this.partition();
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-22s%6s%9s%9s%9s%9s%9s%9s", "Latency (ms)", "n", "min", "p50", "p90", "p99",
+                "max", "timeouts"));
+
+        for (Latencies latencies : Arrays.asList(this.joinLatencies, this.readinessLatencies, this.offlineLatencies,
+                this.failoverLatencies, this.pauseLatencies, this.resumeLatencies, this.partitionLatencies,
+                this.healLatencies, this.convergenceLatencies)) {
+
+            System.out.println(latencies);
+        }
+    }
+
+    void shutdown() {
+
+        for (SimulatedNode node : this.nodes) {
+
+            if (!node.isCrashed()) {
+
+                node.crash();
+            }
+        }
+
+        this.timers.stop();
+        this.taskExecutorService.shutdown();
+
+        for (HazelcastInstance instance : this.instances) {
+
+            instance.getLifecycleService().terminate();
+        }
+    }
+
+    /******************************************************************************************************************/
+
+    private void startInstances() {
+
+        for (int i = 0; i < this.args.hazelcastMembers; i++) {
+
+            FirewallNodeContext firewall = new FirewallNodeContext();
+
+            this.firewalls.add(firewall);
+            HazelcastInstance instance = HazelcastInstanceFactory.newHazelcastInstance(this.newConfig(), "simulator-" + i, firewall);
+
+            this.instances.add(instance);
+            new SplitBrainHealer(instance).start();
+        }
+    }
+
+    // The application's configuration on its own group and ports, with fewer threads per member and faster failure
+    // detection and split-brain merging between Hazelcast members than the defaults
+    private Config newConfig() {
+
+        Config config = MembershipManager.newConfig();
+
+        config.getGroupConfig().setName("membership-simulator");
+        config.getNetworkConfig().setPort(this.args.port).setPortAutoIncrement(true);
+
+        config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true);
+
+        for (int i = 0; i < this.args.hazelcastMembers; i++) {
+
+            join.getTcpIpConfig().addMember("127.0.0.1:" + (this.args.port + i));
+        }
+
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        config.setProperty("hazelcast.partition.operation.thread.count", "2");
+        config.setProperty("hazelcast.generic.operation.thread.count", "2");
+        config.setProperty("hazelcast.io.thread.count", "1");
+        config.setProperty("hazelcast.event.thread.count", "2");
+        config.setProperty("hazelcast.max.no.heartbeat.seconds", "10");
+        config.setProperty("hazelcast.merge.first.run.delay.seconds", "5");
+        config.setProperty("hazelcast.merge.next.run.delay.seconds", "5");
+
+        if (!this.args.verbose) {
+
+            config.setProperty("hazelcast.logging.type", "none");
+        }
+
+        return config;
+    }
+
+    // Stage every node's join in one bulk pipeline, start them all and wait for each to go ONLINE, then for the leader
+    // to declare the cluster started
+    private void joinAll() {
+
+        log("Joining " + this.args.nodes + " nodes");
+
+        List<Member> members = new ArrayList<>();
+
+        for (int i = 0; i < this.args.nodes; i++) {
+
+            int host = i % this.args.hazelcastMembers;
+            SimulatedNode node = new SimulatedNode("node" + i, this.instances.get(host), host, this.timers);
+
+            this.nodes.add(node);
+            this.nodesByKey.put(node.getMember().getKey(), node);
+            members.add(node.getMember());
+        }
+
+        long start = System.nanoTime();
+        Map<SimulatedNode, Long> joinedAt = new HashMap<>();
+
+        Map<Member, Result> results = new JoinPipeline(this.instances.get(0)).stage(members);
+
+        for (SimulatedNode node : this.nodes) {
+
+            if (results.get(node.getMember()).getStatus() == ResultStatus.SUCCESS) {
+
+                node.start();
+                joinedAt.put(node, start);
+
+            } else {
+
+                log(results.get(node.getMember()).getMessage());
+                this.joinLatencies.addTimeouts(1);
+            }
+        }
+
+        long deadline = start + TimeUnit.SECONDS.toNanos(this.args.timeoutSeconds);
+
+        while (!joinedAt.isEmpty() && System.nanoTime() < deadline) {
+
+            for (SimulatedNode node : new ArrayList<>(joinedAt.keySet())) {
+
+                if (this.observedStatus(node) == ClusterStatus.ONLINE) {
+
+                    this.joinLatencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - joinedAt.remove(node)));
+                }
+            }
+
+            sleep();
+        }
+
+        this.joinLatencies.addTimeouts(joinedAt.size());
+
+        this.await(this.readinessLatencies, start, () -> Boolean.parseBoolean(this.observer.getMetadata("printed")));
+    }
+
+    private void crashNode(SimulatedNode node) {
+
+        if (node == null) {
+
+            return;
+        }
+
+        log("Crashing " + node.getMember().getName());
+
+        long start = System.nanoTime();
+
+        node.crash();
+
+        this.await(this.offlineLatencies, start, () -> this.observedStatus(node) == ClusterStatus.OFFLINE);
+    }
+
+    // Crash the node holding the lease and wait for another node to take it over with a higher epoch. The crashed
+    // leader is also counted towards OFFLINE detection.
+    private void crashLeader() {
+
+        LeaderLease lease = this.observer.getLeader();
+        SimulatedNode leader = lease == null ? null : this.nodesByKey.get(lease.getHolder());
+
+        if (leader == null || leader.isCrashed()) {
+
+            log("No live leader to crash");
+            return;
+        }
+
+        log("Crashing leader " + leader.getMember().getName() + " at epoch " + lease.getEpoch());
+
+        long start = System.nanoTime();
+
+        leader.crash();
+
+        this.await(this.failoverLatencies, start, () -> {
+
+            LeaderLease current = this.observer.getLeader();
+
+            return current != null && current.getEpoch() > lease.getEpoch() && !current.getHolder().equals(lease.getHolder());
+        });
+
+        this.await(this.offlineLatencies, start, () -> this.observedStatus(leader) == ClusterStatus.OFFLINE);
+    }
+
+    // Pause a node for longer than it takes to be declared OFFLINE, then wait for it to come back ONLINE
+    private void pauseNode(SimulatedNode node) {
+
+        if (node == null) {
+
+            return;
+        }
+
+        log("Pausing " + node.getMember().getName() + " for " + this.args.pauseSeconds + " s");
+
+        long start = System.nanoTime();
+
+        node.pause();
+
+        this.await(this.pauseLatencies, start, TimeUnit.SECONDS.toNanos(this.args.pauseSeconds),
+                () -> this.observedStatus(node) == ClusterStatus.OFFLINE);
+
+        sleepUntil(start + TimeUnit.SECONDS.toNanos(this.args.pauseSeconds));
+
+        long resumedAt = System.nanoTime();
+
+        node.resume();
+
+        this.await(this.resumeLatencies, resumedAt, () -> this.observedStatus(node) == ClusterStatus.ONLINE);
+    }
+
+    // Cut the last quarter of the Hazelcast members off from the rest, wait for the majority to mark the nodes on
+    // them OFFLINE, then heal the partition and wait for every live node to be ONLINE again
+    private void partition() {
+
+        int minoritySize = Math.max(1, this.args.hazelcastMembers / 4);
+        List<HazelcastInstance> majority = this.instances.subList(0, this.args.hazelcastMembers - minoritySize);
+        List<HazelcastInstance> minority = this.instances.subList(this.args.hazelcastMembers - minoritySize, this.args.hazelcastMembers);
+
+        List<SimulatedNode> cutOff = new ArrayList<>();
+
+        for (SimulatedNode node : this.nodes) {
+
+            if (!node.isCrashed() && node.getHost() >= majority.size()) {
+
+                cutOff.add(node);
+            }
+        }
+
+        log("Partitioning " + minority.size() + " of " + this.instances.size() + " Hazelcast members ("
+                + cutOff.size() + " nodes) for " + this.args.partitionSeconds + " s");
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < this.instances.size(); i++) {
+
+            this.firewalls.get(i).block(addressesOf(i < majority.size() ? minority : majority));
+        }
+
+        this.await(this.partitionLatencies, start, TimeUnit.SECONDS.toNanos(this.args.partitionSeconds), () -> {
+
+            for (SimulatedNode node : cutOff) {
+
+                if (this.observedStatus(node) != ClusterStatus.OFFLINE) {
+
+                    return false;
+                }
+            }
+
+            return true;
+        });
+
+        sleepUntil(start + TimeUnit.SECONDS.toNanos(this.args.partitionSeconds));
+
+        log("Healing the partition");
+
+        long healedAt = System.nanoTime();
+
+        for (FirewallNodeContext firewall : this.firewalls) {
+
+            firewall.unblockAll();
+        }
+
+        this.await(this.healLatencies, healedAt, () -> {
+
+            for (SimulatedNode node : this.nodes) {
+
+                if (!node.isCrashed() && this.observedStatus(node) != ClusterStatus.ONLINE) {
+
+                    return false;
+                }
+            }
+
+            return true;
+        });
+
+        this.await(this.convergenceLatencies, healedAt, this::isConverged);
+    }
+
+    // Whether exactly one live node acts as leader, and every live node's view agrees with the observer on the leader
+    // and has every live node ONLINE
+    private boolean isConverged() {
+
+        LeaderLease lease = this.observer.getLeader();
+        int leaders = 0;
+
+        for (SimulatedNode node : this.nodes) {
+
+            if (node.isCrashed()) {
+
+                continue;
+            }
+
+            if (node.isLeader()) {
+
+                leaders++;
+            }
+
+            LeaderLease nodeLease = node.getClusterView().getLeader();
+
+            if (lease == null || !lease.equals(nodeLease)) {
+
+                return false;
+            }
+
+            for (SimulatedNode other : this.nodes) {
+
+                StateEntry state = node.getClusterView().getMember(other.getMember().getKey());
+
+                if (!other.isCrashed() && (state == null || state.getStatus() != ClusterStatus.ONLINE)) {
+
+                    return false;
+                }
+            }
+        }
+
+        return leaders == 1;
+    }
+
+    // A random live node that does not hold the lease
+    private SimulatedNode pickNode() {
+
+        LeaderLease lease = this.observer.getLeader();
+        List<SimulatedNode> candidates = new ArrayList<>();
+
+        for (SimulatedNode node : this.nodes) {
+
+            if (!node.isCrashed() && (lease == null || !lease.getHolder().equals(node.getMember().getKey()))) {
+
+                candidates.add(node);
+            }
+        }
+
+        return candidates.isEmpty() ? null : candidates.get(this.random.nextInt(candidates.size()));
+    }
+
+    private ClusterStatus observedStatus(SimulatedNode node) {
+
+        StateEntry state = this.observer.getMember(node.getMember().getKey());
+
+        return state == null ? null : state.getStatus();
+    }
+
+    private void await(Latencies latencies, long start, BooleanSupplier condition) {
+
+        this.await(latencies, start, TimeUnit.SECONDS.toNanos(this.args.timeoutSeconds), condition);
+    }
+
+    // Poll the observer until the condition holds and record how long it took from start, or record a timeout
+    private void await(Latencies latencies, long start, long timeoutNanos, BooleanSupplier condition) {
+
+        while (!condition.getAsBoolean()) {
+
+            if (System.nanoTime() - start > timeoutNanos) {
+
+                log(latencies.getName() + " timed out");
+                latencies.addTimeouts(1);
+                return;
+            }
+
+            this.observer.run();
+            sleep();
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        log(latencies.getName() + " took " + millis + " ms");
+        latencies.add(millis);
+    }
+
+    private static List<Address> addressesOf(List<HazelcastInstance> instances) {
+
+        List<Address> addresses = new ArrayList<>();
+
+        for (HazelcastInstance instance : instances) {
+
+            addresses.add(new Address(instance.getCluster().getLocalMember().getSocketAddress()));
+        }
+
+        return addresses;
+    }
+
+    private static void sleep() {
+
+        try {
+
+            Thread.sleep(50);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepUntil(long nanoTime) {
+
+        while (System.nanoTime() < nanoTime) {
+
+            sleep();
+        }
+    }
+
+    private static void log(String message) {
+
+        System.out.println(String.format("[%tT] %s", System.currentTimeMillis(), message));
+    }
+
+    // The samples for one kind of latency, summarised as percentiles
+    private static class Latencies {
+
+        private final String name;
+        private final List<Long> samples = new ArrayList<>();
+        private int timeouts;
+
+        Latencies(String name) {
+
+            this.name = name;
+        }
+
+        String getName() {
+
+            return this.name;
+        }
+
+        void add(long millis) {
+
+            this.samples.add(millis);
+        }
+
+        void addTimeouts(int count) {
+
+            this.timeouts += count;
+        }
+
+        private long percentile(List<Long> sorted, double percentile) {
+
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+
+            return sorted.get(Math.max(0, index));
+        }
+
+        @Override
+        public String toString() {
+
+            if (this.samples.isEmpty()) {
+
+                return String.format("%-22s%6d%9s%9s%9s%9s%9s%9d", this.name, 0, "-", "-", "-", "-", "-", this.timeouts);
+            }
+
+            List<Long> sorted = new ArrayList<>(this.samples);
+            Collections.sort(sorted);
+
+            return String.format("%-22s%6d%9d%9d%9d%9d%9d%9d", this.name, sorted.size(), sorted.get(0),
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), sorted.get(sorted.size() - 1),
+                    this.timeouts);
+        }
+    }
+}
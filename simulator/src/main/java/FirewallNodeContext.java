@@ -0,0 +1,172 @@
+import com.hazelcast.instance.DefaultNodeContext;
+import com.hazelcast.instance.Node;
+import com.hazelcast.nio.Address;
+import com.hazelcast.nio.Connection;
+import com.hazelcast.nio.ConnectionListener;
+import com.hazelcast.nio.ConnectionManager;
+import com.hazelcast.nio.Packet;
+import com.hazelcast.spi.impl.PacketHandler;
+
+import java.nio.channels.ServerSocketChannel;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Creates Hazelcast members whose traffic to chosen peers can be cut and restored, so the simulator can partition a
+// cluster running in one JVM. Blocking is applied on both sides of a partition, so neither side sends, and existing
+// connections are closed so nothing already queued gets through.
+class FirewallNodeContext extends DefaultNodeContext {
+
+    private final Set<Address> blocked = ConcurrentHashMap.newKeySet();
+    private volatile ConnectionManager connectionManager;
+
+    @Override
+    public ConnectionManager createConnectionManager(Node node, ServerSocketChannel serverSocketChannel) {
+
+        this.connectionManager = new FirewallConnectionManager(super.createConnectionManager(node, serverSocketChannel));
+
+        return this.connectionManager;
+    }
+
+    void block(Collection<Address> addresses) {
+
+        this.blocked.addAll(addresses);
+
+        for (Address address : addresses) {
+
+            Connection connection = this.connectionManager.getConnection(address);
+
+            if (connection != null) {
+
+                connection.close("Simulated partition", null);
+            }
+        }
+    }
+
+    void unblockAll() {
+
+        this.blocked.clear();
+    }
+
+    private boolean isBlocked(Address address) {
+
+        return address != null && this.blocked.contains(address);
+    }
+
+    private class FirewallConnectionManager implements ConnectionManager, PacketHandler {
+
+        private final ConnectionManager delegate;
+
+        FirewallConnectionManager(ConnectionManager delegate) {
+
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int getCurrentClientConnections() {
+
+            return this.delegate.getCurrentClientConnections();
+        }
+
+        @Override
+        public int getAllTextConnections() {
+
+            return this.delegate.getAllTextConnections();
+        }
+
+        @Override
+        public int getConnectionCount() {
+
+            return this.delegate.getConnectionCount();
+        }
+
+        @Override
+        public int getActiveConnectionCount() {
+
+            return this.delegate.getActiveConnectionCount();
+        }
+
+        @Override
+        public Connection getConnection(Address address) {
+
+            return isBlocked(address) ? null : this.delegate.getConnection(address);
+        }
+
+        @Override
+        public Connection getOrConnect(Address address) {
+
+            return isBlocked(address) ? null : this.delegate.getOrConnect(address);
+        }
+
+        @Override
+        public Connection getOrConnect(Address address, boolean silent) {
+
+            return isBlocked(address) ? null : this.delegate.getOrConnect(address, silent);
+        }
+
+        @Override
+        public boolean registerConnection(Address address, Connection connection) {
+
+            if (isBlocked(address)) {
+
+                connection.close("Simulated partition", null);
+
+                return false;
+            }
+
+            return this.delegate.registerConnection(address, connection);
+        }
+
+        @Override
+        public void onConnectionClose(Connection connection) {
+
+            this.delegate.onConnectionClose(connection);
+        }
+
+        @Override
+        public boolean transmit(Packet packet, Connection connection) {
+
+            return connection != null && !isBlocked(connection.getEndPoint()) && this.delegate.transmit(packet, connection);
+        }
+
+        @Override
+        public boolean transmit(Packet packet, Address address) {
+
+            return !isBlocked(address) && this.delegate.transmit(packet, address);
+        }
+
+        // Bind requests and other connection level packets from blocked peers are dropped on arrival
+        @Override
+        public void handle(Packet packet) throws Exception {
+
+            if (packet.getConn() == null || !isBlocked(packet.getConn().getEndPoint())) {
+
+                ((PacketHandler) this.delegate).handle(packet);
+            }
+        }
+
+        @Override
+        public void addConnectionListener(ConnectionListener listener) {
+
+            this.delegate.addConnectionListener(listener);
+        }
+
+        @Override
+        public void start() {
+
+            this.delegate.start();
+        }
+
+        @Override
+        public void stop() {
+
+            this.delegate.stop();
+        }
+
+        @Override
+        public void shutdown() {
+
+            this.delegate.shutdown();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import com.hazelcast.core.HazelcastInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// One logical node of the simulator. It does what MembershipManager does for a node once its join is staged (heartbeats
+// and runs the leader service on the same schedule), but many of them can share a JVM and a Hazelcast member. The
+// simulator stages every node's join at once with a JoinPipeline, and drives every node's ticks from one timer wheel.
+// Crashes and pauses are injected here.
+class SimulatedNode {
+
+    private final Member member;
+    private final HazelcastInstance instance;
+    private final int host;
+
+    private final ClusterView clusterView;
+    private final TimerWheel timers;
+    private final List<TimerWheel.Timeout> timeouts = new ArrayList<>();
+
+    private LeaderService leaderService;
+
+    // A paused node keeps its state but skips its ticks, like a process stopped by a long GC pause
+    private volatile boolean isPaused;
+    private volatile boolean isCrashed;
+
+    SimulatedNode(String name, HazelcastInstance instance, int host, TimerWheel timers) {
+
+        this.member = new Member(name);
+        this.instance = instance;
+        this.host = host;
+        this.timers = timers;
+
+        this.clusterView = new ClusterView(instance);
+        this.clusterView.start();
+        this.schedule(this.clusterView, 1000, 1000);
+    }
+
+    Member getMember() {
+
+        return this.member;
+    }
+
+    ClusterView getClusterView() {
+
+        return this.clusterView;
+    }
+
+    boolean isLeader() {
+
+        LeaderService leaderService = this.leaderService;
+
+        return leaderService != null && leaderService.isLeader();
+    }
+
+    // The index of the Hazelcast member this node runs on
+    int getHost() {
+
+        return this.host;
+    }
+
+    boolean isCrashed() {
+
+        return this.isCrashed;
+    }
+
+    // Start heartbeating and running the leader service, once the join has been staged. The first heartbeat brings
+    // the node ONLINE, as it does for stageJoin.
+    void start() {
+
+        this.leaderService = new LeaderService(this.instance, this.member, this.clusterView);
+
+        this.schedule(new HeartbeatService(this.instance, this.member), 0, MembershipManager.HEARTBEAT_INTERVAL_MILLIS);
+        this.schedule(this.leaderService, 0, MembershipManager.LEADER_INTERVAL_MILLIS);
+    }
+
+    void pause() {
+
+        this.isPaused = true;
+    }
+
+    void resume() {
+
+        this.isPaused = false;
+    }
+
+    // Stop everything at once, without leaving the cluster
+    synchronized void crash() {
+
+        this.isCrashed = true;
+
+        for (TimerWheel.Timeout timeout : this.timeouts) {
+
+            timeout.cancel();
+        }
+
+        if (this.leaderService != null) {
+
+            this.leaderService.stop();
+        }
+
+        this.clusterView.stop();
+    }
+
+    /******************************************************************************************************************/
+
+    private synchronized void schedule(Runnable task, long initialDelayMillis, long periodMillis) {
+
+        this.timeouts.add(this.timers.scheduleAtFixedRate(this.tick(task), initialDelayMillis, periodMillis,
+                TimeUnit.MILLISECONDS));
+    }
+
+    // Skip the task while paused, and keep its schedule alive if it fails (e.g. while the cluster is partitioned)
+    private Runnable tick(Runnable task) {
+
+        return () -> {
+
+            if (this.isPaused) {
+
+                return;
+            }
+
+            try {
+
+                task.run();
+
+            } catch (RuntimeException e) {
+
+                System.err.println(this.member.getName() + ": " + e.getMessage());
+            }
+        };
+    }
+}
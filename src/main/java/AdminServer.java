@@ -0,0 +1,303 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// A local HTTP endpoint for monitoring, serving the cluster view as JSON:
+//
+//   GET /status             the leader, the view's version and consistency, and every member
+//   GET /status?since=<v>   as /status, but only the members that changed since view version v, and those removed
+//   GET /leader             the current leader
+//   GET /members/<name>     one member, by name or UUID
+//
+// Full responses come from a snapshot of the view that is rebuilt at most once per interval, and only if the view has
+// changed, so any number of scrapers cost about as much as one. Every response carries the snapshot's ETag, and a
+// request whose If-None-Match matches it gets an empty 304.
+class AdminServer {
+
+    private static final long SNAPSHOT_INTERVAL_MILLIS = Long.getLong("membership.admin.snapshot.ms", 1000L);
+
+    private final ClusterView clusterView;
+    private final HttpServer server;
+
+    private volatile Snapshot snapshot;
+    private volatile long snapshotCheckedAt;
+
+    AdminServer(ClusterView clusterView, int port) throws IOException {
+
+        this.clusterView = clusterView;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+
+        this.server.createContext("/status", exchange -> {
+
+            String query = exchange.getRequestURI().getQuery();
+
+            if (query != null && query.startsWith("since=")) {
+
+                this.serveChanges(exchange, query.substring("since=".length()));
+                return;
+            }
+
+            Snapshot snapshot = this.snapshot();
+
+            this.serve(exchange, snapshot.etag, snapshot.status);
+        });
+
+        this.server.createContext("/leader", exchange -> {
+
+            Snapshot snapshot = this.snapshot();
+
+            this.serve(exchange, snapshot.etag, snapshot.leader);
+        });
+
+        this.server.createContext("/members/", exchange -> {
+
+            Snapshot snapshot = this.snapshot();
+            String id = exchange.getRequestURI().getPath().substring("/members/".length());
+
+            this.serve(exchange, snapshot.etag, snapshot.members.get(id));
+        });
+    }
+
+    void start() {
+
+        this.server.start();
+    }
+
+    void stop() {
+
+        this.server.stop(0);
+    }
+
+    /******************************************************************************************************************/
+
+    // The current snapshot, rebuilt if the interval has passed and the view has moved on since it was taken. Only one
+    // request rebuilds it; the others keep serving the previous one meanwhile.
+    private Snapshot snapshot() {
+
+        Snapshot current = this.snapshot;
+        long now = System.nanoTime();
+
+        if (current != null && now - this.snapshotCheckedAt < TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_INTERVAL_MILLIS)) {
+
+            return current;
+        }
+
+        synchronized (this) {
+
+            if (this.snapshot != current) {
+
+                return this.snapshot;
+            }
+
+            this.snapshotCheckedAt = now;
+
+            String etag = "\"" + this.clusterView.getVersion() + "-" + this.clusterView.getConsistency() + "\"";
+
+            if (current == null || !current.etag.equals(etag)) {
+
+                this.snapshot = new Snapshot(etag, this.clusterView);
+            }
+
+            return this.snapshot;
+        }
+    }
+
+    private void serve(HttpExchange exchange, String etag, byte[] body) throws IOException {
+
+        try {
+
+            if (!"GET".equals(exchange.getRequestMethod())) {
+
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            if (body == null) {
+
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+
+                out.write(body);
+            }
+
+        } finally {
+
+            exchange.close();
+        }
+    }
+
+    // A delta is rendered for each request, at a cost proportional to the changes it holds
+    private void serveChanges(HttpExchange exchange, String since) throws IOException {
+
+        long version;
+
+        try {
+
+            version = Long.parseLong(since);
+
+        } catch (NumberFormatException e) {
+
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+            return;
+        }
+
+        ClusterView.Delta delta = this.clusterView.getChangesSince(version);
+        LeaderLease lease = delta.getLeader();
+
+        StringBuilder changes = new StringBuilder();
+        changes.append("{\"leader\":").append(Snapshot.leaderJson(this.clusterView, lease))
+                .append(",\"view\":{\"version\":").append(delta.getVersion())
+                .append(",\"consistency\":").append(quote(this.clusterView.getConsistency().toString()))
+                .append("},\"full\":").append(delta.isFull())
+                .append(",\"members\":[");
+
+        boolean isFirst = true;
+
+        for (Map.Entry<MemberKey, StateEntry> entry : delta.getMembers().entrySet()) {
+
+            boolean isLeader = lease != null && lease.getHolder().equals(entry.getKey());
+
+            changes.append(isFirst ? "" : ",").append(memberJson(entry.getKey(),
+                    this.clusterView.getName(entry.getKey()), entry.getValue(), isLeader));
+            isFirst = false;
+        }
+
+        changes.append("],\"removed\":[");
+        isFirst = true;
+
+        for (Map.Entry<MemberKey, String> entry : delta.getRemoved().entrySet()) {
+
+            changes.append(isFirst ? "" : ",").append("{\"uuid\":").append(quote(entry.getKey().toString()))
+                    .append(",\"name\":").append(quote(entry.getValue())).append("}");
+            isFirst = false;
+        }
+
+        changes.append("]}");
+
+        this.serve(exchange, "\"" + delta.getVersion() + "-" + version + "\"", changes.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The responses for one version of the view, rendered once
+    private static class Snapshot {
+
+        private final String etag;
+        private final byte[] status;
+        private final byte[] leader;
+        private final Map<String, byte[]> members = new HashMap<>();
+
+        Snapshot(String etag, ClusterView clusterView) {
+
+            this.etag = etag;
+
+            LeaderLease lease = clusterView.getLeader();
+            String leaderJson = leaderJson(clusterView, lease);
+
+            StringBuilder status = new StringBuilder();
+            status.append("{\"leader\":").append(leaderJson)
+                    .append(",\"view\":{\"version\":").append(clusterView.getVersion())
+                    .append(",\"consistency\":").append(quote(clusterView.getConsistency().toString()))
+                    .append("},\"members\":[");
+
+            boolean isFirst = true;
+
+            for (Map.Entry<MemberKey, StateEntry> entry : clusterView.getMembers().entrySet()) {
+
+                String name = clusterView.getName(entry.getKey());
+                boolean isLeader = lease != null && lease.getHolder().equals(entry.getKey());
+                String memberJson = memberJson(entry.getKey(), name, entry.getValue(), isLeader);
+
+                status.append(isFirst ? "" : ",").append(memberJson);
+                isFirst = false;
+
+                byte[] memberBytes = memberJson.getBytes(StandardCharsets.UTF_8);
+                this.members.put(entry.getKey().toString(), memberBytes);
+
+                if (name != null) {
+
+                    this.members.put(name, memberBytes);
+                }
+            }
+
+            status.append("]}");
+
+            this.status = status.toString().getBytes(StandardCharsets.UTF_8);
+            this.leader = leaderJson.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String leaderJson(ClusterView clusterView, LeaderLease lease) {
+
+            if (lease == null) {
+
+                return "null";
+            }
+
+            return "{\"uuid\":" + quote(lease.getHolder().toString())
+                    + ",\"name\":" + quote(clusterView.getName(lease.getHolder()))
+                    + ",\"epoch\":" + lease.getEpoch() + "}";
+        }
+    }
+
+    // One member as JSON, as served by /members and written by the streaming status
+    static String memberJson(MemberKey key, String name, StateEntry state, boolean isLeader) {
+
+        return "{\"uuid\":" + quote(key.toString())
+                + ",\"name\":" + quote(name)
+                + ",\"status\":" + quote(state.getStatus().toString())
+                + ",\"heartbeat\":" + state.getHeartbeat()
+                + ",\"zone\":" + quote(state.getZone())
+                + ",\"rack\":" + quote(state.getRack())
+                + ",\"role\":" + quote(state.getRole())
+                + ",\"leader\":" + isLeader + "}";
+    }
+
+    static String quote(String value) {
+
+        if (value == null) {
+
+            return "null";
+        }
+
+        StringBuilder quoted = new StringBuilder("\"");
+
+        for (char c : value.toCharArray()) {
+
+            if (c == '"' || c == '\\') {
+
+                quoted.append('\\').append(c);
+
+            } else if (c < 0x20) {
+
+                quoted.append(String.format("\\u%04x", (int) c));
+
+            } else {
+
+                quoted.append(c);
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+}
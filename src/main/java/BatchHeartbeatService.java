@@ -0,0 +1,59 @@
+import com.hazelcast.core.*;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Heartbeats for every member hosted in this JVM in one batched write per tick. executeOnKeys groups the keys by
+// partition owner, so the cost of a tick grows with the number of Hazelcast members rather than the number of hosted
+// members. As with HeartbeatService, the first heartbeat of a JOINING member brings it ONLINE.
+public class BatchHeartbeatService implements Runnable {
+
+    private final IMap<MemberKey, StateEntry> mapClusterState;
+    private final HeartbeatEntryProcessor heartbeatProcessor = new HeartbeatEntryProcessor();
+    private final MembershipMetrics metrics = MembershipMetrics.getMetrics();
+
+    // Each member and when it started joining, for the time-to-ONLINE metric
+    private final Map<MemberKey, Long> members = new ConcurrentHashMap<>();
+    private final Set<MemberKey> keys = this.members.keySet();
+
+    public BatchHeartbeatService(HazelcastInstance instance) {
+
+        this.mapClusterState = instance.getMap("clusterState");
+    }
+
+    void add(MemberKey key) {
+
+        this.members.put(key, System.nanoTime());
+    }
+
+    void remove(MemberKey key) {
+
+        this.members.remove(key);
+    }
+
+    public void run() {
+
+        if (this.keys.isEmpty()) {
+
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        Map<MemberKey, Object> results = this.mapClusterState.executeOnKeys(this.keys,
+                this.heartbeatProcessor.setHeartbeat(System.currentTimeMillis()));
+
+        this.metrics.recordHeartbeat(start);
+
+        for (Map.Entry<MemberKey, Object> result : results.entrySet()) {
+
+            Long startedAt = this.members.get(result.getKey());
+
+            if (Boolean.TRUE.equals(result.getValue()) && startedAt != null) {
+
+                this.metrics.recordTimeToOnline(startedAt);
+            }
+        }
+    }
+}
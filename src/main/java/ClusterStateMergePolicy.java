@@ -0,0 +1,41 @@
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.spi.merge.SplitBrainMergePolicy;
+import com.hazelcast.spi.merge.SplitBrainMergeTypes.MapMergeTypes;
+
+import java.io.IOException;
+
+// Merges the clusterState entries both sides of a split brain kept once it heals. A member's heartbeats only ever
+// increase, so the entry with the higher heartbeat is the more recent one. Between equal heartbeats OFFLINE wins, as a
+// leader took the member OFFLINE after that heartbeat. Entries of members removed on the other side are purged after
+// the merge by SplitBrainHealer.
+public class ClusterStateMergePolicy implements SplitBrainMergePolicy<Data, MapMergeTypes> {
+
+    @Override
+    public Data merge(MapMergeTypes mergingValue, MapMergeTypes existingValue) {
+
+        if (existingValue == null) {
+
+            return mergingValue.getValue();
+        }
+
+        StateEntry merging = mergingValue.getDeserializedValue();
+        StateEntry existing = existingValue.getDeserializedValue();
+
+        if (merging.getHeartbeat() != existing.getHeartbeat()) {
+
+            return merging.getHeartbeat() > existing.getHeartbeat() ? mergingValue.getValue() : existingValue.getValue();
+        }
+
+        return merging.getStatus() == ClusterStatus.OFFLINE ? mergingValue.getValue() : existingValue.getValue();
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+    }
+}
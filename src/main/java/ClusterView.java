@@ -0,0 +1,773 @@
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.LifecycleEvent;
+import com.hazelcast.core.MembershipAdapter;
+import com.hazelcast.core.MembershipEvent;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryMergedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+// A local copy of clusterState, the registry, the leader lease and metadata, kept current by entry listeners, so
+// status, leader and readiness checks read local memory instead of the maps. Only joins, status changes and removals
+// are sent to the view as they happen: heartbeats are filtered out on the partition owners, as every node receiving
+// every member's heartbeats would cost O(N^2) events across the cluster. The view instead reloads itself every maximum
+// staleness, which brings its heartbeats up to date and repairs any map event Hazelcast failed to deliver (e.g. when a
+// Hazelcast member fails). It also reloads when a Hazelcast member leaves and after a split brain is merged.
+public class ClusterView implements MembershipView, Runnable {
+
+    private static final long MAX_STALENESS_MILLIS = Long.getLong("membership.view.maxStaleness.ms", 30000L);
+    private static final int MAX_TOMBSTONES = Integer.getInteger("membership.view.maxTombstones", 10000);
+
+    // Evaluated by the partition owner on the entry each write leaves behind
+    @SuppressWarnings("unchecked")
+    private static final Predicate<MemberKey, StateEntry> CHANGES = Predicates.equal("changed", true);
+
+    enum Consistency {
+        // The view is being loaded from the maps
+        SYNCING,
+        // The view has been reloaded within the maximum staleness
+        CURRENT,
+        // The view has not been reloaded for longer than the maximum staleness; the next run reloads it
+        STALE
+    }
+
+    private final IMap<MemberKey, StateEntry> mapClusterState;
+    private final IMap<String, MemberKey> mapRegistry;
+    private final IMap<String, LeaderLease> mapLeadership;
+    private final IMap<String, String> mapMetadata;
+    private final HazelcastInstance instance;
+
+    private final ConcurrentMap<MemberKey, StateEntry> members = new ConcurrentHashMap<>();
+    private final Map<MemberKey, StateEntry> unmodifiableMembers = Collections.unmodifiableMap(this.members);
+    private final ConcurrentMap<MemberKey, String> names = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> metadata = new ConcurrentHashMap<>();
+    private volatile LeaderLease leader;
+
+    // Members per status, adjusted on every status change, so readiness is known without a scan. Each adjustment is
+    // made against the entry the view replaced, so concurrent updates leave the counts exact.
+    private final AtomicIntegerArray statusCounts = new AtomicIntegerArray(ClusterStatus.values().length);
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    // Versions count up from a random multiple of 2^40 chosen when the view is created, so a version another view
+    // handed out, on another node or before a restart, is almost certainly outside this view's range
+    private final long firstVersion = ThreadLocalRandom.current().nextLong(1L, 1L << 22) << 40;
+    private final AtomicLong version = new AtomicLong(this.firstVersion);
+
+    // The view version of each member's last change, and of each removal that is still remembered, ordered by version
+    // so the changes since any version are found without scanning every member. Only joins, status changes and
+    // removals count as changes, not heartbeats. Versions older than the horizon may have lost their tombstones.
+    private final ConcurrentSkipListMap<Long, MemberKey> changes = new ConcurrentSkipListMap<>();
+    private final Map<MemberKey, Long> changedAt = new HashMap<>();
+    private final Map<MemberKey, String> tombstones = new LinkedHashMap<>();
+    private long horizon = this.firstVersion;
+    private volatile long lastSyncedAt = System.nanoTime();
+    private volatile boolean isSyncing = true;
+    private volatile boolean isResyncRequested;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final MembershipMetrics metrics = MembershipMetrics.getMetrics();
+
+    private String stateListenerId;
+    private String removalListenerId;
+    private String registryListenerId;
+    private String leaseListenerId;
+    private String metadataListenerId;
+    private String membershipListenerId;
+    private String lifecycleListenerId;
+
+    public ClusterView(HazelcastInstance instance) {
+
+        this.instance = instance;
+        this.mapClusterState = instance.getMap("clusterState");
+        this.mapRegistry = instance.getMap("registry");
+        this.mapLeadership = instance.getMap("leadership");
+        this.mapMetadata = instance.getMap("metadata");
+    }
+
+    // Register the listeners before loading the maps, so no update is missed in between
+    void start() {
+
+        this.addListeners();
+        this.sync();
+    }
+
+    private void addListeners() {
+
+        this.stateListenerId = this.mapClusterState.addEntryListener(new StateListener(), CHANGES, true);
+        this.removalListenerId = this.mapClusterState.addEntryListener(new RemovalListener(), true);
+        this.registryListenerId = this.mapRegistry.addEntryListener(new RegistryListener(), true);
+        this.leaseListenerId = this.mapLeadership.addEntryListener(new LeaseListener(), true);
+        this.metadataListenerId = this.mapMetadata.addEntryListener(new MetadataListener(), true);
+        this.membershipListenerId = this.instance.getCluster().addMembershipListener(new MembershipAdapter() {
+
+            @Override
+            public void memberRemoved(MembershipEvent membershipEvent) {
+
+                requestResync();
+            }
+        });
+
+        // Once this side of a split brain has been merged into the other, its maps hold the merged entries, for which
+        // it has seen no events
+        this.lifecycleListenerId = this.instance.getLifecycleService().addLifecycleListener(event -> {
+
+            if (event.getState() == LifecycleEvent.LifecycleState.MERGED) {
+
+                requestResync();
+            }
+        });
+    }
+
+    // Start from the state a restarted node journaled, so the view can be served straight away, and load the maps on
+    // the first run instead of before returning. The view is SYNCING until then.
+    void start(MembershipJournal journal) {
+
+        for (Map.Entry<MemberKey, StateEntry> entry : journal.getMembers().entrySet()) {
+
+            String name = journal.getName(entry.getKey());
+
+            if (name != null) {
+
+                this.names.put(entry.getKey(), name);
+            }
+
+            this.updateMember(entry.getKey(), entry.getValue());
+        }
+
+        this.updateLeader(journal.getLeader());
+
+        this.requestResync();
+        this.addListeners();
+    }
+
+    void stop() {
+
+        this.mapClusterState.removeEntryListener(this.stateListenerId);
+        this.mapClusterState.removeEntryListener(this.removalListenerId);
+        this.mapRegistry.removeEntryListener(this.registryListenerId);
+        this.mapLeadership.removeEntryListener(this.leaseListenerId);
+        this.mapMetadata.removeEntryListener(this.metadataListenerId);
+        this.instance.getCluster().removeMembershipListener(this.membershipListenerId);
+        this.instance.getLifecycleService().removeLifecycleListener(this.lifecycleListenerId);
+
+        Waiter waiter;
+
+        while ((waiter = this.waiters.poll()) != null) {
+
+            waiter.future.cancel(false);
+        }
+    }
+
+    // Reload the view on the next run
+    void requestResync() {
+
+        this.isResyncRequested = true;
+    }
+
+    // Reload the view if it was asked to, or if it has not been reloaded for the maximum staleness
+    public void run() {
+
+        if (this.isResyncRequested || this.getConsistency() == Consistency.STALE) {
+
+            this.sync();
+        }
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+
+        this.listeners.remove(listener);
+    }
+
+    // A read-only live view of clusterState
+    @Override
+    public Map<MemberKey, StateEntry> getMembers() {
+
+        return this.unmodifiableMembers;
+    }
+
+    @Override
+    public StateEntry getMember(MemberKey key) {
+
+        return this.members.get(key);
+    }
+
+    // The member's name from the registry, or null if the registry entry has not been seen yet
+    @Override
+    public String getName(MemberKey key) {
+
+        return this.names.get(key);
+    }
+
+    @Override
+    public LeaderLease getLeader() {
+
+        return this.leader;
+    }
+
+    String getMetadata(String key) {
+
+        return this.metadata.get(key);
+    }
+
+    int getCount(ClusterStatus status) {
+
+        return this.statusCounts.get(status.ordinal());
+    }
+
+    // True once the view has loaded and has members, all of them ONLINE
+    boolean isAllOnline() {
+
+        return !this.isSyncing && this.getCount(ClusterStatus.ONLINE) > 0
+                && this.getCount(ClusterStatus.JOINING) == 0 && this.getCount(ClusterStatus.OFFLINE) == 0;
+    }
+
+    // True once the view has loaded and at least this many members are ONLINE
+    boolean hasQuorum(int online) {
+
+        return !this.isSyncing && this.getCount(ClusterStatus.ONLINE) >= online;
+    }
+
+    // These complete on the thread that applies the change that satisfies them, an event thread or the thread
+    // reloading the view, so anything that blocks should continue on another executor. They are checked only when a
+    // status changes, and are cancelled if the view is stopped first.
+    CompletableFuture<Void> awaitAllOnline() {
+
+        return this.await(this::isAllOnline);
+    }
+
+    CompletableFuture<Void> awaitQuorum(int online) {
+
+        return this.await(() -> this.hasQuorum(online));
+    }
+
+    // Incremented for every change applied to the view
+    long getVersion() {
+
+        return this.version.get();
+    }
+
+    // The members that joined or changed status since the given view version, and the members removed since then. If
+    // the version is too old for every removal since to still be known, or is not one this view handed out, the delta
+    // holds every member instead, and the caller should replace its copy rather than apply the delta to it.
+    Delta getChangesSince(long since) {
+
+        synchronized (this.changes) {
+
+            long version = this.version.get();
+            Delta delta = new Delta(version, since < this.horizon || since > version, this.leader);
+
+            if (delta.isFull) {
+
+                for (Map.Entry<MemberKey, StateEntry> entry : this.members.entrySet()) {
+
+                    delta.members.put(entry.getKey(), entry.getValue());
+                }
+
+                return delta;
+            }
+
+            for (MemberKey key : this.changes.tailMap(since, false).values()) {
+
+                StateEntry state = this.members.get(key);
+
+                if (state != null) {
+
+                    delta.members.put(key, state);
+
+                } else {
+
+                    delta.removed.put(key, this.tombstones.get(key));
+                }
+            }
+
+            return delta;
+        }
+    }
+
+    // How long ago the view was last reloaded, which is as old as its heartbeats can be
+    long getStalenessMillis() {
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.lastSyncedAt);
+    }
+
+    Consistency getConsistency() {
+
+        if (this.isSyncing) {
+
+            return Consistency.SYNCING;
+        }
+
+        return this.getStalenessMillis() > MAX_STALENESS_MILLIS ? Consistency.STALE : Consistency.CURRENT;
+    }
+
+    /******************************************************************************************************************/
+
+    private synchronized void sync() {
+
+        this.isSyncing = true;
+        this.isResyncRequested = false;
+
+        long start = System.nanoTime();
+        Set<Map.Entry<String, MemberKey>> registryEntries = this.mapRegistry.entrySet();
+        this.metrics.recordMapOperation("registry", start);
+
+        for (Map.Entry<String, MemberKey> entry : registryEntries) {
+
+            this.names.put(entry.getValue(), entry.getKey());
+        }
+
+        Set<MemberKey> missing = new HashSet<>(this.members.keySet());
+
+        start = System.nanoTime();
+        Set<Map.Entry<MemberKey, StateEntry>> stateEntries = this.mapClusterState.entrySet();
+        this.metrics.recordMapOperation("clusterState", start);
+
+        for (Map.Entry<MemberKey, StateEntry> entry : stateEntries) {
+
+            missing.remove(entry.getKey());
+            this.syncMember(entry.getKey(), entry.getValue());
+        }
+
+        for (MemberKey key : missing) {
+
+            this.removeMember(key);
+        }
+
+        start = System.nanoTime();
+        Set<Map.Entry<String, String>> metadataEntries = this.mapMetadata.entrySet();
+        this.metrics.recordMapOperation("metadata", start);
+
+        this.metadata.clear();
+
+        for (Map.Entry<String, String> entry : metadataEntries) {
+
+            this.metadata.put(entry.getKey(), entry.getValue());
+        }
+
+        this.updateLeader(this.mapLeadership.get(LeaderService.LEASE_KEY));
+
+        this.lastSyncedAt = System.nanoTime();
+        this.isSyncing = false;
+
+        this.completeWaiters();
+    }
+
+    private void updateMember(MemberKey key, StateEntry current) {
+
+        this.memberChanged(key, this.members.put(key, current), current);
+    }
+
+    // Apply an entry read from clusterState unless the view holds a newer one, as an event may have delivered while the
+    // map was being read. The check and the replacement are one step per key, so an event applied in between is never
+    // overwritten with the older snapshot.
+    private void syncMember(MemberKey key, StateEntry loaded) {
+
+        StateEntry[] previous = new StateEntry[1];
+
+        StateEntry current = this.members.compute(key, (k, existing) -> {
+
+            previous[0] = existing;
+
+            return existing == null || isNewer(loaded, existing) ? loaded : existing;
+        });
+
+        if (current == loaded) {
+
+            this.memberChanged(key, previous[0], current);
+        }
+    }
+
+    private void memberChanged(MemberKey key, StateEntry previous, StateEntry current) {
+
+        if (previous == null || previous.getStatus() != current.getStatus()) {
+
+            this.recordChange(key, false);
+            this.countStatusChange(previous, current);
+
+        } else {
+
+            this.version.incrementAndGet();
+        }
+
+        for (Listener listener : this.listeners) {
+
+            listener.memberUpdated(key, previous, current);
+        }
+    }
+
+    private void removeMember(MemberKey key) {
+
+        StateEntry previous = this.members.remove(key);
+
+        if (previous == null) {
+
+            return;
+        }
+
+        this.recordChange(key, true);
+        this.countStatusChange(previous, null);
+
+        for (Listener listener : this.listeners) {
+
+            listener.memberRemoved(key, previous);
+        }
+
+        this.names.remove(key);
+    }
+
+    private void countStatusChange(StateEntry previous, StateEntry current) {
+
+        if (previous != null) {
+
+            this.statusCounts.decrementAndGet(previous.getStatus().ordinal());
+        }
+
+        if (current != null) {
+
+            this.statusCounts.incrementAndGet(current.getStatus().ordinal());
+        }
+
+        if (!this.isSyncing && !this.waiters.isEmpty()) {
+
+            this.completeWaiters();
+        }
+    }
+
+    // Register before checking, so a change made in between is not missed
+    private CompletableFuture<Void> await(BooleanSupplier condition) {
+
+        Waiter waiter = new Waiter(condition);
+
+        this.waiters.add(waiter);
+        this.completeWaiters();
+
+        return waiter.future;
+    }
+
+    private void completeWaiters() {
+
+        for (Iterator<Waiter> iterator = this.waiters.iterator(); iterator.hasNext(); ) {
+
+            Waiter waiter = iterator.next();
+
+            if (waiter.future.isDone()) {
+
+                iterator.remove();
+
+            } else if (waiter.condition.getAsBoolean()) {
+
+                iterator.remove();
+                waiter.future.complete(null);
+            }
+        }
+    }
+
+    // Give the change the next view version, under the same lock as getChangesSince, so a delta never reports a version
+    // whose change it has not seen
+    private void recordChange(MemberKey key, boolean isRemoval) {
+
+        synchronized (this.changes) {
+
+            long changeVersion = this.version.incrementAndGet();
+            Long previous = this.changedAt.put(key, changeVersion);
+
+            if (previous != null) {
+
+                this.changes.remove(previous);
+            }
+
+            this.changes.put(changeVersion, key);
+
+            if (isRemoval) {
+
+                this.tombstones.put(key, this.names.get(key));
+                this.forgetOldestTombstones();
+
+            } else {
+
+                this.tombstones.remove(key);
+            }
+        }
+    }
+
+    // Tombstones are kept, oldest first, up to a limit. Dropping one moves the horizon past it, so a delta from before
+    // it is full.
+    private void forgetOldestTombstones() {
+
+        Iterator<MemberKey> iterator = this.tombstones.keySet().iterator();
+
+        while (this.tombstones.size() > MAX_TOMBSTONES) {
+
+            MemberKey key = iterator.next();
+            Long removedAt = this.changedAt.remove(key);
+
+            this.changes.remove(removedAt);
+            this.horizon = removedAt;
+            iterator.remove();
+        }
+    }
+
+    private void updateLeader(LeaderLease current) {
+
+        LeaderLease previous = this.leader;
+
+        // Lease events may arrive out of order; epochs never go backwards
+        if (current != null && previous != null && current.getEpoch() < previous.getEpoch()) {
+
+            return;
+        }
+
+        if (current == null ? previous == null : current.equals(previous)) {
+
+            return;
+        }
+
+        this.leader = current;
+        this.version.incrementAndGet();
+
+        for (Listener listener : this.listeners) {
+
+            listener.leaderChanged(current);
+        }
+    }
+
+    // A member's heartbeats only increase, and at the same heartbeat each status change raises the entry's version. A
+    // member that rejoins starts a new entry at version 0, but with a higher heartbeat. Entries from the two sides of a
+    // split brain may still tie, and then the status that comes later in a member's life wins.
+    private static boolean isNewer(StateEntry a, StateEntry b) {
+
+        if (a.getHeartbeat() != b.getHeartbeat()) {
+
+            return a.getHeartbeat() > b.getHeartbeat();
+        }
+
+        if (a.getVersion() != b.getVersion()) {
+
+            return a.getVersion() > b.getVersion();
+        }
+
+        return statusRank(a.getStatus()) > statusRank(b.getStatus());
+    }
+
+    private static int statusRank(ClusterStatus status) {
+
+        switch (status) {
+            case JOINING:
+                return 0;
+            case ONLINE:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    // Receives only the writes that match CHANGES
+    private class StateListener implements EntryAddedListener<MemberKey, StateEntry>, EntryUpdatedListener<MemberKey, StateEntry> {
+
+        @Override
+        public void entryAdded(EntryEvent<MemberKey, StateEntry> event) {
+
+            updateMember(event.getKey(), event.getValue());
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<MemberKey, StateEntry> event) {
+
+            updateMember(event.getKey(), event.getValue());
+        }
+    }
+
+    // Removals are matched against the old entry, so they need a listener without the predicate. The other side of a
+    // split brain sees the entries merged into its maps as merge events.
+    private class RemovalListener implements EntryRemovedListener<MemberKey, StateEntry>, EntryMergedListener<MemberKey, StateEntry> {
+
+        @Override
+        public void entryRemoved(EntryEvent<MemberKey, StateEntry> event) {
+
+            removeMember(event.getKey());
+        }
+
+        @Override
+        public void entryMerged(EntryEvent<MemberKey, StateEntry> event) {
+
+            updateMember(event.getKey(), event.getValue());
+        }
+    }
+
+    private class RegistryListener implements EntryAddedListener<String, MemberKey>, EntryUpdatedListener<String, MemberKey>,
+            EntryRemovedListener<String, MemberKey>, EntryMergedListener<String, MemberKey> {
+
+        @Override
+        public void entryAdded(EntryEvent<String, MemberKey> event) {
+
+            names.put(event.getValue(), event.getKey());
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<String, MemberKey> event) {
+
+            names.put(event.getValue(), event.getKey());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<String, MemberKey> event) {
+
+            // Keep the name until the member's clusterState entry is gone too, so its removal can still be reported
+            // by name
+            if (!members.containsKey(event.getOldValue())) {
+
+                names.remove(event.getOldValue());
+            }
+        }
+
+        @Override
+        public void entryMerged(EntryEvent<String, MemberKey> event) {
+
+            names.put(event.getValue(), event.getKey());
+        }
+    }
+
+    private class LeaseListener implements EntryAddedListener<String, LeaderLease>, EntryUpdatedListener<String, LeaderLease>,
+            EntryRemovedListener<String, LeaderLease>, EntryMergedListener<String, LeaderLease> {
+
+        @Override
+        public void entryAdded(EntryEvent<String, LeaderLease> event) {
+
+            updateLeader(event.getValue());
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<String, LeaderLease> event) {
+
+            updateLeader(event.getValue());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<String, LeaderLease> event) {
+
+            updateLeader(null);
+        }
+
+        @Override
+        public void entryMerged(EntryEvent<String, LeaderLease> event) {
+
+            updateLeader(event.getValue());
+        }
+    }
+
+    private class MetadataListener implements EntryAddedListener<String, String>, EntryUpdatedListener<String, String>,
+            EntryRemovedListener<String, String>, EntryMergedListener<String, String> {
+
+        @Override
+        public void entryAdded(EntryEvent<String, String> event) {
+
+            metadata.put(event.getKey(), event.getValue());
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<String, String> event) {
+
+            metadata.put(event.getKey(), event.getValue());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<String, String> event) {
+
+            metadata.remove(event.getKey());
+        }
+
+        @Override
+        public void entryMerged(EntryEvent<String, String> event) {
+
+            metadata.put(event.getKey(), event.getValue());
+        }
+    }
+
+    private static class Waiter {
+
+        private final BooleanSupplier condition;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(BooleanSupplier condition) {
+
+            this.condition = condition;
+        }
+    }
+
+    // The changes to the view since a version, as of version
+    static class Delta {
+
+        private final long version;
+        private final boolean isFull;
+        private final LeaderLease leader;
+        private final Map<MemberKey, StateEntry> members = new LinkedHashMap<>();
+        private final Map<MemberKey, String> removed = new LinkedHashMap<>();
+
+        private Delta(long version, boolean isFull, LeaderLease leader) {
+
+            this.version = version;
+            this.isFull = isFull;
+            this.leader = leader;
+        }
+
+        // Pass this version as since to get the next delta
+        long getVersion() {
+
+            return this.version;
+        }
+
+        boolean isFull() {
+
+            return this.isFull;
+        }
+
+        LeaderLease getLeader() {
+
+            return this.leader;
+        }
+
+        // Members that joined or changed status, in the order they did
+        Map<MemberKey, StateEntry> getMembers() {
+
+            return this.members;
+        }
+
+        // Members that were removed, with their names where known
+        Map<MemberKey, String> getRemoved() {
+
+            return this.removed;
+        }
+    }
+}
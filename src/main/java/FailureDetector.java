@@ -0,0 +1,36 @@
+// Decides whether a member is still alive from the arrival times of its heartbeats. Arrival times are taken from the
+// observer's monotonic clock (milliseconds) when a heartbeat is seen, never from the member's own timestamp.
+public interface FailureDetector {
+
+    // Record a heartbeat from the member that arrived at the given time
+    void heartbeat(MemberKey key, long arrivalMillis);
+
+    // How suspicious the member is at the given time. 0 means a heartbeat just arrived, and the value grows the
+    // longer the member is silent. Members that have never heartbeated have a suspicion of 0.
+    double suspicion(MemberKey key, long nowMillis);
+
+    boolean isAvailable(MemberKey key, long nowMillis);
+
+    // Forget a member that has left or been removed from the cluster
+    void remove(MemberKey key);
+
+    // Select the implementation with -Dmembership.failureDetector=phi (the default) or timeout
+    static FailureDetector fromSystemProperties() {
+
+        String type = System.getProperty("membership.failureDetector", "phi");
+
+        switch (type) {
+            case "phi":
+                return new PhiAccrualFailureDetector(
+                        Double.parseDouble(System.getProperty("membership.phi.threshold", "8.0")),
+                        Integer.getInteger("membership.phi.maxSamples", 200),
+                        Long.getLong("membership.phi.minStdDevMs", 500L),
+                        Long.getLong("membership.phi.acceptablePauseMs", 3000L),
+                        Long.getLong("membership.phi.firstHeartbeatEstimateMs", MembershipManager.HEARTBEAT_INTERVAL_MILLIS));
+            case "timeout":
+                return new TimeoutFailureDetector(Long.getLong("membership.node.timeout.ms", 10000L));
+            default:
+                throw new IllegalArgumentException("Unknown failure detector: " + type);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.ICompletableFuture;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Adapts Hazelcast's async map operations to CompletableFuture, so they can be composed and pipelined. The returned
+// future completes on a Hazelcast async thread, so anything that blocks should continue on another executor.
+final class Futures {
+
+    private static final MembershipMetrics METRICS = MembershipMetrics.getMetrics();
+
+    private Futures() { }
+
+    // Completes with the map operation, which is recorded against the named map when it does
+    static <T> CompletableFuture<T> of(String map, ICompletableFuture<T> future) {
+
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        future.andThen(new ExecutionCallback<T>() {
+
+            @Override
+            public void onResponse(T response) {
+
+                METRICS.recordMapOperation(map, start);
+                result.complete(response);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+
+                METRICS.recordMapOperation(map, start);
+                result.completeExceptionally(t);
+            }
+        });
+
+        return result;
+    }
+
+    // A future that has already failed, as CompletableFuture.failedFuture does from Java 9
+    static <T> CompletableFuture<T> failed(Throwable t) {
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(t);
+
+        return result;
+    }
+
+    // The exception a stage failed with, without the CompletionException wrapping it
+    static Throwable cause(Throwable t) {
+
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+}
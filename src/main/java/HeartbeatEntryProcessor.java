@@ -0,0 +1,97 @@
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Updates the heartbeat of a StateEntry in place on the partition owner (and its backups), so a heartbeat is a
+// single round trip that only carries the key and a timestamp instead of a get followed by a set of the full entry.
+// The first heartbeat of a JOINING member also brings it ONLINE, which finalizes its join: a member that can heartbeat
+// is ready.
+//
+// The heartbeat is the sender's wall clock in milliseconds, raised if need be to one more than the stored heartbeat, so
+// every heartbeat changes the entry and a member's heartbeats only ever increase, whatever its clock does. Liveness is
+// never judged from this value: observers time the arrival of each change with their own monotonic clock, so clock
+// skew between nodes does not count against the detection timeout.
+public class HeartbeatEntryProcessor implements EntryProcessor<MemberKey, StateEntry>, EntryBackupProcessor<MemberKey, StateEntry>,
+        IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long heartbeat;
+
+    public HeartbeatEntryProcessor() { }
+
+    // The processor is reused by HeartbeatService between ticks. executeOnKey blocks until the operation (and its
+    // backups) has completed, so it is safe to update the timestamp before the next call.
+    HeartbeatEntryProcessor setHeartbeat(long heartbeat) {
+
+        this.heartbeat = heartbeat;
+
+        return this;
+    }
+
+    @Override
+    public Object process(Map.Entry<MemberKey, StateEntry> entry) {
+
+        StateEntry state = entry.getValue();
+
+        // The member may have been removed between ticks, in which case there is nothing to update
+        if (state == null) {
+
+            return false;
+        }
+
+        boolean isJoining = state.getStatus() == ClusterStatus.JOINING;
+
+        state.updateHeartbeat(Math.max(this.heartbeat, state.getHeartbeat() + 1));
+
+        // After the heartbeat, so the write counts as a change and reaches the views
+        if (isJoining) {
+
+            state.updateStatus(ClusterStatus.ONLINE);
+        }
+
+        entry.setValue(state);
+
+        // Whether this heartbeat finalized the member's join
+        return isJoining;
+    }
+
+    @Override
+    public EntryBackupProcessor<MemberKey, StateEntry> getBackupProcessor() {
+
+        return this;
+    }
+
+    @Override
+    public void processBackup(Map.Entry<MemberKey, StateEntry> entry) {
+
+        this.process(entry);
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeLong(heartbeat);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        heartbeat = in.readLong();
+    }
+
+    @Override
+    public int getFactoryId() {
+
+        return StateEntryDataSerializableFactory.ID;
+    }
+
+    @Override
+    public int getId() {
+
+        return StateEntryDataSerializableFactory.HEARTBEAT_PROCESSOR_TYPE;
+    }
+}
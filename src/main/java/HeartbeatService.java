@@ -5,10 +5,21 @@ public class HeartbeatService implements Runnable {
     private HazelcastInstance instance;
     private Member member;
 
+    // Resolved once so that a heartbeat tick does not allocate a key or a processor
+    private final MemberKey key;
+    private final IMap<MemberKey, StateEntry> mapClusterState;
+    private final HeartbeatEntryProcessor heartbeatProcessor = new HeartbeatEntryProcessor();
+    private final MembershipMetrics metrics = MembershipMetrics.getMetrics();
+
+    // The service is started as soon as a join is staged, so this is when the member started joining
+    private final long startedAt = System.nanoTime();
+
     public HeartbeatService(HazelcastInstance instance, Member member) {
 
         this.instance = instance;
         this.member = member;
+        this.key = member.getKey();
+        this.mapClusterState = instance.getMap("clusterState");
     }
 
     public void run() {
@@ -16,14 +27,19 @@ public class HeartbeatService implements Runnable {
         this.sendHeartbeat();
     }
 
+    // Update the heartbeat on the partition owner with a single entry processor call
     private void sendHeartbeat() {
 
-        String uuid = this.member.getUUID().toString();
+        long start = System.nanoTime();
+
+        Object isFinalized = this.mapClusterState.executeOnKey(this.key,
+                this.heartbeatProcessor.setHeartbeat(System.currentTimeMillis()));
 
-        IMap<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+        this.metrics.recordHeartbeat(start);
 
-        StateEntry state = mapClusterState.get(uuid);
+        if (Boolean.TRUE.equals(isFinalized)) {
 
-        mapClusterState.set(uuid, state.updateHeartbeat(System.currentTimeMillis() / 1000L));
+            this.metrics.recordTimeToOnline(this.startedAt);
+        }
     }
 }
@@ -0,0 +1,83 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// A latency histogram with fixed power of two buckets in microseconds. Recording is lock-free and does not allocate,
+// so it can sit on every heartbeat and map operation. Percentiles are the upper bound of the bucket they fall in, so
+// they are accurate to within a factor of two.
+class Histogram {
+
+    private static final int BUCKETS = 40;
+
+    // Bucket i counts values below 2^i microseconds that did not fit in bucket i - 1
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void record(long nanos) {
+
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0L, nanos));
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+        this.buckets.incrementAndGet(bucket);
+        this.count.increment();
+        this.sumMicros.add(micros);
+
+        long max = this.maxMicros.get();
+
+        while (micros > max && !this.maxMicros.compareAndSet(max, micros)) {
+
+            max = this.maxMicros.get();
+        }
+    }
+
+    // Record the time elapsed since a System.nanoTime() reading
+    void recordSince(long startNanos) {
+
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    long getCount() {
+
+        return this.count.sum();
+    }
+
+    long getMeanMicros() {
+
+        long count = this.count.sum();
+
+        return count == 0 ? 0L : this.sumMicros.sum() / count;
+    }
+
+    long getMaxMicros() {
+
+        return this.maxMicros.get();
+    }
+
+    long getPercentileMicros(double percentile) {
+
+        long count = 0L;
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            count += this.buckets.get(i);
+        }
+
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        long seen = 0L;
+
+        for (int i = 0; i < BUCKETS && count > 0; i++) {
+
+            seen += this.buckets.get(i);
+
+            if (seen >= rank) {
+
+                return Math.min(this.getMaxMicros(), (1L << i) - 1);
+            }
+        }
+
+        return 0L;
+    }
+}
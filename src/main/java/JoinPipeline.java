@@ -0,0 +1,151 @@
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ICompletableFuture;
+import com.hazelcast.core.IMap;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+// Stages the join of one or many members. Every name is reserved with an atomic putIfAbsent on its partition owner,
+// with all reservations in flight at once, and the JOINING states of the members that won their names are written in
+// a single putAll. A member is then finalized to ONLINE by its first heartbeat (see HeartbeatEntryProcessor), so
+// bootstrapping a few hundred members takes a few round trips rather than a fixed delay each.
+class JoinPipeline {
+
+    private final IMap<String, MemberKey> mapRegistry;
+    private final IMap<MemberKey, StateEntry> mapClusterState;
+    private final MembershipMetrics metrics = MembershipMetrics.getMetrics();
+
+    JoinPipeline(HazelcastInstance instance) {
+
+        this.mapRegistry = instance.getMap("registry");
+        this.mapClusterState = instance.getMap("clusterState");
+    }
+
+    // The outcome for each member, in the order given
+    Map<Member, Result> stage(Collection<Member> members) {
+
+        Map<Member, Result> results = new LinkedHashMap<>();
+        Map<Member, ICompletableFuture<Object>> reservations = new LinkedHashMap<>();
+        Map<MemberKey, StateEntry> states = new HashMap<>();
+
+        long start = System.nanoTime();
+
+        for (Member member : members) {
+
+            reservations.put(member, this.reserve(member));
+        }
+
+        for (Map.Entry<Member, ICompletableFuture<Object>> reservation : reservations.entrySet()) {
+
+            Member member = reservation.getKey();
+
+            try {
+
+                if (member.getKey().equals(reservation.getValue().get())) {
+
+                    states.put(member.getKey(), new StateEntry(ClusterStatus.JOINING, 0L, member.getAttributes()));
+                    results.put(member, joining(member));
+
+                } else {
+
+                    results.put(member, nameTaken());
+                }
+
+            } catch (InterruptedException | ExecutionException e) {
+
+                results.put(member, reservationFailed(member, e));
+            }
+        }
+
+        this.metrics.recordMapOperation("registry", start);
+
+        if (states.isEmpty()) {
+
+            return results;
+        }
+
+        start = System.nanoTime();
+
+        try {
+
+            this.mapClusterState.putAll(states);
+
+        } catch (RuntimeException e) {
+
+            // Give the names back, so the members can try again
+            for (Member member : members) {
+
+                if (states.containsKey(member.getKey())) {
+
+                    this.mapRegistry.remove(member.getName(), member.getKey());
+                    results.put(member, stagingFailed(member, e));
+                }
+            }
+        }
+
+        this.metrics.recordMapOperation("clusterState", start);
+
+        return results;
+    }
+
+    // Stage one member's join without blocking. The JOINING state is written as soon as the name is reserved, and
+    // the future completes with the outcome rather than exceptionally.
+    CompletableFuture<Result> stageAsync(Member member) {
+
+        return Futures.of("registry", this.reserve(member)).thenCompose(holder -> {
+
+            if (!member.getKey().equals(holder)) {
+
+                return CompletableFuture.completedFuture(nameTaken());
+            }
+
+            return Futures.of("clusterState", this.mapClusterState.putAsync(member.getKey(), new StateEntry(ClusterStatus.JOINING, 0L, member.getAttributes())))
+                    .handle((previous, e) -> {
+
+                        if (e == null) {
+
+                            return joining(member);
+                        }
+
+                        // Give the name back, so the member can try again
+                        this.mapRegistry.remove(member.getName(), member.getKey());
+
+                        return stagingFailed(member, Futures.cause(e));
+                    });
+
+        }).exceptionally(e -> reservationFailed(member, Futures.cause(e)));
+    }
+
+    /******************************************************************************************************************/
+
+    // submitToKey returns a raw future; the processor's result is the member holding the name
+    @SuppressWarnings("unchecked")
+    private ICompletableFuture<Object> reserve(Member member) {
+
+        return this.mapRegistry.submitToKey(member.getName(), new ReserveNameProcessor(member.getKey()));
+    }
+
+    private static Result joining(Member member) {
+
+        return new Result(ResultStatus.SUCCESS, member.toString() + " is " + ClusterStatus.JOINING.toString());
+    }
+
+    private static Result nameTaken() {
+
+        return new Result(ResultStatus.FAILED, "This member name already exists in the cluster with a different UUID.");
+    }
+
+    private static Result reservationFailed(Member member, Throwable e) {
+
+        return new Result(ResultStatus.FAILED, "Error reserving name " + member.getName() + ": " + e.getMessage());
+    }
+
+    private static Result stagingFailed(Member member, Throwable e) {
+
+        return new Result(ResultStatus.FAILED, "Error staging " + member.getName() + ": " + e.getMessage());
+    }
+}
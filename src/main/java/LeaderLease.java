@@ -0,0 +1,86 @@
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+
+// The current leader and its fencing epoch. A new lease is only ever installed with a compare-and-set against the
+// lease it replaces, with the epoch incremented, so epochs are strictly increasing and at most one node wins each
+// election. The lease is renewed by the holder's ordinary heartbeat, so it is never rewritten while the leader is
+// healthy.
+public class LeaderLease implements IdentifiedDataSerializable {
+
+    private MemberKey holder;
+    private long epoch;
+
+    public LeaderLease() { }
+
+    LeaderLease(MemberKey holder, long epoch) {
+
+        this.holder = holder;
+        this.epoch = epoch;
+    }
+
+    public MemberKey getHolder() {
+
+        return this.holder;
+    }
+
+    public long getEpoch() {
+
+        return this.epoch;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        holder.writeData(out);
+        out.writeLong(epoch);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        holder = new MemberKey();
+        holder.readData(in);
+        epoch = in.readLong();
+    }
+
+    @Override
+    public int getFactoryId() {
+
+        return StateEntryDataSerializableFactory.ID;
+    }
+
+    @Override
+    public int getId() {
+
+        return StateEntryDataSerializableFactory.LEADER_LEASE_TYPE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof LeaderLease)) {
+
+            return false;
+        }
+
+        LeaderLease other = (LeaderLease) o;
+
+        return this.epoch == other.epoch && this.holder.equals(other.holder);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return 31 * this.holder.hashCode() + Long.hashCode(this.epoch);
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder leaseString = new StringBuilder();
+        leaseString.append(this.holder).append(" (epoch ").append(this.epoch).append(")");
+
+        return leaseString.toString();
+    }
+}
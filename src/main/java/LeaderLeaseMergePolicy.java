@@ -0,0 +1,40 @@
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.spi.merge.SplitBrainMergePolicy;
+import com.hazelcast.spi.merge.SplitBrainMergeTypes.MapMergeTypes;
+
+import java.io.IOException;
+
+// Merges the leader leases of the two sides of a split brain once it heals: the lease with the higher epoch wins, and
+// between leases of the same epoch, elected separately on each side, the holder with the lower key. Every node sees the
+// same lease win, and the other leader steps down as soon as it sees it.
+public class LeaderLeaseMergePolicy implements SplitBrainMergePolicy<Data, MapMergeTypes> {
+
+    @Override
+    public Data merge(MapMergeTypes mergingValue, MapMergeTypes existingValue) {
+
+        if (existingValue == null) {
+
+            return mergingValue.getValue();
+        }
+
+        LeaderLease merging = mergingValue.getDeserializedValue();
+        LeaderLease existing = existingValue.getDeserializedValue();
+
+        if (merging.getEpoch() != existing.getEpoch()) {
+
+            return merging.getEpoch() > existing.getEpoch() ? mergingValue.getValue() : existingValue.getValue();
+        }
+
+        return merging.getHolder().compareTo(existing.getHolder()) < 0 ? mergingValue.getValue() : existingValue.getValue();
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+    }
+}
@@ -1,135 +1,793 @@
 import com.hazelcast.core.*;
-import com.hazelcast.transaction.*;
-
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.logging.Logger;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LeaderService implements Runnable {
 
-    private static final int NODE_TIMEOUT_SECONDS = 10;
+    private static final ILogger LOGGER = Logger.getLogger(LeaderService.class);
+
+    // How long the leader may go without a heartbeat before another node may take over. This is the failover time.
+    private static final long LEASE_DURATION_MILLIS = Long.getLong("membership.leader.lease.ms", 25000L);
+
+    // How failures are detected. With "ring", every node watches its successors on a ring of the members ordered by
+    // key and reports suspicions, and the leader commits those that a quorum of a member's monitors agree on. With
+    // "leader", the leader checks every member.
+    private static final boolean IS_RING_DETECTION = !"leader".equals(System.getProperty("membership.detection", "ring"));
+
+    // How many live successors each node watches, so a failure goes unreported only if all of its monitors fail too
+    private static final int RING_MONITORS = Integer.getInteger("membership.ring.monitors", 3);
+
+    // Monitors renew their reports every half of this, so a report outlives a leader tick but not a dead monitor
+    private static final long REPORT_TTL_MILLIS = 3L * MembershipManager.LEADER_INTERVAL_MILLIS;
+
+    static final String LEASE_KEY = "leader";
+
     private HazelcastInstance instance;
     private Member member;
-    private boolean isLeader;
 
-    public LeaderService(HazelcastInstance instance, Member member) {
+    private final MemberKey key;
+    private final ClusterView clusterView;
+    private final IMap<String, LeaderLease> mapLeadership;
+    private final IMap<MemberKey, StateEntry> mapClusterState;
+    private final IMap<String, Suspicion> mapSuspicions;
+
+    // The local (System.nanoTime) deadline by which the current lease holder must heartbeat
+    private volatile long leaseExpiresAt;
+    private volatile LeaderLease lease;
+
+    // Heartbeats are not part of the cluster view's events, so each node listens for the heartbeats of the members it
+    // watches: the lease holder, its successors on the ring, and with leader detection every member while it leads.
+    // The listeners are filtered by key on the partition owners, so no node receives every member's heartbeats. The
+    // last heartbeat seen from each watched member is the cutoff for its transitions.
+    private final FailureDetector failureDetector;
+    private final Map<MemberKey, Long> heartbeats = new ConcurrentHashMap<>();
+
+    // Guarded by runLock
+    private final Map<MemberKey, String> watchIds = new HashMap<>();
+    private String allWatchId;
+    private final MembershipView.Listener viewListener = new ViewListener();
+
+    // Every member in the view, in key order, and the keys this node watches from: its own, or every member hosted
+    private final NavigableSet<MemberKey> ring = new ConcurrentSkipListSet<>();
+    private volatile Collection<MemberKey> ringPositions;
+
+    // The last report made for each watched member, and when (System.nanoTime)
+    private final Map<String, Suspicion> reports = new ConcurrentHashMap<>();
+    private final Map<String, Long> reportedAt = new ConcurrentHashMap<>();
+
+    // While this node is the leader, the reports in the suspicions map by suspected member, then by monitor
+    private final Map<MemberKey, Map<MemberKey, Suspicion>> suspicions = new ConcurrentHashMap<>();
+
+    // Registered while this node is the leader. Confirmed transitions are counted towards the next tick.
+    private volatile String suspicionListenerId;
+    private final AtomicInteger confirmedTransitions = new AtomicInteger();
+
+    // Ticks and stop are serialized on this lock, so a stopped service never registers a listener or takes the lease.
+    // Lease events lock this instead, so a slow tick never holds them up.
+    private final Object runLock = new Object();
+    private volatile boolean isStopped;
+
+    private final MembershipMetrics metrics = MembershipMetrics.getMetrics();
+
+    public LeaderService(HazelcastInstance instance, Member member, ClusterView clusterView) {
 
         this.instance = instance;
         this.member = member;
-        this.isLeader = false;
+        this.key = member.getKey();
+        this.clusterView = clusterView;
+        this.mapLeadership = instance.getMap("leadership");
+        this.mapClusterState = instance.getMap("clusterState");
+        this.mapSuspicions = instance.getMap("suspicions");
+        this.failureDetector = FailureDetector.fromSystemProperties();
+        this.ringPositions = Collections.singleton(this.key);
+        this.ring.addAll(clusterView.getMembers().keySet());
+
+        this.clusterView.addListener(this.viewListener);
+        this.observeLease(this.clusterView.getLeader());
     }
 
     public void run() {
 
+        synchronized (this.runLock) {
+
+            if (!this.isStopped) {
+
+                this.tick();
+            }
+        }
+    }
+
+    boolean isLeader() {
+
+        LeaderLease current = this.lease;
+
+        return current != null && current.getHolder().equals(this.key) && !this.isLeaseExpired();
+    }
+
+    // The fencing epoch of the current leader, or 0 if no leader has been elected yet
+    long getEpoch() {
+
+        LeaderLease current = this.lease;
+
+        return current == null ? 0L : current.getEpoch();
+    }
+
+    // Watch the ring from each of these members rather than only from this node's own member
+    void setRingPositions(Collection<MemberKey> positions) {
+
+        this.ringPositions = positions;
+    }
+
+    // Waits for a tick in progress to finish, and no tick runs after
+    void stop() {
+
+        synchronized (this.runLock) {
+
+            this.isStopped = true;
+            this.clusterView.removeListener(this.viewListener);
+            this.watchHeartbeats(Collections.emptySet(), false);
+
+            String listenerId = this.suspicionListenerId;
+
+            if (listenerId != null) {
+
+                this.suspicionListenerId = null;
+                this.mapSuspicions.removeEntryListener(listenerId);
+                this.suspicions.clear();
+            }
+        }
+    }
+
+    private void tick() {
+
+        long start = System.nanoTime();
+        int transitions = 0;
+
         this.maybeBecomeLeader();
 
-        if(this.isLeader) {
+        Map<MemberKey, Set<MemberKey>> successors = IS_RING_DETECTION ? this.successors() : Collections.emptyMap();
 
-            Map<String, String> mapMetadata = instance.getMap("metadata");
+        this.watchHeartbeats(successors.keySet(), !IS_RING_DETECTION && this.isLeader());
 
-            maybeChangeStatus();
+        if (IS_RING_DETECTION) {
+
+            this.monitorSuccessors(successors);
+            this.followSuspicions();
+        }
 
-            if (!Boolean.parseBoolean(mapMetadata.get("printed"))) {
+        int confirmed = this.confirmedTransitions.getAndSet(0);
+
+        if(this.isLeader()) {
+
+            transitions = IS_RING_DETECTION ? confirmed : maybeChangeStatus();
+
+            if (!Boolean.parseBoolean(this.clusterView.getMetadata("printed"))) {
 
                 maybePrintMessage();
             }
         }
+
+        this.metrics.recordLeaderTick(start, transitions);
     }
 
+    // Followers only check the lease in the local view. The lease map is written when there is no leader yet, or
+    // when the holder has missed its heartbeats for longer than the lease duration.
     private void maybeBecomeLeader() {
 
-        Map<String, String> mapMetadata = instance.getMap("metadata");
-        Map<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+        LeaderLease current = this.lease;
+
+        if (current == null) {
 
-        String currentLeader = mapMetadata.get("leader");
+            this.tryAcquireLease(null);
 
-        Long currentTime = System.currentTimeMillis() / 1000L;
+        } else if (this.isLeaseExpired()) {
 
-        if (currentLeader == null || !mapClusterState.containsKey(currentLeader)) {
+            // A leader whose own heartbeats have lapsed steps down and leaves the next election to the other
+            // nodes for one lease duration, rather than immediately re-electing itself
+            boolean isOwnLease = current.getHolder().equals(this.key);
+
+            if (!isOwnLease || System.nanoTime() - this.leaseExpiresAt >= TimeUnit.MILLISECONDS.toNanos(LEASE_DURATION_MILLIS)) {
+
+                this.tryAcquireLease(current);
+            }
+        }
+    }
+
+    private void tryAcquireLease(LeaderLease current) {
+
+        if (current == null) {
+
+            this.mapLeadership.putIfAbsent(LEASE_KEY, new LeaderLease(this.key, 1L));
 
-            this.becomeLeader();
         } else {
 
-            StateEntry leaderStateEntry = mapClusterState.get(currentLeader);
+            this.mapLeadership.replace(LEASE_KEY, current, new LeaderLease(this.key, current.getEpoch() + 1));
+        }
 
-            if ((currentTime - leaderStateEntry.getHeartbeat()) > NODE_TIMEOUT_SECONDS) {
+        // A single compare-and-set decides the election. Whether we won or lost, pick up the lease now installed
+        // rather than waiting for the event to reach the view.
+        this.observeLease(this.mapLeadership.get(LEASE_KEY));
+    }
 
-                becomeLeader();
-            }
+    private synchronized void observeLease(LeaderLease lease) {
+
+        if (lease == null || lease.equals(this.lease)) {
+
+            return;
         }
+
+        if (this.lease != null && lease.getEpoch() < this.lease.getEpoch()) {
+
+            return;
+        }
+
+        if (this.lease != null) {
+
+            this.metrics.recordLeaderChange();
+        }
+
+        // Give a new holder a full lease duration to heartbeat, unless it has already left the cluster. The deadline is
+        // set before the lease is published, so a tick never sees the new lease with the old deadline.
+        if (this.clusterView.getMember(lease.getHolder()) != null) {
+
+            this.renewLease();
+
+        } else {
+
+            this.leaseExpiresAt = System.nanoTime();
+        }
+
+        this.lease = lease;
+    }
+
+    private void renewLease() {
+
+        this.leaseExpiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LEASE_DURATION_MILLIS);
+    }
+
+    private boolean isLeaseExpired() {
+
+        return System.nanoTime() - this.leaseExpiresAt >= 0;
     }
 
-    private void becomeLeader() {
+    private boolean isLeaseHolder(MemberKey memberKey) {
+
+        LeaderLease current = this.lease;
+
+        return current != null && current.getHolder().equals(memberKey);
+    }
+
+    // Listen for the heartbeats of the lease holder and the given members, or of every member. A member's detector
+    // history starts when it is first watched, from its current entry, and ends when it is no longer watched.
+    private void watchHeartbeats(Set<MemberKey> members, boolean isAllWatched) {
+
+        Set<MemberKey> watched = new HashSet<>(members);
+        LeaderLease current = this.lease;
+
+        if (current != null && !this.isStopped) {
+
+            watched.add(current.getHolder());
+        }
+
+        if (isAllWatched) {
+
+            watched.addAll(this.clusterView.getMembers().keySet());
+
+            if (this.allWatchId == null) {
+
+                this.allWatchId = this.mapClusterState.addEntryListener(new HeartbeatListener(), true);
+            }
+
+        } else if (this.allWatchId != null) {
+
+            this.mapClusterState.removeEntryListener(this.allWatchId);
+            this.allWatchId = null;
+        }
+
+        for (Iterator<Map.Entry<MemberKey, String>> i = this.watchIds.entrySet().iterator(); i.hasNext(); ) {
+
+            Map.Entry<MemberKey, String> watch = i.next();
+
+            if (isAllWatched || !watched.contains(watch.getKey())) {
+
+                this.mapClusterState.removeEntryListener(watch.getValue());
+                i.remove();
+            }
+        }
+
+        // Heartbeats still in flight to a removed listener are dropped here on the next tick
+        for (MemberKey memberKey : new ArrayList<>(this.heartbeats.keySet())) {
+
+            if (!watched.contains(memberKey)) {
+
+                this.heartbeats.remove(memberKey);
+                this.failureDetector.remove(memberKey);
+            }
+        }
+
+        Set<MemberKey> unseen = new HashSet<>();
+
+        for (MemberKey memberKey : watched) {
 
-        TransactionOptions options = new TransactionOptions().setTransactionType(TransactionOptions.TransactionType.TWO_PHASE);
+            if (!isAllWatched && !this.watchIds.containsKey(memberKey)) {
 
-        TransactionContext context = instance.newTransactionContext(options);
+                this.watchIds.put(memberKey, this.mapClusterState.addEntryListener(new HeartbeatListener(), memberKey, true));
+            }
 
-        context.beginTransaction();
+            if (!this.heartbeats.containsKey(memberKey)) {
+
+                unseen.add(memberKey);
+            }
+        }
 
-        TransactionalMap<String, String> map = context.getMap("metadata");
+        // Read the entries only once the listeners are in place, so no heartbeat falls between the two
+        if (!unseen.isEmpty()) {
 
-        try {
+            long now = monotonicMillis();
 
-            map.put("leader", this.member.getUUID().toString());
-            context.commitTransaction();
-            this.isLeader = true;
+            for (Map.Entry<MemberKey, StateEntry> entry : this.mapClusterState.getAll(unseen).entrySet()) {
 
-        } catch ( Throwable t ) {
+                if (this.heartbeats.putIfAbsent(entry.getKey(), entry.getValue().getHeartbeat()) == null) {
 
-            context.rollbackTransaction();
-            this.isLeader = false;
-            throw t;
+                    this.failureDetector.heartbeat(entry.getKey(), now);
+                }
+            }
         }
     }
 
-    private void maybeChangeStatus() {
+    // A heartbeat newer than the last one seen from the member is an arrival. Status changes made by the leader keep
+    // the heartbeat, so they are not. Every heartbeat of the lease holder renews its lease.
+    private void heartbeatSeen(MemberKey memberKey, long heartbeat) {
+
+        Long previous = this.heartbeats.get(memberKey);
 
-        IMap<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+        if (previous == null || heartbeat > previous) {
 
-        Long currentTime = System.currentTimeMillis() / 1000L;
+            this.heartbeats.merge(memberKey, heartbeat, Math::max);
+            this.failureDetector.heartbeat(memberKey, monotonicMillis());
 
-        for (Map.Entry<String, StateEntry> entry : mapClusterState.entrySet()) {
+            if (this.isLeaseHolder(memberKey)) {
+
+                this.renewLease();
+            }
+        }
+    }
+
+    // Without ring detection, ask the failure detector about every member in the view, and apply the resulting
+    // transitions on the owning partitions, all in flight at once. Liveness is judged from when this node saw each
+    // heartbeat arrive, which the wall-clock heartbeat values in clusterState cannot answer, so the view is scanned in
+    // place of the indexed stale and recovered queries. This only reads local memory. Returns the number of members
+    // transitioned.
+    private int maybeChangeStatus() {
+
+        long now = monotonicMillis();
+
+        Map<MemberKey, StatusTransitionProcessor> transitions = new HashMap<>();
+
+        // Each member's cutoff is the heartbeat seen from it, since heartbeats carry the sender's own clock and
+        // cannot be compared across members. A failed member that heartbeats before its transition is applied is left
+        // ONLINE by the processor.
+        for (Map.Entry<MemberKey, StateEntry> entry : this.clusterView.getMembers().entrySet()) {
 
             StateEntry state = entry.getValue();
+            Long heartbeat = this.heartbeats.get(entry.getKey());
+
+            if (heartbeat == null) {
+
+                continue;
+            }
 
-            if (((currentTime - state.getHeartbeat()) > NODE_TIMEOUT_SECONDS) && entry.getValue().getStatus() == ClusterStatus.ONLINE) {
+            boolean isAvailable = this.failureDetector.isAvailable(entry.getKey(), now);
 
-                mapClusterState.set(entry.getKey(), state.updateStatus(ClusterStatus.OFFLINE));
+            if (state.getStatus() == ClusterStatus.ONLINE && !isAvailable) {
 
-            } else if (((currentTime - state.getHeartbeat()) <= NODE_TIMEOUT_SECONDS) && entry.getValue().getStatus() == ClusterStatus.OFFLINE) {
+                transitions.put(entry.getKey(), new StatusTransitionProcessor(ClusterStatus.ONLINE, ClusterStatus.OFFLINE,
+                        heartbeat + 1));
 
-                mapClusterState.set(entry.getKey(), state.updateStatus(ClusterStatus.ONLINE));
+            } else if (state.getStatus() == ClusterStatus.OFFLINE && isAvailable) {
+
+                transitions.put(entry.getKey(), new StatusTransitionProcessor(ClusterStatus.OFFLINE, ClusterStatus.ONLINE,
+                        heartbeat));
             }
         }
+
+        return transitions.isEmpty() ? 0 : this.applyTransitions(transitions);
     }
 
-    private void maybePrintMessage() {
+    // The members this node watches, each with the ring positions it is watched from
+    private Map<MemberKey, Set<MemberKey>> successors() {
 
-        Map<String, String> mapMetadata = instance.getMap("metadata");
+        Map<MemberKey, Set<MemberKey>> successors = new LinkedHashMap<>();
 
-        boolean areAllOnline = true;
+        for (MemberKey position : this.ringPositions) {
 
-        Map<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+            this.addSuccessors(position, successors);
+        }
 
-        for (Map.Entry<String, StateEntry> entry : mapClusterState.entrySet()) {
+        return successors;
+    }
 
-            StateEntry state = entry.getValue();
+    // Ask the failure detector about the members this node watches, and report those whose status should change, once
+    // from each position that watches them, as each position is one of the member's monitors. Each node only evaluates
+    // about RING_MONITORS members per position, so the whole cluster is checked every tick at a constant cost per node.
+    // A report is repeated only once it is about to expire, and withdrawn once the monitor no longer makes it.
+    private void monitorSuccessors(Map<MemberKey, Set<MemberKey>> successors) {
+
+        long now = monotonicMillis();
+
+        for (Map.Entry<MemberKey, Set<MemberKey>> successor : successors.entrySet()) {
+
+            MemberKey memberKey = successor.getKey();
+            StateEntry state = this.clusterView.getMember(memberKey);
+            Long heartbeat = this.heartbeats.get(memberKey);
+
+            if (state == null || heartbeat == null) {
+
+                continue;
+            }
+
+            boolean isAvailable = this.failureDetector.isAvailable(memberKey, now);
+            ClusterStatus proposed = null;
+
+            if (state.getStatus() == ClusterStatus.ONLINE && !isAvailable) {
+
+                proposed = ClusterStatus.OFFLINE;
+
+            } else if (state.getStatus() == ClusterStatus.OFFLINE && isAvailable) {
+
+                proposed = ClusterStatus.ONLINE;
+            }
 
-            if (state.getStatus() != ClusterStatus.ONLINE) {
+            for (MemberKey position : successor.getValue()) {
 
-                areAllOnline = false;
+                if (proposed == null) {
+
+                    this.withdraw(Suspicion.key(memberKey, position));
+
+                } else {
+
+                    this.report(new Suspicion(memberKey, position, proposed, heartbeat));
+                }
             }
         }
+    }
+
+    // The members clockwise from the position up to and including the RING_MONITORS-th live one. OFFLINE members on
+    // the way are watched too, so a member's monitors are never all dead members, and so recoveries are seen.
+    private void addSuccessors(MemberKey position, Map<MemberKey, Set<MemberKey>> watched) {
+
+        int live = 0;
+
+        for (NavigableSet<MemberKey> arc : Arrays.asList(this.ring.tailSet(position, false), this.ring.headSet(position, false))) {
+
+            for (MemberKey memberKey : arc) {
+
+                if (live >= RING_MONITORS) {
+
+                    return;
+                }
+
+                StateEntry state = this.clusterView.getMember(memberKey);
+
+                if (state == null) {
+
+                    continue;
+                }
+
+                watched.computeIfAbsent(memberKey, k -> new HashSet<>()).add(position);
+
+                if (state.getStatus() != ClusterStatus.OFFLINE) {
+
+                    live++;
+                }
+            }
+        }
+    }
+
+    private void report(Suspicion suspicion) {
+
+        String reportKey = suspicion.getKey();
+        Suspicion previous = this.reports.get(reportKey);
+        Long previousAt = this.reportedAt.get(reportKey);
+        long now = System.nanoTime();
+
+        if (previous != null && previous.getStatus() == suspicion.getStatus() && previousAt != null
+                && now - previousAt < TimeUnit.MILLISECONDS.toNanos(REPORT_TTL_MILLIS) / 2) {
+
+            return;
+        }
+
+        this.reports.put(reportKey, suspicion);
+        this.reportedAt.put(reportKey, now);
+
+        Futures.of("suspicions", this.mapSuspicions.putAsync(reportKey, suspicion, REPORT_TTL_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private void withdraw(String reportKey) {
+
+        this.reportedAt.remove(reportKey);
+
+        if (this.reports.remove(reportKey) != null) {
+
+            Futures.of("suspicions", this.mapSuspicions.removeAsync(reportKey));
+        }
+    }
+
+    // The leader follows the reports while it holds the lease, and takes up those made before it was elected
+    private void followSuspicions() {
+
+        boolean isLeader = this.isLeader();
+
+        if (isLeader && this.suspicionListenerId == null) {
+
+            this.suspicionListenerId = this.mapSuspicions.addEntryListener(new SuspicionListener(), true);
+
+            for (Suspicion suspicion : this.mapSuspicions.values()) {
+
+                this.suspected(suspicion);
+            }
+
+        } else if (!isLeader && this.suspicionListenerId != null) {
+
+            this.mapSuspicions.removeEntryListener(this.suspicionListenerId);
+            this.suspicionListenerId = null;
+            this.suspicions.clear();
+        }
+    }
+
+    private void suspected(Suspicion suspicion) {
+
+        this.suspicions.computeIfAbsent(suspicion.getSuspect(), k -> new ConcurrentHashMap<>())
+                .put(suspicion.getMonitor(), suspicion);
+        this.confirm(suspicion.getSuspect());
+    }
+
+    private void unsuspected(String reportKey) {
+
+        MemberKey suspect = Suspicion.suspectOf(reportKey);
+        Map<MemberKey, Suspicion> reported = this.suspicions.get(suspect);
+
+        if (reported != null) {
+
+            reported.remove(Suspicion.monitorOf(reportKey));
+        }
+    }
+
+    // Commit a member's transition once a quorum of its monitors report it, without waiting. The leader does not hear
+    // the member's heartbeats, so the cutoff comes from the reports: a member is taken OFFLINE only if it has not
+    // heartbeated since the latest heartbeat any of them saw. A monitor that has lost touch with the cluster cannot
+    // take members OFFLINE on its own, and only reported members are looked at. Reports that no longer apply are
+    // dropped.
+    private void confirm(MemberKey memberKey) {
+
+        // A report may still be delivered after the listener is removed
+        if (this.isStopped || !this.isLeader()) {
+
+            return;
+        }
+
+        Map<MemberKey, Suspicion> reported = this.suspicions.getOrDefault(memberKey, Collections.emptyMap());
+        StateEntry state = this.clusterView.getMember(memberKey);
+        ClusterStatus proposed = state == null ? null
+                : state.getStatus() == ClusterStatus.ONLINE ? ClusterStatus.OFFLINE
+                : state.getStatus() == ClusterStatus.OFFLINE ? ClusterStatus.ONLINE : null;
+
+        List<Suspicion> agreed = new ArrayList<>();
+        long minHeartbeat = Long.MAX_VALUE;
+        long maxHeartbeat = Long.MIN_VALUE;
+
+        for (Suspicion suspicion : reported.values()) {
+
+            if (suspicion.getStatus() != proposed) {
+
+                this.mapSuspicions.removeAsync(suspicion.getKey());
+                continue;
+            }
+
+            agreed.add(suspicion);
+            minHeartbeat = Math.min(minHeartbeat, suspicion.getHeartbeat());
+            maxHeartbeat = Math.max(maxHeartbeat, suspicion.getHeartbeat());
+        }
+
+        if (proposed == null || agreed.size() < this.quorum(state.getStatus())) {
+
+            return;
+        }
+
+        StatusTransitionProcessor processor = proposed == ClusterStatus.OFFLINE
+                ? new StatusTransitionProcessor(ClusterStatus.ONLINE, ClusterStatus.OFFLINE, maxHeartbeat + 1)
+                : new StatusTransitionProcessor(ClusterStatus.OFFLINE, ClusterStatus.ONLINE, minHeartbeat);
+
+        this.submitTransition(memberKey, processor).whenComplete((applied, t) -> {
+
+            if (t != null) {
+
+                LOGGER.warning("Error applying a status transition to " + memberKey, Futures.cause(t));
+
+            } else if (Boolean.TRUE.equals(applied)) {
+
+                this.confirmedTransitions.incrementAndGet();
+            }
 
-        if (areAllOnline) {
+            for (Suspicion suspicion : agreed) {
+
+                this.mapSuspicions.removeAsync(suspicion.getKey());
+            }
+        });
+    }
+
+    // A majority of the monitors a member in this status has: its RING_MONITORS live predecessors, or every other live
+    // member in a smaller cluster
+    private int quorum(ClusterStatus status) {
+
+        int live = this.clusterView.getCount(ClusterStatus.ONLINE) + this.clusterView.getCount(ClusterStatus.JOINING);
+        int others = status == ClusterStatus.OFFLINE ? live : live - 1;
+
+        return Math.min(RING_MONITORS, Math.max(others, 1)) / 2 + 1;
+    }
+
+    // Submit each member's transition to its partition owner, then wait for all of them
+    private int applyTransitions(Map<MemberKey, StatusTransitionProcessor> transitions) {
+
+        List<CompletableFuture<Object>> results = new ArrayList<>();
+        int applied = 0;
+
+        for (Map.Entry<MemberKey, StatusTransitionProcessor> transition : transitions.entrySet()) {
+
+            results.add(this.submitTransition(transition.getKey(), transition.getValue()));
+        }
+
+        for (CompletableFuture<Object> result : results) {
+
+            try {
+
+                if (Boolean.TRUE.equals(result.join())) {
+
+                    applied++;
+                }
+
+            } catch (CompletionException e) {
+
+                LOGGER.warning("Error applying a status transition", Futures.cause(e));
+            }
+        }
+
+        return applied;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object> submitTransition(MemberKey memberKey, StatusTransitionProcessor processor) {
+
+        ICompletableFuture<Object> result = this.mapClusterState.submitToKey(memberKey, processor);
+
+        return Futures.of("clusterState", result);
+    }
+
+    // The view keeps a count of members per status, so this does not scan the view
+    private void maybePrintMessage() {
+
+        if (this.clusterView.isAllOnline()) {
+
+            Map<String, String> mapMetadata = instance.getMap("metadata");
+
+            long start = System.nanoTime();
 
             mapMetadata.put("printed", String.valueOf(true));
+            this.metrics.recordMapOperation("metadata", start);
+
             System.out.println("We are Started!");
         }
+    }
+
+    private static long monotonicMillis() {
 
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
     }
-}
 
+    // Keeps the ring and the lease current. A holder that leaves or is removed gives up its lease immediately.
+    private class ViewListener implements MembershipView.Listener {
+
+        @Override
+        public void memberUpdated(MemberKey memberKey, StateEntry previous, StateEntry current) {
 
+            if (previous == null) {
 
+                ring.add(memberKey);
+            }
+        }
+
+        @Override
+        public void memberRemoved(MemberKey memberKey, StateEntry previous) {
+
+            ring.remove(memberKey);
+            suspicions.remove(memberKey);
+
+            for (Suspicion suspicion : reports.values()) {
 
+                if (suspicion.getSuspect().equals(memberKey)) {
+
+                    reports.remove(suspicion.getKey());
+                    reportedAt.remove(suspicion.getKey());
+                }
+            }
+
+            if (isLeaseHolder(memberKey)) {
+
+                leaseExpiresAt = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void leaderChanged(LeaderLease current) {
+
+            observeLease(current);
+        }
+    }
+
+    private class HeartbeatListener implements EntryAddedListener<MemberKey, StateEntry>,
+            EntryUpdatedListener<MemberKey, StateEntry> {
+
+        @Override
+        public void entryAdded(EntryEvent<MemberKey, StateEntry> event) {
+
+            heartbeatSeen(event.getKey(), event.getValue().getHeartbeat());
+        }
 
+        @Override
+        public void entryUpdated(EntryEvent<MemberKey, StateEntry> event) {
+
+            heartbeatSeen(event.getKey(), event.getValue().getHeartbeat());
+        }
+    }
+
+    private class SuspicionListener implements EntryAddedListener<String, Suspicion>, EntryUpdatedListener<String, Suspicion>,
+            EntryRemovedListener<String, Suspicion>, EntryExpiredListener<String, Suspicion> {
+
+        @Override
+        public void entryAdded(EntryEvent<String, Suspicion> event) {
+
+            suspected(event.getValue());
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<String, Suspicion> event) {
+
+            suspected(event.getValue());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<String, Suspicion> event) {
+
+            unsuspected(event.getKey());
+        }
+
+        @Override
+        public void entryExpired(EntryEvent<String, Suspicion> event) {
+
+            unsuspected(event.getKey());
+        }
+    }
+}
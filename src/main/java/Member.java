@@ -4,17 +4,31 @@ public class Member {
 
     private String name;
     private UUID uuid;
+    private MemberKey key;
+    private MemberAttributes attributes = MemberAttributes.NONE;
 
     public Member(String name) {
 
-        this.name = name;
-        this.uuid = UUID.randomUUID();
+        this(name, UUID.randomUUID());
     }
 
     public Member(String name, String uuid) {
 
+        this(name, UUID.fromString(uuid));
+    }
+
+    public Member(String name, UUID uuid) {
+
         this.name = name;
-        this.uuid = UUID.fromString(uuid);
+        this.uuid = uuid;
+        this.key = new MemberKey(uuid);
+    }
+
+    // A new member with the attributes it joins with
+    public Member(String name, MemberAttributes attributes) {
+
+        this(name);
+        this.attributes = attributes;
     }
 
     public String getName() {
@@ -27,6 +41,19 @@ public class Member {
         return this.uuid;
     }
 
+    // The key of this member in clusterState
+    public MemberKey getKey() {
+
+        return this.key;
+    }
+
+    // The attributes this member joins with. A member recovered from its journal has none, and keeps those in
+    // clusterState.
+    public MemberAttributes getAttributes() {
+
+        return this.attributes;
+    }
+
     @Override
     public String toString() {
 
@@ -0,0 +1,110 @@
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+
+import java.io.IOException;
+import java.util.Objects;
+
+// Where a member runs and what it is for, given when it joins and kept in its clusterState entry for placement
+// decisions. Every attribute is optional. Attributes are indexed in clusterState, so members can be found by them on
+// the partition owners (see MembershipManager.findMembers). The same type describes a filter, where a missing
+// attribute matches any value.
+public class MemberAttributes {
+
+    static final MemberAttributes NONE = new MemberAttributes(null, null, null);
+
+    private static final int ZONE = 1;
+    private static final int RACK = 1 << 1;
+    private static final int ROLE = 1 << 2;
+
+    private final String zone;
+    private final String rack;
+    private final String role;
+
+    public MemberAttributes(String zone, String rack, String role) {
+
+        this.zone = zone;
+        this.rack = rack;
+        this.role = role;
+    }
+
+    public String getZone() {
+
+        return this.zone;
+    }
+
+    public String getRack() {
+
+        return this.rack;
+    }
+
+    public String getRole() {
+
+        return this.role;
+    }
+
+    boolean isEmpty() {
+
+        return this.zone == null && this.rack == null && this.role == null;
+    }
+
+    // A byte flagging the attributes present, followed by each of them
+    void writeTo(ObjectDataOutput out) throws IOException {
+
+        out.writeByte((this.zone == null ? 0 : ZONE) | (this.rack == null ? 0 : RACK) | (this.role == null ? 0 : ROLE));
+
+        if (this.zone != null) {
+
+            out.writeUTF(this.zone);
+        }
+
+        if (this.rack != null) {
+
+            out.writeUTF(this.rack);
+        }
+
+        if (this.role != null) {
+
+            out.writeUTF(this.role);
+        }
+    }
+
+    static MemberAttributes readFrom(ObjectDataInput in) throws IOException {
+
+        int present = in.readByte();
+
+        String zone = (present & ZONE) == 0 ? null : in.readUTF();
+        String rack = (present & RACK) == 0 ? null : in.readUTF();
+        String role = (present & ROLE) == 0 ? null : in.readUTF();
+
+        return new MemberAttributes(zone, rack, role);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof MemberAttributes)) {
+
+            return false;
+        }
+
+        MemberAttributes other = (MemberAttributes) o;
+
+        return Objects.equals(this.zone, other.zone) && Objects.equals(this.rack, other.rack)
+                && Objects.equals(this.role, other.role);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(this.zone, this.rack, this.role);
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder attributesString = new StringBuilder();
+        attributesString.append("zone=").append(this.zone).append(", rack=").append(this.rack).append(", role=").append(this.role);
+
+        return attributesString.toString();
+    }
+}
@@ -0,0 +1,68 @@
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Map;
+
+// Orders clusterState entries for paging, on the partition owners. Ties are broken by UUID, so the order is total and
+// every page starts where the last one ended.
+public class MemberComparator implements Comparator<Map.Entry<MemberKey, StateEntry>>, IdentifiedDataSerializable {
+
+    enum Order {
+        UUID,
+        // Oldest heartbeat first
+        HEARTBEAT,
+        // JOINING, then OFFLINE, then ONLINE
+        STATUS
+    }
+
+    private Order order;
+
+    public MemberComparator() { }
+
+    MemberComparator(Order order) {
+
+        this.order = order;
+    }
+
+    @Override
+    public int compare(Map.Entry<MemberKey, StateEntry> a, Map.Entry<MemberKey, StateEntry> b) {
+
+        int compared = 0;
+
+        if (this.order == Order.HEARTBEAT) {
+
+            compared = Long.compare(a.getValue().getHeartbeat(), b.getValue().getHeartbeat());
+
+        } else if (this.order == Order.STATUS) {
+
+            compared = a.getValue().getStatus().compareTo(b.getValue().getStatus());
+        }
+
+        return compared != 0 ? compared : a.getKey().compareTo(b.getKey());
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeByte(order.ordinal());
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        order = Order.values()[in.readByte()];
+    }
+
+    @Override
+    public int getFactoryId() {
+
+        return StateEntryDataSerializableFactory.ID;
+    }
+
+    @Override
+    public int getId() {
+
+        return StateEntryDataSerializableFactory.MEMBER_COMPARATOR_TYPE;
+    }
+}
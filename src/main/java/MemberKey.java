@@ -0,0 +1,106 @@
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+import java.util.UUID;
+
+// A member UUID as two longs. Used as the clusterState key and wherever a member is referenced in the maps, instead of
+// the 36 character UUID string. Keys are ordered by their bits, which places members on the monitoring ring.
+public class MemberKey implements IdentifiedDataSerializable, Comparable<MemberKey> {
+
+    private long mostSignificantBits;
+    private long leastSignificantBits;
+
+    public MemberKey() { }
+
+    MemberKey(UUID uuid) {
+
+        this(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    MemberKey(long mostSignificantBits, long leastSignificantBits) {
+
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+    }
+
+    static MemberKey fromString(String uuid) {
+
+        return new MemberKey(UUID.fromString(uuid));
+    }
+
+    long getMostSignificantBits() {
+
+        return this.mostSignificantBits;
+    }
+
+    long getLeastSignificantBits() {
+
+        return this.leastSignificantBits;
+    }
+
+    UUID toUUID() {
+
+        return new UUID(this.mostSignificantBits, this.leastSignificantBits);
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeLong(mostSignificantBits);
+        out.writeLong(leastSignificantBits);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        mostSignificantBits = in.readLong();
+        leastSignificantBits = in.readLong();
+    }
+
+    @Override
+    public int getFactoryId() {
+
+        return StateEntryDataSerializableFactory.ID;
+    }
+
+    @Override
+    public int getId() {
+
+        return StateEntryDataSerializableFactory.MEMBER_KEY_TYPE;
+    }
+
+    @Override
+    public int compareTo(MemberKey other) {
+
+        int compared = Long.compare(this.mostSignificantBits, other.mostSignificantBits);
+
+        return compared != 0 ? compared : Long.compare(this.leastSignificantBits, other.leastSignificantBits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof MemberKey)) {
+
+            return false;
+        }
+
+        MemberKey other = (MemberKey) o;
+
+        return this.mostSignificantBits == other.mostSignificantBits && this.leastSignificantBits == other.leastSignificantBits;
+    }
+
+    @Override
+    public int hashCode() {
+
+        long bits = this.mostSignificantBits ^ this.leastSignificantBits;
+
+        return (int) (bits >> 32) ^ (int) bits;
+    }
+
+    @Override
+    public String toString() {
+
+        return this.toUUID().toString();
+    }
+}
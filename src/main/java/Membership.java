@@ -1,4 +1,8 @@
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 
 import com.beust.jcommander.*;
@@ -12,6 +16,43 @@ public class Membership {
 
         @Parameter(names = {"-n", "--name"})
         public String name;
+
+        @Parameter(names = "--since")
+        public Long since;
+
+        @Parameter(names = "--status")
+        public ClusterStatus status;
+
+        @Parameter(names = "--zone")
+        public String zone;
+
+        @Parameter(names = "--rack")
+        public String rack;
+
+        @Parameter(names = "--role")
+        public String role;
+
+        @Parameter(names = "--stream")
+        public boolean stream;
+
+        @Parameter(names = "--format")
+        public StatusStream.Format format = StatusStream.Format.TEXT;
+
+        @Parameter(names = "--sort")
+        public MemberComparator.Order sort = MemberComparator.Order.UUID;
+
+        @Parameter(names = "--limit")
+        public int limit = Integer.MAX_VALUE;
+
+        MemberAttributes attributes() {
+
+            return new MemberAttributes(this.zone, this.rack, this.role);
+        }
+
+        boolean isFiltered() {
+
+            return this.status != null || !this.attributes().isEmpty();
+        }
     }
 
     public static void main(String[] args) {
@@ -20,13 +61,14 @@ public class Membership {
 
         Scanner scanner = new Scanner(System.in);
 
-        Args arguments = new Args();
-
         boolean next = true;
 
         while(next) {
             String line = scanner.nextLine();
 
+            // Options from the previous command must not carry over
+            Args arguments = new Args();
+
             try {
                 JCommander.newBuilder()
                         .addObject(arguments)
@@ -35,17 +77,56 @@ public class Membership {
             } catch (ParameterException e) {
 
                 System.out.println("Incorrect command structure: \n" + e.getMessage());
+                continue;
             }
 
-            switch (arguments.command) {
+            switch (arguments.command == null ? "" : arguments.command) {
                 case "identify":
                     Result identifyResult = membershipManager.identify();
                     System.out.println(identifyResult.getMessage());
                     break;
                 case "status":
-                    Result statusResult = membershipManager.status();
+                    Result statusResult;
+
+                    if (arguments.stream) {
+
+                        if (arguments.since == null) {
+
+                            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                            statusResult = membershipManager.status(out, arguments.format, arguments.sort, arguments.limit,
+                                    arguments.status, arguments.attributes());
+
+                        } else {
+
+                            statusResult = new Result(ResultStatus.FAILED, "--since cannot be combined with --stream.");
+                        }
+
+                        // Only rows go to the output, so that it can be parsed as JSON Lines
+                        if (statusResult.getStatus() != ResultStatus.SUCCESS) {
+
+                            System.out.println(statusResult.getMessage());
+                        }
+
+                        break;
+                    }
+
+                    if (arguments.isFiltered()) {
+
+                        statusResult = arguments.since == null ? membershipManager.status(arguments.status, arguments.attributes())
+                                : new Result(ResultStatus.FAILED, "--since cannot be combined with --status, --zone, --rack or --role.");
+
+                    } else {
+
+                        statusResult = arguments.since == null ? membershipManager.status()
+                                : membershipManager.status(arguments.since);
+                    }
+
                     System.out.println(statusResult.getMessage());
                     break;
+                case "metrics":
+                    Result metricsResult = membershipManager.metrics();
+                    System.out.println(metricsResult.getMessage());
+                    break;
                 case "join":
                     if (arguments.name == null) {
 
@@ -53,7 +134,7 @@ public class Membership {
 
                     } else {
 
-                        Result joinResult = membershipManager.stageJoin(new Member(arguments.name));
+                        Result joinResult = membershipManager.stageJoin(new Member(arguments.name, arguments.attributes()));
                         System.out.println(joinResult.toString());
                     }
                     break;
@@ -98,7 +179,7 @@ public class Membership {
                     System.exit(0);
                     break;
                 default:
-                    System.out.println("No available command specified. The available commands are: status, join, leave, remove, and shutdown.");
+                    System.out.println("No available command specified. The available commands are: status [--since <version> | --status <status> --zone <zone> --rack <rack> --role <role>] [--stream --format text|jsonl --sort uuid|heartbeat|status --limit <n>], metrics, join [--zone <zone> --rack <rack> --role <role>], leave, remove, and shutdown.");
             }
         }
     }
@@ -0,0 +1,79 @@
+// A change in a member's status as seen by this node. A member that has just joined (or that was already present when
+// the subscription started) has no old status, and a member that has left or been removed has no new status.
+public class MembershipEvent {
+
+    private final MemberKey key;
+    private final String name;
+    private final ClusterStatus oldStatus;
+    private final ClusterStatus newStatus;
+    private final long epoch;
+
+    MembershipEvent(MemberKey key, String name, ClusterStatus oldStatus, ClusterStatus newStatus, long epoch) {
+
+        this.key = key;
+        this.name = name;
+        this.oldStatus = oldStatus;
+        this.newStatus = newStatus;
+        this.epoch = epoch;
+    }
+
+    public Member getMember() {
+
+        return new Member(this.name, this.key.toUUID());
+    }
+
+    MemberKey getKey() {
+
+        return this.key;
+    }
+
+    public ClusterStatus getOldStatus() {
+
+        return this.oldStatus;
+    }
+
+    public ClusterStatus getNewStatus() {
+
+        return this.newStatus;
+    }
+
+    // The leader epoch when the change was observed
+    public long getEpoch() {
+
+        return this.epoch;
+    }
+
+    // Combine this event with a later one for the same member into a single transition
+    MembershipEvent coalesce(MembershipEvent next) {
+
+        return new MembershipEvent(next.key, next.name != null ? next.name : this.name, this.oldStatus, next.newStatus, next.epoch);
+    }
+
+    // Names live in the registry, whose events may arrive after the clusterState change that created this event, so
+    // a missing name is looked up again just before delivery
+    MembershipEvent withName(MembershipView view) {
+
+        if (this.name != null) {
+
+            return this;
+        }
+
+        return new MembershipEvent(this.key, view.getName(this.key), this.oldStatus, this.newStatus, this.epoch);
+    }
+
+    // True when coalescing has cancelled the transition out, e.g. ONLINE -> OFFLINE -> ONLINE
+    boolean isNoop() {
+
+        return this.oldStatus == this.newStatus;
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder eventString = new StringBuilder();
+        eventString.append(this.name).append(", ").append(this.key.toString()).append(": ").append(this.oldStatus).append(" -> ")
+                .append(this.newStatus).append(" (epoch ").append(this.epoch).append(")");
+
+        return eventString.toString();
+    }
+}
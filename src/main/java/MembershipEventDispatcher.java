@@ -0,0 +1,235 @@
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Turns membership view changes into MembershipEvents and delivers them to subscribers in batches on a single delivery
+// thread, so slow listeners never block the Hazelcast event threads. Each subscription holds at most one pending
+// event per member: a new transition for a member that is still pending is merged into it, and transitions that
+// cancel out are dropped. A subscriber that falls behind therefore receives less rather than more, however many
+// transitions a member goes through. Churn can still leave a slow subscriber with pending events for more members than
+// the view holds, so they are capped at a fixed capacity: once it is reached, the subscription drops its pending
+// events, signals the listener to resync, and streams it the current state of every member, as on subscribing.
+public class MembershipEventDispatcher implements MembershipView.Listener {
+
+    private static final ILogger LOGGER = Logger.getLogger(MembershipEventDispatcher.class);
+
+    private static final int MAX_BATCH_SIZE = Integer.getInteger("membership.events.maxBatch", 256);
+    private static final int CAPACITY = Integer.getInteger("membership.events.capacity", 10000);
+
+    private final MembershipView view;
+    private final int capacity;
+    private final ExecutorService deliveryService = Executors.newSingleThreadExecutor();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public MembershipEventDispatcher(MembershipView view) {
+
+        this(view, CAPACITY);
+    }
+
+    MembershipEventDispatcher(MembershipView view, int capacity) {
+
+        this.view = view;
+        this.capacity = capacity;
+    }
+
+    // The subscription starts with an event for every member currently in the cluster
+    Subscription subscribe(MembershipListener listener) {
+
+        Subscription subscription = new Subscription(listener);
+
+        this.subscriptions.add(subscription);
+        subscription.baseline(false);
+
+        return subscription;
+    }
+
+    void shutdown() {
+
+        this.subscriptions.clear();
+        this.deliveryService.shutdown();
+    }
+
+    @Override
+    public void memberUpdated(MemberKey key, StateEntry previous, StateEntry current) {
+
+        if (previous != null && previous.getStatus() == current.getStatus()) {
+
+            return;
+        }
+
+        this.publish(new MembershipEvent(key, this.view.getName(key),
+                previous == null ? null : previous.getStatus(), current.getStatus(), this.epoch()));
+    }
+
+    @Override
+    public void memberRemoved(MemberKey key, StateEntry previous) {
+
+        this.publish(new MembershipEvent(key, this.view.getName(key), previous.getStatus(), null, this.epoch()));
+    }
+
+    private void publish(MembershipEvent event) {
+
+        for (Subscription subscription : this.subscriptions) {
+
+            subscription.offer(event);
+        }
+    }
+
+    private long epoch() {
+
+        LeaderLease leader = this.view.getLeader();
+
+        return leader == null ? 0L : leader.getEpoch();
+    }
+
+    public class Subscription {
+
+        private final MembershipListener listener;
+
+        // Pending events keyed by member UUID, in the order members first changed, and the members whose current
+        // state is still to be delivered by a baseline. Both are guarded by this.
+        private final Map<MemberKey, MembershipEvent> pending = new LinkedHashMap<>();
+        private Iterator<MemberKey> baseline;
+        private boolean isResyncPending;
+        private boolean isScheduled;
+
+        private Subscription(MembershipListener listener) {
+
+            this.listener = listener;
+        }
+
+        public void cancel() {
+
+            subscriptions.remove(this);
+
+            synchronized (this) {
+
+                this.pending.clear();
+                this.baseline = null;
+                this.isResyncPending = false;
+            }
+        }
+
+        private synchronized void offer(MembershipEvent event) {
+
+            MembershipEvent existing = this.pending.remove(event.getKey());
+            MembershipEvent merged = existing == null ? event : existing.coalesce(event);
+
+            if (!merged.isNoop()) {
+
+                this.pending.put(event.getKey(), merged);
+            }
+
+            if (this.pending.size() > capacity) {
+
+                this.pending.clear();
+                this.baseline(true);
+
+            } else {
+
+                this.schedule();
+            }
+        }
+
+        // Deliver the current state of every member, read as each batch is delivered, ahead of any pending events.
+        // A pending event may repeat a change the baseline has already delivered.
+        private synchronized void baseline(boolean isResync) {
+
+            this.baseline = new ArrayList<>(view.getMembers().keySet()).iterator();
+            this.isResyncPending |= isResync;
+            this.schedule();
+        }
+
+        private void schedule() {
+
+            boolean hasWork = this.isResyncPending || this.baseline != null || !this.pending.isEmpty();
+
+            if (!this.isScheduled && hasWork && !deliveryService.isShutdown()) {
+
+                this.isScheduled = true;
+                deliveryService.execute(this::deliver);
+            }
+        }
+
+        // Deliver one batch, then go to the back of the delivery queue so one busy subscriber cannot starve the rest
+        private void deliver() {
+
+            List<MembershipEvent> batch = new ArrayList<>();
+            boolean isResync;
+
+            synchronized (this) {
+
+                isResync = this.isResyncPending;
+                this.isResyncPending = false;
+
+                if (this.baseline != null) {
+
+                    this.nextBaselineBatch(batch);
+
+                } else {
+
+                    Iterator<MembershipEvent> iterator = this.pending.values().iterator();
+
+                    while (iterator.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+
+                        batch.add(iterator.next().withName(view));
+                        iterator.remove();
+                    }
+                }
+
+                this.isScheduled = false;
+            }
+
+            try {
+
+                if (isResync) {
+
+                    this.listener.onResync();
+                }
+
+                if (!batch.isEmpty()) {
+
+                    this.listener.onEvents(batch);
+                }
+
+            } catch (RuntimeException e) {
+
+                LOGGER.warning("Error delivering " + batch.size() + " membership events to a listener", e);
+            }
+
+            synchronized (this) {
+
+                this.schedule();
+            }
+        }
+
+        private void nextBaselineBatch(List<MembershipEvent> batch) {
+
+            long epoch = epoch();
+
+            while (this.baseline.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+
+                MemberKey key = this.baseline.next();
+                StateEntry state = view.getMember(key);
+
+                if (state != null) {
+
+                    batch.add(new MembershipEvent(key, view.getName(key), null, state.getStatus(), epoch));
+                }
+            }
+
+            if (!this.baseline.hasNext()) {
+
+                this.baseline = null;
+            }
+        }
+    }
+}
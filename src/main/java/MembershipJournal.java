@@ -0,0 +1,469 @@
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+// An append-only journal of this node's identity and its last known view of the cluster, in a memory-mapped file next
+// to the node (<name>.journal). It replaces the plain UUID file, so a restarted node gets back its identity,
+// incarnation, the members it last saw and the last leader without reading the maps.
+//
+// Each record is a length, a CRC32 of the record and the record itself, and the log ends at the first zero length.
+// A torn or corrupt record ends the log too, so a crash mid-append loses at most the records not yet flushed. Appends
+// only write to the mapped buffer; flush() forces them to disk, so every append between two flushes shares one fsync.
+// Identity records are flushed straight away. Only status changes are journaled, not every heartbeat, and when the
+// file is full it is compacted into a snapshot of the current state.
+class MembershipJournal implements MembershipView.Listener {
+
+    private static final ILogger LOGGER = Logger.getLogger(MembershipJournal.class);
+
+    private static final String DIRECTORY = System.getProperty("membership.journal.dir", ".");
+    private static final int INITIAL_CAPACITY = Integer.getInteger("membership.journal.size.bytes", 1 << 20);
+
+    private static final byte IDENTITY_RECORD = 1;
+    private static final byte MEMBER_RECORD = 2;
+    private static final byte REMOVED_RECORD = 3;
+    private static final byte LEADER_RECORD = 4;
+
+    // Length and checksum
+    private static final int HEADER_BYTES = 8;
+
+    private final File file;
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private volatile boolean isDirty;
+
+    // The state the journal replays to, kept current so the journal can be compacted from it
+    private Member member;
+    private long incarnation;
+    private LeaderLease leader;
+    private final Map<MemberKey, StateEntry> members = new ConcurrentHashMap<>();
+    private final Map<MemberKey, String> names = new ConcurrentHashMap<>();
+
+    private ClusterView clusterView;
+
+    private MembershipJournal(File file) {
+
+        this.file = file;
+    }
+
+    static boolean exists(String memberName) {
+
+        return fileFor(memberName).exists();
+    }
+
+    // Open the member's journal, creating it if there is none, and replay it
+    static MembershipJournal open(String memberName) throws IOException {
+
+        MembershipJournal journal = new MembershipJournal(fileFor(memberName));
+
+        journal.map(Math.max(INITIAL_CAPACITY, (int) journal.file.length()));
+        journal.replay();
+
+        return journal;
+    }
+
+    Member getMember() {
+
+        return this.member;
+    }
+
+    long getIncarnation() {
+
+        return this.incarnation;
+    }
+
+    LeaderLease getLeader() {
+
+        return this.leader;
+    }
+
+    Map<MemberKey, StateEntry> getMembers() {
+
+        return Collections.unmodifiableMap(this.members);
+    }
+
+    String getName(MemberKey key) {
+
+        return this.names.get(key);
+    }
+
+    // Record who this node is, durably, before it starts heartbeating under that identity
+    void recordIdentity(Member member, long incarnation) throws IOException {
+
+        synchronized (this) {
+
+            this.member = member;
+            this.incarnation = incarnation;
+            this.append(IDENTITY_RECORD, member.getKey(), incarnation, member.getName());
+        }
+
+        this.flush();
+    }
+
+    // Journal the view's status changes and leader changes from now on
+    void follow(ClusterView clusterView) {
+
+        this.clusterView = clusterView;
+        clusterView.addListener(this);
+
+        for (MemberKey key : this.members.keySet()) {
+
+            if (clusterView.getMember(key) == null) {
+
+                this.memberRemoved(key, null);
+            }
+        }
+
+        for (Map.Entry<MemberKey, StateEntry> entry : clusterView.getMembers().entrySet()) {
+
+            this.memberUpdated(entry.getKey(), null, entry.getValue());
+        }
+
+        this.leaderChanged(clusterView.getLeader());
+    }
+
+    // Force everything appended since the last flush to disk. The buffer is forced outside the lock, so appends are not
+    // held up by the fsync.
+    void flush() {
+
+        MappedByteBuffer buffer;
+
+        synchronized (this) {
+
+            if (!this.isDirty) {
+
+                return;
+            }
+
+            this.isDirty = false;
+            buffer = this.buffer;
+        }
+
+        buffer.force();
+    }
+
+    void close() {
+
+        if (this.clusterView != null) {
+
+            this.clusterView.removeListener(this);
+            this.clusterView = null;
+        }
+
+        this.flush();
+    }
+
+    // Remove the journal once the member has left the cluster
+    void delete() {
+
+        this.close();
+        this.file.delete();
+    }
+
+    @Override
+    public synchronized void memberUpdated(MemberKey key, StateEntry previous, StateEntry current) {
+
+        StateEntry journaled = this.members.get(key);
+        String name = this.clusterView == null ? null : this.clusterView.getName(key);
+
+        if (journaled != null && journaled.getStatus() == current.getStatus()
+                && journaled.getAttributes().equals(current.getAttributes())
+                && (name == null || name.equals(this.names.get(key)))) {
+
+            return;
+        }
+
+        this.appendUnchecked(MEMBER_RECORD, key, current.getStatus().ordinal(), current.getHeartbeat(), name,
+                current.getAttributes());
+    }
+
+    @Override
+    public synchronized void memberRemoved(MemberKey key, StateEntry previous) {
+
+        if (this.members.containsKey(key)) {
+
+            this.appendUnchecked(REMOVED_RECORD, key, 0, 0L, null, null);
+        }
+    }
+
+    @Override
+    public synchronized void leaderChanged(LeaderLease current) {
+
+        if (current == null ? this.leader == null : current.equals(this.leader)) {
+
+            return;
+        }
+
+        this.appendUnchecked(LEADER_RECORD, current == null ? null : current.getHolder(), 0,
+                current == null ? -1L : current.getEpoch(), null, null);
+    }
+
+    /******************************************************************************************************************/
+
+    private static File fileFor(String memberName) {
+
+        return new File(DIRECTORY, memberName + ".journal");
+    }
+
+    private void map(int capacity) throws IOException {
+
+        try (RandomAccessFile file = new RandomAccessFile(this.file, "rw"); FileChannel channel = file.getChannel()) {
+
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            this.capacity = capacity;
+        }
+    }
+
+    // Apply records up to the end of the log, and leave the buffer positioned to append after the last good one
+    private void replay() {
+
+        int position = 0;
+
+        while (position + HEADER_BYTES <= this.capacity) {
+
+            int length = this.buffer.getInt(position);
+            int checksum = this.buffer.getInt(position + 4);
+
+            if (length <= 0 || position + HEADER_BYTES + length > this.capacity
+                    || checksum != this.checksum(position + HEADER_BYTES, length)) {
+
+                break;
+            }
+
+            this.apply(this.record(position + HEADER_BYTES, length));
+
+            position += HEADER_BYTES + length;
+        }
+
+        this.buffer.position(position);
+    }
+
+    // Member records written before attributes were journaled end after the name
+    private void apply(ByteBuffer record) {
+
+        byte type = record.get();
+        MemberKey key = new MemberKey(record.getLong(), record.getLong());
+        int status = record.get();
+        long value = record.getLong();
+        String name = readString(record);
+        MemberAttributes attributes = !record.hasRemaining() ? MemberAttributes.NONE
+                : new MemberAttributes(readString(record), readString(record), readString(record));
+
+        switch (type) {
+            case IDENTITY_RECORD:
+                this.member = new Member(name, key.toUUID());
+                this.incarnation = value;
+                break;
+            case MEMBER_RECORD:
+                this.members.put(key, new StateEntry(ClusterStatus.values()[status], value, attributes));
+                if (name != null) {
+                    this.names.put(key, name);
+                }
+                break;
+            case REMOVED_RECORD:
+                this.members.remove(key);
+                this.names.remove(key);
+                break;
+            case LEADER_RECORD:
+                this.leader = value < 0 ? null : new LeaderLease(key, value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void appendUnchecked(byte type, MemberKey key, int status, long value, String name,
+            MemberAttributes attributes) {
+
+        try {
+
+            this.append(type, key, status, value, name, attributes);
+
+        } catch (IOException e) {
+
+            LOGGER.warning("Error writing membership journal " + this.file, e);
+        }
+    }
+
+    private void append(byte type, MemberKey key, long incarnation, String name) throws IOException {
+
+        this.append(type, key, 0, incarnation, name, null);
+    }
+
+    // Every record has the same layout: type, member key, status, a value (heartbeat, incarnation or epoch) and a name.
+    // Member records are followed by the member's zone, rack and role.
+    private synchronized void append(byte type, MemberKey key, int status, long value, String name,
+            MemberAttributes attributes) throws IOException {
+
+        int length = recordBytes(name, attributes);
+
+        // Leave room for the zero length that ends the log
+        if (this.buffer.position() + HEADER_BYTES + length + 4 > this.capacity) {
+
+            this.compact(HEADER_BYTES + length + 4);
+        }
+
+        int position = this.buffer.position();
+
+        this.buffer.position(position + HEADER_BYTES);
+        this.buffer.put(type);
+        this.buffer.putLong(key == null ? 0L : key.getMostSignificantBits());
+        this.buffer.putLong(key == null ? 0L : key.getLeastSignificantBits());
+        this.buffer.put((byte) status);
+        this.buffer.putLong(value);
+        writeString(this.buffer, name);
+
+        if (attributes != null) {
+
+            writeString(this.buffer, attributes.getZone());
+            writeString(this.buffer, attributes.getRack());
+            writeString(this.buffer, attributes.getRole());
+        }
+
+        int end = this.buffer.position();
+
+        this.buffer.putInt(end, 0);
+        this.buffer.putInt(position + 4, this.checksum(position + HEADER_BYTES, length));
+        this.buffer.putInt(position, length);
+
+        this.apply(this.record(position + HEADER_BYTES, length));
+
+        this.isDirty = true;
+    }
+
+    // Rewrite the journal as a snapshot of the current state in a new file, which replaces the old one atomically.
+    // The file grows if the snapshot would leave less than half of it free.
+    private void compact(int required) throws IOException {
+
+        Member member = this.member;
+        long incarnation = this.incarnation;
+        LeaderLease leader = this.leader;
+        Map<MemberKey, StateEntry> members = new HashMap<>(this.members);
+        Map<MemberKey, String> names = new HashMap<>(this.names);
+
+        int snapshotBytes = 2 * HEADER_BYTES + recordBytes(member == null ? null : member.getName(), null)
+                + recordBytes(null, null) + required;
+
+        for (Map.Entry<MemberKey, StateEntry> entry : members.entrySet()) {
+
+            snapshotBytes += HEADER_BYTES + recordBytes(names.get(entry.getKey()), entry.getValue().getAttributes());
+        }
+
+        int capacity = this.capacity;
+
+        while (capacity < 2 * snapshotBytes) {
+
+            capacity *= 2;
+        }
+
+        File compacted = new File(this.file.getPath() + ".compacting");
+        compacted.delete();
+
+        MembershipJournal snapshot = new MembershipJournal(compacted);
+        snapshot.map(capacity);
+
+        if (member != null) {
+
+            snapshot.append(IDENTITY_RECORD, member.getKey(), incarnation, member.getName());
+        }
+
+        if (leader != null) {
+
+            snapshot.append(LEADER_RECORD, leader.getHolder(), 0, leader.getEpoch(), null, null);
+        }
+
+        for (Map.Entry<MemberKey, StateEntry> entry : members.entrySet()) {
+
+            snapshot.append(MEMBER_RECORD, entry.getKey(), entry.getValue().getStatus().ordinal(),
+                    entry.getValue().getHeartbeat(), names.get(entry.getKey()), entry.getValue().getAttributes());
+        }
+
+        snapshot.buffer.force();
+        Files.move(compacted.toPath(), this.file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+
+        this.buffer = snapshot.buffer;
+        this.capacity = snapshot.capacity;
+    }
+
+    private int checksum(int position, int length) {
+
+        this.crc.reset();
+        this.crc.update(this.record(position, length));
+
+        return (int) this.crc.getValue();
+    }
+
+    // A view of one record, which leaves the buffer's position where it is
+    private ByteBuffer record(int position, int length) {
+
+        ByteBuffer record = this.buffer.duplicate();
+        record.position(position);
+        record.limit(position + length);
+
+        return record;
+    }
+
+    // The length of a record, without its header
+    private static int recordBytes(String name, MemberAttributes attributes) {
+
+        int length = 1 + 16 + 1 + 8 + stringBytes(name);
+
+        if (attributes != null) {
+
+            length += stringBytes(attributes.getZone()) + stringBytes(attributes.getRack())
+                    + stringBytes(attributes.getRole());
+        }
+
+        return length;
+    }
+
+    private static int stringBytes(String value) {
+
+        return 2 + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+
+        if (value == null) {
+
+            buffer.putShort((short) -1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+
+        short length = buffer.getShort();
+
+        if (length < 0) {
+
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,13 @@
+import java.util.List;
+
+// Receives membership changes in batches on the dispatcher's delivery thread. Batches for one listener are delivered
+// one at a time and in order. A listener that falls behind receives fewer, coalesced events rather than a backlog.
+public interface MembershipListener {
+
+    void onEvents(List<MembershipEvent> events);
+
+    // Called when the listener fell so far behind that its pending events were dropped. The events that follow start
+    // with the current state of every member, as on subscribing, so a listener keeping its own copy of the members
+    // should clear it here.
+    default void onResync() { }
+}
@@ -1,45 +1,178 @@
 import com.hazelcast.config.Config;
+import com.hazelcast.config.MapIndexConfig;
+import com.hazelcast.config.MergePolicyConfig;
 import com.hazelcast.core.*;
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.logging.Logger;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
 
 import java.io.IOException;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.FileReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 class MembershipManager {
 
-    private static final int JOIN_DELAY = 10;
+    private static final ILogger LOGGER = Logger.getLogger(MembershipManager.class);
 
-    private static final MembershipManager MANAGER = new MembershipManager();
+    // Time between heartbeats and between leader ticks. The simulator runs its nodes on the same schedule.
+    static final long HEARTBEAT_INTERVAL_MILLIS = Long.getLong("membership.heartbeat.interval.ms", 10000L);
+    static final long LEADER_INTERVAL_MILLIS = Long.getLong("membership.leader.interval.ms", 10000L);
 
-    private static HazelcastInstance instance;
-    private static Member member;
+    // Which engine tracks membership: "hazelcast" (the default) keeps it in Hazelcast maps with a leader, "swim" runs
+    // the SWIM gossip protocol over UDP with no shared state and no leader
+    private static final String ENGINE = System.getProperty("membership.engine", "hazelcast");
 
-    private ScheduledExecutorService finalizeJoinService = Executors.newSingleThreadScheduledExecutor();
+    // A node started with the name of a member it hosted before serves that member's journaled view straight away
+    // and recovers it as soon as Hazelcast is up
+    private static final String RECOVER_NAME = System.getProperty("membership.recover");
+    private static final long JOURNAL_FLUSH_MILLIS = Long.getLong("membership.journal.flush.ms", 100L);
+
+    // Port of the local admin endpoint; it is off unless a port is given
+    private static final Integer ADMIN_PORT = Integer.getInteger("membership.admin.port");
+
+    private HazelcastInstance instance;
+    private volatile Member member;
+    private boolean isChangingIdentity;
+
+    // Every membership timer runs off one wheel. Heartbeat, leader and view ticks block on map operations, so they run
+    // on a small pool rather than the wheel's own thread.
+    private final ExecutorService taskExecutorService = Executors.newFixedThreadPool(4);
+    private final TimerWheel timers = new TimerWheel("membership-timers", this.taskExecutorService);
 
     private Runnable heartbeatService;
-    private ScheduledExecutorService heartbeatExecutorService = Executors.newSingleThreadScheduledExecutor();
+    private TimerWheel.Timeout heartbeatTimeout;
+
+    private LeaderService leaderService;
+    private TimerWheel.Timeout leaderTimeout;
+
+    private ClusterView clusterView;
+    private TimerWheel.Timeout viewTimeout;
+    private MembershipEventDispatcher eventDispatcher;
+    private RoutingTable routingTable;
+
+    private MembershipJournal journal;
+    private AdminServer adminServer;
+    private SplitBrainHealer splitBrainHealer;
+    private TimerWheel.Timeout journalTimeout;
 
-    private Runnable leaderService;
-    private ScheduledExecutorService leaderExecutorService = Executors.newSingleThreadScheduledExecutor();
+    private final MembershipMetrics metrics = MembershipMetrics.getMetrics();
+
+    private SwimNode swimNode;
+    private SwimTransport swimTransport;
+    private SwimView swimView;
 
     private MembershipManager() {
 
+        this(isSwimEngine() ? null : Hazelcast.newHazelcastInstance(newConfig()));
+    }
+
+    // Benchmarks and simulations create managers around instances they configure themselves. The swim engine runs
+    // without Hazelcast, in which case the instance is null.
+    MembershipManager(HazelcastInstance instance) {
+
+        MembershipMetrics.register();
+        this.timers.start();
+
+        if (instance == null) {
+
+            // Subscriptions and the ring follow the members the SWIM node reports once it joins
+            this.swimView = new SwimView();
+            this.eventDispatcher = new MembershipEventDispatcher(this.swimView);
+            this.swimView.addListener(this.eventDispatcher);
+            this.routingTable = new RoutingTable(this.swimView);
+            this.routingTable.start();
+            return;
+        }
+
+        this.instance = instance;
+
+        // Keep a local view of the cluster for status, leader and readiness checks, and check once a second that it
+        // has not gone stale
+        this.clusterView = new ClusterView(this.instance);
+        this.eventDispatcher = new MembershipEventDispatcher(this.clusterView);
+        this.clusterView.addListener(this.eventDispatcher);
+
+        MembershipJournal journal = openJournalToRecover();
+
+        if (journal == null) {
+
+            this.clusterView.start();
+
+        } else {
+
+            this.clusterView.start(journal);
+        }
+
+        this.viewTimeout = this.timers.scheduleAtFixedRate(this.clusterView, 0, 1, TimeUnit.SECONDS);
+
+        // Built once the view has loaded, so the ring starts from every ONLINE member at once
+        this.routingTable = new RoutingTable(this.clusterView);
+        this.routingTable.start();
+
+        this.splitBrainHealer = new SplitBrainHealer(this.instance);
+        this.splitBrainHealer.start();
+
+        if (ADMIN_PORT != null) {
+
+            try {
+
+                this.adminServer = new AdminServer(this.clusterView, ADMIN_PORT);
+                this.adminServer.start();
+
+            } catch (IOException e) {
+
+                LOGGER.warning("Error starting the admin endpoint on port " + ADMIN_PORT, e);
+            }
+        }
+
+        if (journal != null) {
+
+            this.recoverAsync(RECOVER_NAME, journal).thenAccept(result -> System.out.println(result.toString()));
+        }
+    }
+
+    // The Hazelcast configuration every member needs: serialization for the membership types, the clusterState
+    // indexes used by predicate queries (including those on member attributes), and the policies that merge
+    // clusterState and the leader lease after a split brain
+    static Config newConfig() {
+
         Config config = new Config();
 
         config.getSerializationConfig().addDataSerializableFactory(1, new StateEntryDataSerializableFactory());
-        this.instance = Hazelcast.newHazelcastInstance(config);
+
+        config.getMapConfig("clusterState")
+                .addMapIndexConfig(new MapIndexConfig("status", false))
+                .addMapIndexConfig(new MapIndexConfig("zone", false))
+                .addMapIndexConfig(new MapIndexConfig("rack", false))
+                .addMapIndexConfig(new MapIndexConfig("role", false))
+                .setMergePolicyConfig(new MergePolicyConfig(ClusterStateMergePolicy.class.getName(),
+                        MergePolicyConfig.DEFAULT_BATCH_SIZE));
+
+        config.getMapConfig("leadership")
+                .setMergePolicyConfig(new MergePolicyConfig(LeaderLeaseMergePolicy.class.getName(),
+                        MergePolicyConfig.DEFAULT_BATCH_SIZE));
+
+        return config;
     }
 
     static MembershipManager getManager() {
 
-        return MANAGER;
+        return Holder.MANAGER;
     }
 
     Result identify() {
@@ -56,192 +189,385 @@ class MembershipManager {
 
     Result status() {
 
-        Map<String, String> mapMetadata = instance.getMap("metadata");
-        Map<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+        if (isSwimEngine()) {
+
+            return this.swimStatus();
+        }
 
         StringBuilder statusString = new StringBuilder();
 
         statusString.append("Leader: ")
-                .append(mapMetadata.get("leader"))
-                .append("\n\n");
+                .append(this.clusterView.getLeader())
+                .append("\n");
+
+        statusString.append("View: version ")
+                .append(this.clusterView.getVersion())
+                .append(", ")
+                .append(this.clusterView.getConsistency())
+                .append(" (reloaded ")
+                .append(this.clusterView.getStalenessMillis())
+                .append(" ms ago)\n");
+
+        statusString.append("Members: ")
+                .append(this.clusterView.getCount(ClusterStatus.ONLINE)).append(" ONLINE, ")
+                .append(this.clusterView.getCount(ClusterStatus.JOINING)).append(" JOINING, ")
+                .append(this.clusterView.getCount(ClusterStatus.OFFLINE)).append(" OFFLINE\n\n");
 
         statusString.append(String.format("%-38s%-20s%-8s%-11s\n", "UUID", "Name", "Status", "Heartbeat"));
 
-        for (Map.Entry<String, StateEntry> entry : mapClusterState.entrySet()) {
+        for (Map.Entry<MemberKey, StateEntry> entry : this.clusterView.getMembers().entrySet()) {
 
-            statusString.append(String.format("%-38s%-20s%-8s%-11s\n", entry.getKey(),
-                    entry.getValue().getName(),
+            statusString.append(String.format("%-38s%-20s%-8s%-11s\n", entry.getKey().toString(),
+                    this.clusterView.getName(entry.getKey()),
                     entry.getValue().getStatus().toString(),
-                    entry.getValue().getHeartbeat().toString()));
+                    String.valueOf(entry.getValue().getHeartbeat())));
         }
 
         return new Result(ResultStatus.SUCCESS, statusString.toString());
     }
 
-    synchronized Result stageJoin(Member member) {
+    // Only the members that joined, changed status or were removed since the given view version, for polling large
+    // clusters at a cost proportional to churn. The View line gives the version to pass next time.
+    Result status(long since) {
 
-        Map<String, String> mapRegistry = instance.getMap("registry");
-        Map<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+        if (isSwimEngine()) {
 
-        Result result;
-        String name = member.getName();
-        String uuidString = member.getUUID().toString();
+            return new Result(ResultStatus.FAILED, "Status deltas are not supported by the swim engine.");
+        }
 
-        // Check to see if stageJoin has been run already
-        if(this.member == null) {
+        ClusterView.Delta delta = this.changesSince(since);
+        StringBuilder statusString = new StringBuilder();
 
-            // Make sure a node with this name has not been added to the cluster.
-            if (!mapRegistry.containsKey(name)) {
+        statusString.append("Leader: ")
+                .append(delta.getLeader())
+                .append("\n");
 
-                // Add node to registry and add JOINING state to clusterState Map
-                mapRegistry.put(name, uuidString);
-                StateEntry state = new StateEntry(name, ClusterStatus.JOINING, 0L);
-                mapClusterState.put(uuidString, state);
+        statusString.append("View: version ")
+                .append(delta.getVersion())
+                .append(", ")
+                .append(this.clusterView.getConsistency())
+                .append("\n");
 
-                this.member = member;
+        if (delta.isFull()) {
 
-                // Persist node UUID to disk and schedule job to finalize join
-                try {
+            statusString.append("Changes before version ").append(since).append(" are no longer known; showing every member.\n\n");
 
-                    this.persistUUID(this.member.getName());
+        } else {
 
-                    Runnable task = () ->  finalizeJoin();
+            statusString.append("Changes since version ").append(since).append(":\n\n");
+        }
 
-                    finalizeJoinService.schedule(task, JOIN_DELAY, TimeUnit.SECONDS);
-                    finalizeJoinService.shutdown();
+        statusString.append(String.format("%-38s%-20s%-8s%-11s\n", "UUID", "Name", "Status", "Heartbeat"));
 
-                    result = new Result(ResultStatus.SUCCESS, member.toString() + " is " + state.getStatus().toString());
+        for (Map.Entry<MemberKey, StateEntry> entry : delta.getMembers().entrySet()) {
 
-                } catch (IOException e) {
+            statusString.append(String.format("%-38s%-20s%-8s%-11s\n", entry.getKey().toString(),
+                    this.clusterView.getName(entry.getKey()),
+                    entry.getValue().getStatus().toString(),
+                    String.valueOf(entry.getValue().getHeartbeat())));
+        }
 
-                    result = new Result(ResultStatus.FAILED, "Error persisting UUID.");
-                }
+        for (Map.Entry<MemberKey, String> entry : delta.getRemoved().entrySet()) {
 
-            } else {
+            statusString.append(String.format("%-38s%-20s%-8s%-11s\n", entry.getKey().toString(), entry.getValue(),
+                    "REMOVED", "-"));
+        }
 
-                result = new Result(ResultStatus.FAILED, "This member name already exists in the cluster with a different UUID.");
-            }
+        return new Result(ResultStatus.SUCCESS, statusString.toString());
+    }
 
-        } else {
+    // Only the members with the given status and attributes, found with an indexed query on the partition owners
+    Result status(ClusterStatus status, MemberAttributes attributes) {
 
-            result = new Result(ResultStatus.FAILED, "This node, " + this.member.getName() + ", has already been joined to the cluster.");
+        if (isSwimEngine()) {
+
+            return new Result(ResultStatus.FAILED, "Filtering status is not supported by the swim engine.");
         }
 
-        return result;
+        Map<MemberKey, StateEntry> members = this.findMembers(status, attributes);
+        StringBuilder statusString = new StringBuilder();
+
+        statusString.append("Leader: ")
+                .append(this.clusterView.getLeader())
+                .append("\n");
+
+        statusString.append("Members: ")
+                .append(members.size())
+                .append(" matching\n\n");
+
+        statusString.append(String.format("%-38s%-20s%-8s%-14s%-12s%-12s%-12s\n", "UUID", "Name", "Status", "Heartbeat",
+                "Zone", "Rack", "Role"));
+
+        for (Map.Entry<MemberKey, StateEntry> entry : members.entrySet()) {
+
+            StateEntry state = entry.getValue();
+
+            statusString.append(String.format("%-38s%-20s%-8s%-14s%-12s%-12s%-12s\n", entry.getKey().toString(),
+                    this.clusterView.getName(entry.getKey()),
+                    state.getStatus().toString(),
+                    String.valueOf(state.getHeartbeat()),
+                    StatusStream.orDash(state.getZone()), StatusStream.orDash(state.getRack()),
+                    StatusStream.orDash(state.getRole())));
+        }
+
+        return new Result(ResultStatus.SUCCESS, statusString.toString());
     }
 
-    synchronized Result recover(String memberName) throws IOException {
+    // Write the members with the given status and attributes to out as they are paged out of clusterState, up to
+    // limit of them in the given order, so memory stays bounded however large the cluster is. Rows are written as
+    // text or as JSON Lines; nothing else is, so the result only says how many members were written.
+    Result status(Writer out, StatusStream.Format format, MemberComparator.Order order, int limit, ClusterStatus status,
+                  MemberAttributes attributes) {
+
+        if (isSwimEngine()) {
 
-        Result result;
+            return new Result(ResultStatus.FAILED, "Streaming status is not supported by the swim engine.");
+        }
 
-        IMap<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+        try {
 
-        BufferedReader br = new BufferedReader(new FileReader(memberName));
+            int written = new StatusStream(this.instance, this.clusterView).write(out, format, order, limit,
+                    memberPredicate(status, attributes));
 
-        StringBuilder sb = new StringBuilder();
-        String line = br.readLine();
+            return new Result(ResultStatus.SUCCESS, written + " members written.");
 
-        if (line != null) {
+        } catch (IOException e) {
 
-            sb.append(line);
+            return new Result(ResultStatus.FAILED, "Error writing status: " + e.getMessage());
         }
+    }
+
+    // The members with the given status and attributes; a null status or attribute matches any. The query runs on
+    // the partition owners against the clusterState indexes, so only the matching entries are sent back. The swim
+    // engine matches the status against its SWIM node's member list; SWIM does not gossip attributes, so they cannot
+    // be matched there.
+    Map<MemberKey, StateEntry> findMembers(ClusterStatus status, MemberAttributes attributes) {
 
-        String uuid = sb.toString();
+        if (isSwimEngine()) {
 
-        //Check to see that recovered UUID for this node is part of the cluster
-        if (mapClusterState.containsKey(uuid)) {
+            return this.findSwimMembers(status, attributes);
+        }
 
-            this.member = new Member(memberName, sb.toString());
+        Predicate<MemberKey, StateEntry> predicate = memberPredicate(status, attributes);
 
-            // If the node is marked OFFLINE, bring it ONLINE and start services
-            if (mapClusterState.get(uuid).getStatus() == ClusterStatus.OFFLINE) {
+        IMap<MemberKey, StateEntry> mapClusterState = this.instance.getMap("clusterState");
+        Map<MemberKey, StateEntry> members = new TreeMap<>();
 
-                StateEntry state = new StateEntry(member.getName(), ClusterStatus.ONLINE, 0L);
-                mapClusterState.put(member.getUUID().toString(), state);
+        long start = System.nanoTime();
+        Set<Map.Entry<MemberKey, StateEntry>> entries = predicate == null ? mapClusterState.entrySet()
+                : mapClusterState.entrySet(predicate);
+        this.metrics.recordMapOperation("clusterState", start);
 
-                this.startServices();
+        for (Map.Entry<MemberKey, StateEntry> entry : entries) {
 
-                result = new Result(ResultStatus.SUCCESS, "Successfully recovered UUID for " + memberName);
+            members.put(entry.getKey(), entry.getValue());
+        }
 
-            }
+        return members;
+    }
 
-            // If the node was JOINING, re-issue JOIN
-            else if (mapClusterState.get(uuid).getStatus() == ClusterStatus.JOINING){
+    // The changes to the local view since a version it reported, for embedding applications that keep a copy
+    ClusterView.Delta changesSince(long since) {
 
-                Runnable task = () ->  finalizeJoin();
+        return this.clusterView.getChangesSince(since);
+    }
 
-                finalizeJoinService.schedule(task, JOIN_DELAY, TimeUnit.SECONDS);
-                finalizeJoinService.shutdown();
+    // The metrics recorded by this JVM, which are also published over JMX
+    Result metrics() {
 
-                result = new Result(ResultStatus.SUCCESS, "Successfully recovered UUID for " + memberName + " and rejoining cluster.");
+        StringBuilder metricsString = new StringBuilder();
 
-            } else {
+        for (Map.Entry<String, Long> entry : this.metrics.snapshot().entrySet()) {
 
-                result = new Result(ResultStatus.FAILED, memberName + " is currently online.");
+            metricsString.append(String.format("%-32s%d\n", entry.getKey(), entry.getValue()));
+        }
+
+        return new Result(ResultStatus.SUCCESS, metricsString.toString());
+    }
+
+    // Deliver membership changes to the listener, starting with the current state of every member. With the swim
+    // engine the changes are those of the SWIM node's member list.
+    MembershipEventDispatcher.Subscription subscribe(MembershipListener listener) {
+
+        return this.eventDispatcher.subscribe(listener);
+    }
+
+    // Route keys to ONLINE members on a consistent-hash ring that follows the local view, or with the swim engine the
+    // members its SWIM node considers alive
+    RoutingTable getRoutingTable() {
+
+        return this.routingTable;
+    }
+
+    // Reserve the name and stage the join, then start heartbeating. The first heartbeat brings the node ONLINE.
+    Result stageJoin(Member member) {
+
+        return await(this.joinAsync(member), "Error joining " + member.getName());
+    }
+
+    // As stageJoin, without blocking the caller. The map operations are chained on Hazelcast's async operations, and
+    // the node starts heartbeating on the task pool once they complete.
+    CompletableFuture<Result> joinAsync(Member member) {
+
+        if (isSwimEngine()) {
+
+            return CompletableFuture.completedFuture(this.swimJoin(member));
+        }
+
+        Result refused = this.beginIdentityChange(false);
+
+        if (refused != null) {
+
+            return CompletableFuture.completedFuture(refused);
+        }
+
+        return new JoinPipeline(instance).stageAsync(member)
+                .thenApplyAsync(result -> this.finishJoin(member, result), this.taskExecutorService)
+                .whenComplete((result, e) -> this.endIdentityChange());
+    }
+
+    Result recover(String memberName) throws IOException {
+
+        try {
+
+            return this.recoverAsync(memberName).join();
+
+        } catch (CompletionException e) {
+
+            if (e.getCause() instanceof IOException) {
+
+                throw (IOException) e.getCause();
             }
-        } else {
 
-            result = new Result(ResultStatus.FAILED, memberName + " does not exist.");
+            throw e;
         }
+    }
 
-        br.close();
+    // As recover, without blocking the caller. Completes exceptionally with an IOException if the journal cannot be
+    // read.
+    CompletableFuture<Result> recoverAsync(String memberName) {
 
-        return result;
+        if (isSwimEngine()) {
+
+            return CompletableFuture.completedFuture(new Result(ResultStatus.FAILED, "Recovery is not supported by the swim engine. Join with a new identity instead."));
+        }
+
+        MembershipJournal journal;
+
+        try {
+
+            journal = openJournal(memberName);
+
+        } catch (IOException e) {
+
+            CompletableFuture<Result> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+
+            return failed;
+        }
+
+        if (journal == null) {
+
+            return CompletableFuture.completedFuture(new Result(ResultStatus.FAILED, memberName + " does not exist."));
+        }
+
+        return this.recoverAsync(memberName, journal);
     }
 
     // Remove this node from the cluster
-    synchronized Result leave() {
+    Result leave() {
 
-        String memberName = this.member.getName();
+        return await(this.leaveAsync(), "Error leaving");
+    }
 
-        Map<String, String> mapRegistry = instance.getMap("registry");
+    // As leave, without blocking the caller. Both map entries are removed at once.
+    CompletableFuture<Result> leaveAsync() {
 
-        String uuid = mapRegistry.get(memberName);
+        if (isSwimEngine()) {
 
-        this.removeMember(memberName, uuid);
+            return CompletableFuture.completedFuture(this.swimLeave());
+        }
 
-        stopServices();
+        Result refused = this.beginIdentityChange(true);
 
-        File file = new File(memberName);
+        if (refused != null) {
 
-        file.delete();
+            return CompletableFuture.completedFuture(refused);
+        }
 
-        this.member = null;
+        Member member = this.member;
 
-        return new Result(ResultStatus.SUCCESS, memberName + " has left the cluster.");
+        return this.removeMemberAsync(member.getName(), member.getKey())
+                .thenApplyAsync(removed -> this.finishLeave(member), this.taskExecutorService)
+                .whenComplete((result, e) -> this.endIdentityChange());
     }
 
     // Remove the specified node from the cluster
-    synchronized Result remove(String memberName) {
+    Result remove(String memberName) {
 
-        Result result;
+        return await(this.removeAsync(memberName), "Error removing " + memberName);
+    }
+
+    // As remove, without blocking the caller. Removals of different members do not wait for each other.
+    CompletableFuture<Result> removeAsync(String memberName) {
+
+        if (isSwimEngine()) {
+
+            return CompletableFuture.completedFuture(new Result(ResultStatus.FAILED, "Members are removed by the swim engine once they are confirmed dead."));
+        }
 
-        IMap<String, String> mapRegistry = instance.getMap("registry");
-        IMap<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+        IMap<String, MemberKey> mapRegistry = instance.getMap("registry");
+        IMap<MemberKey, StateEntry> mapClusterState = instance.getMap("clusterState");
 
         // Check to see if the node being removed is a member of the cluster
-        if(mapRegistry.containsKey(memberName)) {
+        return Futures.of("registry", mapRegistry.getAsync(memberName)).thenCompose(key -> {
 
-            String uuid = mapRegistry.get(memberName);
-            ClusterStatus status = mapClusterState.get(uuid).getStatus();
+            if (key == null) {
 
-            // Make sure the node being removed has been marked OFFLINE or JOINING
-            if ((status == ClusterStatus.OFFLINE) || (status == ClusterStatus.JOINING)) {
+                return CompletableFuture.completedFuture(new Result(ResultStatus.FAILED, "Member" + memberName + " is not a member of the cluster."));
+            }
 
-                this.removeMember(memberName, uuid);
+            return Futures.of("clusterState", mapClusterState.getAsync(key)).thenCompose(state -> {
 
-                result = new Result(ResultStatus.SUCCESS, memberName + " has been removed from the cluster.");
+                // Make sure the node being removed has been marked OFFLINE or JOINING
+                if (state != null && state.getStatus() == ClusterStatus.ONLINE) {
 
-            } else {
+                    return CompletableFuture.completedFuture(new Result(ResultStatus.FAILED, "Member" + memberName + " is currently online."));
+                }
 
-                result = new Result(ResultStatus.FAILED, "Member" + memberName + " is currently online.");
-            }
-        } else {
+                return this.removeMemberAsync(memberName, key)
+                        .thenApply(removed -> new Result(ResultStatus.SUCCESS, memberName + " has been removed from the cluster."));
+            });
+        });
+    }
+
+    // Status is served from the local view, so it completes straight away
+    CompletableFuture<Result> statusAsync() {
 
-            result = new Result(ResultStatus.FAILED, "Member" + memberName + " is not a member of the cluster.");
+        return CompletableFuture.completedFuture(this.status());
+    }
+
+    // Completes once the view has loaded and every member in it is ONLINE. Fails straight away with the swim engine,
+    // which has no cluster view.
+    CompletableFuture<Void> awaitAllOnline() {
+
+        if (isSwimEngine()) {
+
+            return Futures.failed(new UnsupportedOperationException("Readiness checks are not supported by the swim engine."));
         }
 
-        return result;
+        return this.clusterView.awaitAllOnline();
+    }
+
+    // Completes once the view has loaded and at least this many members are ONLINE. Fails as awaitAllOnline does.
+    CompletableFuture<Void> awaitQuorum(int online) {
+
+        if (isSwimEngine()) {
+
+            return Futures.failed(new UnsupportedOperationException("Readiness checks are not supported by the swim engine."));
+        }
+
+        return this.clusterView.awaitQuorum(online);
     }
 
     // Stop services and shut down Hazelcast instance
@@ -249,65 +575,472 @@ class MembershipManager {
 
         stopServices();
 
-        instance.shutdown();
+        if (this.viewTimeout != null) {
+
+            this.viewTimeout.cancel();
+        }
+
+        if (this.journal != null) {
+
+            this.journal.close();
+        }
+
+        if (this.adminServer != null) {
+
+            this.adminServer.stop();
+        }
+
+        if (isSwimEngine()) {
+
+            this.stopSwim();
+            this.eventDispatcher.shutdown();
+            this.routingTable.stop();
+
+        } else {
+
+            this.eventDispatcher.shutdown();
+            this.routingTable.stop();
+            this.clusterView.stop();
+            this.splitBrainHealer.stop();
+            instance.shutdown();
+        }
+
+        this.timers.stop();
+        this.taskExecutorService.shutdown();
 
         return new Result(ResultStatus.SUCCESS, "Successfully shut down.");
     }
 
     /******************************************************************************************************************/
 
-    // Write UUID to disk so nodes that re-start can be recovered
-    private void persistUUID(String memberName) throws IOException {
+    // Block on an identity change. A map operation failing part way through fails the result, as it would have before
+    // the change was asynchronous, rather than surfacing as a CompletionException.
+    private static Result await(CompletableFuture<Result> future, String failure) {
+
+        try {
+
+            return future.join();
+
+        } catch (CompletionException e) {
 
-        BufferedWriter writer = new BufferedWriter(new FileWriter(memberName));
-        writer.write(this.member.getUUID().toString());
-        writer.close();
+            return new Result(ResultStatus.FAILED, failure + ": " + Futures.cause(e).getMessage());
+        }
     }
 
-    // Change node status to ONLINE and start services
-    private void finalizeJoin() {
+    // The member's journal, or null if it has none. A plain UUID file written before there was a journal is migrated
+    // into a new journal.
+    private static MembershipJournal openJournal(String memberName) throws IOException {
+
+        if (MembershipJournal.exists(memberName)) {
+
+            return MembershipJournal.open(memberName);
+        }
 
-        String uuidString = this.member.getUUID().toString();
+        File file = new File(memberName);
 
-        IMap<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+        if (!file.isFile()) {
 
-        StateEntry state = mapClusterState.get(uuidString);
+            return null;
+        }
 
-        mapClusterState.set(uuidString, state.updateStatus(ClusterStatus.ONLINE));
+        String uuid;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+
+            uuid = reader.readLine();
+        }
+
+        MembershipJournal journal = MembershipJournal.open(memberName);
+        journal.recordIdentity(new Member(memberName, uuid.trim()), 0L);
+        file.delete();
 
-        startServices();
+        return journal;
+    }
+
+    private static MembershipJournal openJournalToRecover() {
+
+        if (RECOVER_NAME == null || isSwimEngine()) {
+
+            return null;
+        }
+
+        try {
+
+            return openJournal(RECOVER_NAME);
+
+        } catch (IOException e) {
+
+            LOGGER.warning("Error reading the journal for " + RECOVER_NAME, e);
+
+            return null;
+        }
     }
 
     // Start Heartbeat and Leader services
     private void startServices() {
 
         this.heartbeatService = new HeartbeatService(this.instance, this.member);
-        this.heartbeatExecutorService.scheduleAtFixedRate(heartbeatService, 0, 10, TimeUnit.SECONDS);
+        this.heartbeatTimeout = this.timers.scheduleAtFixedRate(heartbeatService, 0, HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        this.leaderService = new LeaderService(this.instance, this.member, this.clusterView);
+        this.leaderTimeout = this.timers.scheduleAtFixedRate(leaderService, 0, LEADER_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
 
-        this.leaderService = new LeaderService(this.instance, this.member);
-        this.leaderExecutorService.scheduleAtFixedRate(leaderService, 0, 10, TimeUnit.SECONDS);
+        // Status changes are journaled as they are seen and forced to disk together
+        this.journal.follow(this.clusterView);
+        this.journalTimeout = this.timers.scheduleAtFixedRate(this.journal::flush, JOURNAL_FLUSH_MILLIS,
+                JOURNAL_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     private void stopServices() {
 
-        if(!this.heartbeatExecutorService.isShutdown()) {
+        // Cancelled rather than shut down, so a node that leaves can join again
+        if(this.heartbeatTimeout != null) {
+
+            this.heartbeatTimeout.cancel();
+            this.heartbeatTimeout = null;
+        }
+
+        if(this.leaderTimeout != null) {
+
+            this.leaderTimeout.cancel();
+            this.leaderTimeout = null;
+        }
+
+        if(this.journalTimeout != null) {
+
+            this.journalTimeout.cancel();
+            this.journalTimeout = null;
+        }
+
+        if(this.leaderService != null) {
+
+            this.leaderService.stop();
+        }
+    }
+
+    // Remove node from registry and clusterState Hazelcast maps, leaving a tombstone in case of a split brain. The
+    // view's heartbeats lag behind, so the tombstone takes the heartbeat of the entry removed.
+    private CompletableFuture<Void> removeMemberAsync(String name, MemberKey key) {
+
+        IMap<String, MemberKey> mapRegistry = instance.getMap("registry");
+        IMap<MemberKey, StateEntry> mapClusterState = instance.getMap("clusterState");
+
+        return CompletableFuture.allOf(Futures.of("registry", mapRegistry.removeAsync(name)),
+                Futures.of("clusterState", mapClusterState.removeAsync(key)).thenCompose(state ->
+                        SplitBrainHealer.recordRemoval(this.instance, key, name, state == null ? 0L : state.getHeartbeat())));
+    }
+
+    // Recover the journaled identity. Its state is read from the partition owner once, to check the node is still a
+    // member and is not running elsewhere.
+    private CompletableFuture<Result> recoverAsync(String memberName, MembershipJournal journal) {
+
+        Result refused = this.beginIdentityChange(false);
+
+        if (refused != null) {
+
+            journal.close();
+
+            return CompletableFuture.completedFuture(refused);
+        }
+
+        Member member = journal.getMember();
+        IMap<MemberKey, StateEntry> mapClusterState = instance.getMap("clusterState");
+
+        CompletableFuture<StateEntry> state = member == null ? CompletableFuture.completedFuture(null)
+                : Futures.of("clusterState", mapClusterState.getAsync(member.getKey()));
+
+        return state.thenCompose(current -> {
+
+            //Check to see that recovered UUID for this node is part of the cluster
+            if (current == null) {
+
+                return CompletableFuture.completedFuture(new Result(ResultStatus.FAILED, memberName + " does not exist."));
+            }
+
+            // If the node is marked OFFLINE, bring it ONLINE and start services. The entry's heartbeat is above every
+            // heartbeat the member is known to have sent, so an OFFLINE entry kept by the other side of a split brain
+            // does not win the merge once it heals.
+            if (current.getStatus() == ClusterStatus.OFFLINE) {
+
+                StateEntry journaled = journal.getMembers().get(member.getKey());
+                long lastHeartbeat = Math.max(current.getHeartbeat(), journaled == null ? 0L : journaled.getHeartbeat());
+                StateEntry online = new StateEntry(ClusterStatus.ONLINE, Math.max(System.currentTimeMillis(), lastHeartbeat + 1),
+                        current.getAttributes());
+
+                return Futures.of("clusterState", mapClusterState.putAsync(member.getKey(), online))
+                        .thenApply(previous -> new Result(ResultStatus.SUCCESS, "Successfully recovered UUID for " + memberName));
+            }
+
+            // If the node was JOINING, start services so its first heartbeat finalizes the join
+            if (current.getStatus() == ClusterStatus.JOINING) {
+
+                return CompletableFuture.completedFuture(new Result(ResultStatus.SUCCESS, "Successfully recovered UUID for " + memberName + " and rejoining cluster."));
+            }
+
+            return CompletableFuture.completedFuture(new Result(ResultStatus.FAILED, memberName + " is currently online."));
+
+        }).thenApplyAsync(result -> this.finishRecover(member, journal, result), this.taskExecutorService)
+                .whenComplete((result, e) -> this.endIdentityChange());
+    }
+
+    // Join, recover and leave change this node's identity, so only one of them may be in flight at a time. Returns
+    // why the change is refused, or null if it may go ahead.
+    private synchronized Result beginIdentityChange(boolean isLeaving) {
+
+        if (this.isChangingIdentity) {
+
+            return new Result(ResultStatus.FAILED, "A join, recover or leave is already in progress on this node.");
+        }
+
+        if (isLeaving && this.member == null) {
+
+            return new Result(ResultStatus.FAILED, "This node has not been joined to the cluster.");
+        }
+
+        // Check to see if stageJoin has been run already
+        if (!isLeaving && this.member != null) {
+
+            return new Result(ResultStatus.FAILED, "This node, " + this.member.getName() + ", has already been joined to the cluster.");
+        }
+
+        this.isChangingIdentity = true;
+
+        return null;
+    }
+
+    private synchronized void endIdentityChange() {
+
+        this.isChangingIdentity = false;
+    }
+
+    private synchronized Result finishJoin(Member member, Result result) {
+
+        if (result.getStatus() != ResultStatus.SUCCESS) {
+
+            return result;
+        }
+
+        // Journal the node's identity before claiming it, so a node that could not be recovered never counts as joined
+        boolean isNewJournal = !MembershipJournal.exists(member.getName());
+        MembershipJournal journal = null;
+
+        try {
+
+            journal = MembershipJournal.open(member.getName());
+            journal.recordIdentity(member, 0L);
+
+        } catch (IOException e) {
+
+            if (journal != null) {
+
+                if (isNewJournal) {
+
+                    journal.delete();
+
+                } else {
+
+                    journal.close();
+                }
+            }
+
+            // Give the name back and drop the JOINING state, as JoinPipeline does, so the member can try again
+            IMap<String, MemberKey> mapRegistry = this.instance.getMap("registry");
+            IMap<MemberKey, StateEntry> mapClusterState = this.instance.getMap("clusterState");
+
+            mapClusterState.remove(member.getKey());
+            mapRegistry.remove(member.getName(), member.getKey());
+
+            return new Result(ResultStatus.FAILED, "Error persisting the UUID of " + member.getName() + ": " + e.getMessage());
+        }
+
+        this.member = member;
+        this.journal = journal;
+
+        this.startServices();
+
+        return result;
+    }
+
+    private synchronized Result finishRecover(Member member, MembershipJournal journal, Result result) {
 
-            this.heartbeatExecutorService.shutdown();
+        if (result.getStatus() != ResultStatus.SUCCESS) {
+
+            journal.close();
+
+            return result;
+        }
+
+        this.member = member;
+        this.journal = journal;
+
+        try {
+
+            this.journal.recordIdentity(member, journal.getIncarnation() + 1);
+
+        } catch (IOException e) {
+
+            LOGGER.warning("Error journaling the recovery of " + member.getName(), e);
+        }
+
+        this.startServices();
+
+        return result;
+    }
+
+    private synchronized Result finishLeave(Member member) {
+
+        stopServices();
+
+        this.journal.delete();
+        this.journal = null;
+
+        this.member = null;
+
+        return new Result(ResultStatus.SUCCESS, member.getName() + " has left the cluster.");
+    }
+
+    // The node's manager is created on first use, so the simulator and benchmarks can use this class without starting
+    // a node of their own
+    private static class Holder {
+
+        private static final MembershipManager MANAGER = new MembershipManager();
+    }
+
+    // A query for the members with the given status and attributes, or null to match every member
+    private static Predicate<MemberKey, StateEntry> memberPredicate(ClusterStatus status, MemberAttributes attributes) {
+
+        List<Predicate<MemberKey, StateEntry>> predicates = new ArrayList<>();
+
+        if (status != null) {
+
+            predicates.add(typed(Predicates.equal("status", status)));
+        }
+
+        if (attributes.getZone() != null) {
+
+            predicates.add(typed(Predicates.equal("zone", attributes.getZone())));
+        }
+
+        if (attributes.getRack() != null) {
+
+            predicates.add(typed(Predicates.equal("rack", attributes.getRack())));
+        }
+
+        if (attributes.getRole() != null) {
+
+            predicates.add(typed(Predicates.equal("role", attributes.getRole())));
+        }
+
+        return predicates.isEmpty() ? null : typed(Predicates.and(predicates.toArray(new Predicate<?, ?>[0])));
+    }
+
+    // Predicates builds raw predicates, which all apply to clusterState entries here
+    @SuppressWarnings("unchecked")
+    private static Predicate<MemberKey, StateEntry> typed(Predicate<?, ?> predicate) {
+
+        return (Predicate<MemberKey, StateEntry>) predicate;
+    }
+
+    private static boolean isSwimEngine() {
+
+        return "swim".equals(ENGINE);
+    }
+
+    private Map<MemberKey, StateEntry> findSwimMembers(ClusterStatus status, MemberAttributes attributes) {
+
+        if (!attributes.isEmpty()) {
+
+            throw new UnsupportedOperationException("Finding members by attribute is not supported by the swim engine.");
+        }
+
+        Map<MemberKey, StateEntry> members = new TreeMap<>();
+
+        for (Map.Entry<MemberKey, StateEntry> entry : this.swimView.getMembers().entrySet()) {
+
+            if (status == null || entry.getValue().getStatus() == status) {
+
+                members.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return members;
+    }
+
+    // Start gossiping from the configured address, joining through the seeds
+    private synchronized Result swimJoin(Member member) {
+
+        if (this.member != null) {
+
+            return new Result(ResultStatus.FAILED, "This node, " + this.member.getName() + ", has already been joined to the cluster.");
+        }
+
+        String address = System.getProperty("membership.swim.address", "127.0.0.1:7946");
+        List<String> seeds = System.getProperty("membership.swim.seeds") == null ? Collections.emptyList()
+                : Arrays.asList(System.getProperty("membership.swim.seeds").split(","));
+
+        try {
+
+            this.swimTransport = new UdpTransport(address);
+
+        } catch (IOException e) {
+
+            return new Result(ResultStatus.FAILED, "Error binding " + address + ": " + e.getMessage());
+        }
+
+        this.swimNode = new SwimNode(member.getUUID().toString(), member.getName(), this.swimTransport, this.timers);
+        this.swimView.attach(this.swimNode);
+        this.swimNode.start(seeds);
+
+        this.member = member;
+
+        return new Result(ResultStatus.SUCCESS, member.toString() + " is " + ClusterStatus.ONLINE.toString());
+    }
+
+    private synchronized Result swimLeave() {
+
+        if (this.member == null) {
+
+            return new Result(ResultStatus.FAILED, "This node has not been joined to the cluster.");
         }
 
-        if(!this.leaderExecutorService.isShutdown()) {
+        String memberName = this.member.getName();
+
+        this.swimNode.leave();
+        this.stopSwim();
+        this.member = null;
+
+        return new Result(ResultStatus.SUCCESS, memberName + " has left the cluster.");
+    }
 
-            this.leaderExecutorService.shutdown();
+    private void stopSwim() {
+
+        if (this.swimNode != null) {
+
+            this.swimView.detach();
+            this.swimNode.stop();
+            this.swimTransport.close();
+            this.swimNode = null;
         }
     }
 
-    // Remove node from registry and clusterState Hazelcast maps
-    private void removeMember(String name, String uuid) {
+    // Render this node's view of the membership, in which ALIVE and SUSPECT members are ONLINE, DEAD members are
+    // OFFLINE, and members that have left are not shown (see SwimView)
+    private Result swimStatus() {
+
+        StringBuilder statusString = new StringBuilder();
+
+        statusString.append("Leader: none (swim engine)\n\n");
+
+        statusString.append(String.format("%-38s%-20s%-8s%-11s\n", "UUID", "Name", "Status", "Incarnation"));
 
-        IMap<String, String> mapRegistry = instance.getMap("registry");
-        IMap<String, StateEntry> mapClusterState = instance.getMap("clusterState");
+        for (Map.Entry<MemberKey, StateEntry> entry : new TreeMap<>(this.swimView.getMembers()).entrySet()) {
 
-        mapRegistry.remove(name);
-        mapClusterState.remove(uuid);
+            statusString.append(String.format("%-38s%-20s%-8s%-11s\n", entry.getKey(),
+                    this.swimView.getName(entry.getKey()),
+                    entry.getValue().getStatus().toString(),
+                    String.valueOf(entry.getValue().getHeartbeat())));
+        }
+
+        return new Result(ResultStatus.SUCCESS, statusString.toString());
     }
 }
@@ -0,0 +1,257 @@
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.logging.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Counters and latency histograms for this JVM's membership work, published over JMX as membership:type=Metrics and
+// printed by the metrics command. Recording is lock-free and does not allocate.
+class MembershipMetrics implements DynamicMBean {
+
+    private static final ILogger LOGGER = Logger.getLogger(MembershipMetrics.class);
+    private static final MembershipMetrics METRICS = new MembershipMetrics();
+
+    static final String OBJECT_NAME = "membership:type=Metrics";
+
+    private final Histogram heartbeats = new Histogram();
+    private final Histogram leaderTicks = new Histogram();
+    private final LongAdder transitions = new LongAdder();
+    private final LongAdder leaderChanges = new LongAdder();
+    private final HourlyCounter recentLeaderChanges = new HourlyCounter();
+    private final Histogram timeToOnline = new Histogram();
+    private final Histogram clusterStateOperations = new Histogram();
+    private final Histogram registryOperations = new Histogram();
+    private final Histogram metadataOperations = new Histogram();
+    private final Histogram suspicionsOperations = new Histogram();
+
+    // Every published attribute, in display order
+    private final Map<String, LongSupplier> attributes = new LinkedHashMap<>();
+
+    private MembershipMetrics() {
+
+        this.addHistogram("heartbeat", this.heartbeats);
+        this.addHistogram("leaderTick", this.leaderTicks);
+        this.attributes.put("leaderTick.transitions", this.transitions::sum);
+        this.attributes.put("leader.changes", this.leaderChanges::sum);
+        this.attributes.put("leader.changesLastHour", this.recentLeaderChanges::sum);
+        this.addHistogram("timeToOnline", this.timeToOnline);
+        this.addHistogram("map.clusterState", this.clusterStateOperations);
+        this.addHistogram("map.registry", this.registryOperations);
+        this.addHistogram("map.metadata", this.metadataOperations);
+        this.addHistogram("map.suspicions", this.suspicionsOperations);
+    }
+
+    static MembershipMetrics getMetrics() {
+
+        return METRICS;
+    }
+
+    // Publish the metrics on the platform MBean server, once per JVM
+    static synchronized void register() {
+
+        try {
+
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+
+                ManagementFactory.getPlatformMBeanServer().registerMBean(METRICS, name);
+            }
+
+        } catch (JMException e) {
+
+            LOGGER.warning("Error registering membership metrics", e);
+        }
+    }
+
+    void recordHeartbeat(long startNanos) {
+
+        this.heartbeats.recordSince(startNanos);
+        this.clusterStateOperations.recordSince(startNanos);
+    }
+
+    void recordLeaderTick(long startNanos, int transitions) {
+
+        this.leaderTicks.recordSince(startNanos);
+        this.transitions.add(transitions);
+    }
+
+    void recordLeaderChange() {
+
+        this.leaderChanges.increment();
+        this.recentLeaderChanges.increment();
+    }
+
+    void recordTimeToOnline(long stageJoinNanos) {
+
+        this.timeToOnline.recordSince(stageJoinNanos);
+    }
+
+    // Record an operation on one of the membership maps, by map name
+    void recordMapOperation(String map, long startNanos) {
+
+        switch (map) {
+            case "clusterState":
+                this.clusterStateOperations.recordSince(startNanos);
+                break;
+            case "registry":
+                this.registryOperations.recordSince(startNanos);
+                break;
+            case "metadata":
+                this.metadataOperations.recordSince(startNanos);
+                break;
+            case "suspicions":
+                this.suspicionsOperations.recordSince(startNanos);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // The current value of every attribute, in display order
+    Map<String, Long> snapshot() {
+
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+
+        for (Map.Entry<String, LongSupplier> entry : this.attributes.entrySet()) {
+
+            snapshot.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+
+        return snapshot;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+
+        LongSupplier supplier = this.attributes.get(attribute);
+
+        if (supplier == null) {
+
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        return supplier.getAsLong();
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+
+        throw new AttributeNotFoundException("Membership metrics are read-only.");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+
+        AttributeList list = new AttributeList();
+
+        for (String attribute : attributes) {
+
+            LongSupplier supplier = this.attributes.get(attribute);
+
+            if (supplier != null) {
+
+                list.add(new Attribute(attribute, supplier.getAsLong()));
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+
+        // The bean has no operations
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+
+        MBeanAttributeInfo[] infos = new MBeanAttributeInfo[this.attributes.size()];
+        int i = 0;
+
+        for (String attribute : this.attributes.keySet()) {
+
+            infos[i++] = new MBeanAttributeInfo(attribute, "long", attribute, true, false, false);
+        }
+
+        return new MBeanInfo(getClass().getName(), "Membership metrics", infos, null, new MBeanOperationInfo[0], null);
+    }
+
+    /******************************************************************************************************************/
+
+    private void addHistogram(String name, Histogram histogram) {
+
+        this.attributes.put(name + ".count", histogram::getCount);
+        this.attributes.put(name + ".mean.us", histogram::getMeanMicros);
+        this.attributes.put(name + ".p50.us", () -> histogram.getPercentileMicros(50));
+        this.attributes.put(name + ".p99.us", () -> histogram.getPercentileMicros(99));
+        this.attributes.put(name + ".max.us", histogram::getMaxMicros);
+    }
+
+    // Counts events over the last hour in one minute slots. A slot is reset by the first increment of a new minute.
+    private static class HourlyCounter {
+
+        private static final int SLOTS = 60;
+
+        private final AtomicLongArray minutes = new AtomicLongArray(SLOTS);
+        private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+
+        void increment() {
+
+            long minute = currentMinute();
+            int slot = (int) Math.floorMod(minute, (long) SLOTS);
+            long slotMinute = this.minutes.get(slot);
+
+            if (slotMinute != minute && this.minutes.compareAndSet(slot, slotMinute, minute)) {
+
+                this.counts.set(slot, 0L);
+            }
+
+            this.counts.incrementAndGet(slot);
+        }
+
+        long sum() {
+
+            long minute = currentMinute();
+            long sum = 0L;
+
+            for (int slot = 0; slot < SLOTS; slot++) {
+
+                if (minute - this.minutes.get(slot) < SLOTS) {
+
+                    sum += this.counts.get(slot);
+                }
+            }
+
+            return sum;
+        }
+
+        private static long currentMinute() {
+
+            return TimeUnit.NANOSECONDS.toMinutes(System.nanoTime());
+        }
+    }
+}
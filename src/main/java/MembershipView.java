@@ -0,0 +1,32 @@
+import java.util.Map;
+
+// The members a node currently knows of, as the dispatcher, the routing table and the journal read them. ClusterView
+// provides it from the Hazelcast maps, and SwimView from the member list of a SWIM node.
+interface MembershipView {
+
+    // Called on the thread that applied the change: a Hazelcast event thread, the thread reloading a ClusterView, or
+    // a SWIM node's protocol thread
+    interface Listener {
+
+        default void memberUpdated(MemberKey key, StateEntry previous, StateEntry current) { }
+
+        default void memberRemoved(MemberKey key, StateEntry previous) { }
+
+        default void leaderChanged(LeaderLease current) { }
+    }
+
+    void addListener(Listener listener);
+
+    void removeListener(Listener listener);
+
+    // A read-only live view of the members
+    Map<MemberKey, StateEntry> getMembers();
+
+    StateEntry getMember(MemberKey key);
+
+    // The member's name, or null if it is not known yet
+    String getName(MemberKey key);
+
+    // The current leader, or null if there is none
+    LeaderLease getLeader();
+}
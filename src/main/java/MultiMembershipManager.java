@@ -0,0 +1,205 @@
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Hosts many logical members (e.g. one per shard) on one Hazelcast instance. They share one cluster view and one
+// timer wheel, their heartbeats are coalesced into a single batched write per tick, and only one of them (the longest
+// hosted) stands for leader, so the overhead per JVM stays flat as members are added.
+class MultiMembershipManager {
+
+    private final HazelcastInstance instance;
+    private final ClusterView clusterView;
+    private final MembershipEventDispatcher eventDispatcher;
+    private final RoutingTable routingTable;
+    private final BatchHeartbeatService heartbeatService;
+    private final SplitBrainHealer splitBrainHealer;
+    private final ExecutorService executorService = Executors.newFixedThreadPool(3);
+    private final TimerWheel timers = new TimerWheel("membership-timers", this.executorService);
+
+    // Hosted members by name, in the order they joined
+    private final ConcurrentMap<String, Member> members = new ConcurrentHashMap<>();
+    private final List<Member> joinOrder = new ArrayList<>();
+
+    private LeaderService leaderService;
+    private Member leaderMember;
+
+    MultiMembershipManager(HazelcastInstance instance) {
+
+        this.instance = instance;
+
+        MembershipMetrics.register();
+
+        this.clusterView = new ClusterView(instance);
+        this.eventDispatcher = new MembershipEventDispatcher(this.clusterView);
+        this.clusterView.addListener(this.eventDispatcher);
+        this.clusterView.start();
+
+        this.routingTable = new RoutingTable(this.clusterView);
+        this.routingTable.start();
+
+        this.heartbeatService = new BatchHeartbeatService(instance);
+
+        this.splitBrainHealer = new SplitBrainHealer(instance);
+        this.splitBrainHealer.start();
+
+        this.timers.scheduleAtFixedRate(this.clusterView, 1, 1, TimeUnit.SECONDS);
+        this.timers.scheduleAtFixedRate(this.heartbeatService, 0, MembershipManager.HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        this.timers.scheduleAtFixedRate(this::runLeaderService, 0, MembershipManager.LEADER_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        this.timers.start();
+    }
+
+    // Stage the joins of all the members at once. Members whose names were reserved start heartbeating with the next
+    // tick, which brings them ONLINE.
+    synchronized Map<Member, Result> join(Collection<Member> members) {
+
+        Map<Member, Result> results = new JoinPipeline(this.instance).stage(members);
+
+        for (Map.Entry<Member, Result> result : results.entrySet()) {
+
+            Member member = result.getKey();
+
+            if (result.getValue().getStatus() == ResultStatus.SUCCESS) {
+
+                this.members.put(member.getName(), member);
+                this.joinOrder.add(member);
+                this.heartbeatService.add(member.getKey());
+            }
+        }
+
+        return results;
+    }
+
+    // Remove a hosted member from the cluster. It has only left once its tombstone is recorded, or a split brain merge
+    // could bring it back.
+    synchronized Result leave(String memberName) {
+
+        Member member = this.members.remove(memberName);
+
+        if (member == null) {
+
+            return new Result(ResultStatus.FAILED, memberName + " is not hosted here.");
+        }
+
+        this.heartbeatService.remove(member.getKey());
+        this.joinOrder.remove(member);
+
+        IMap<String, MemberKey> mapRegistry = this.instance.getMap("registry");
+        IMap<MemberKey, StateEntry> mapClusterState = this.instance.getMap("clusterState");
+
+        // The view's heartbeats lag behind, so the tombstone takes the heartbeat of the entry removed
+        mapRegistry.remove(memberName, member.getKey());
+        StateEntry state = mapClusterState.remove(member.getKey());
+        CompletableFuture<Tombstone> tombstone = SplitBrainHealer.recordRemoval(this.instance, member.getKey(), memberName,
+                state == null ? 0L : state.getHeartbeat());
+
+        // Hand leadership duties to the next hosted member
+        if (member == this.leaderMember) {
+
+            this.leaderService.stop();
+            this.leaderService = null;
+            this.leaderMember = null;
+        }
+
+        try {
+
+            tombstone.join();
+
+        } catch (CompletionException e) {
+
+            return new Result(ResultStatus.FAILED, "Error recording the removal of " + memberName + ": "
+                    + Futures.cause(e).getMessage());
+        }
+
+        return new Result(ResultStatus.SUCCESS, memberName + " has left the cluster.");
+    }
+
+    Collection<Member> getMembers() {
+
+        return Collections.unmodifiableCollection(this.members.values());
+    }
+
+    ClusterView getClusterView() {
+
+        return this.clusterView;
+    }
+
+    RoutingTable getRoutingTable() {
+
+        return this.routingTable;
+    }
+
+    MembershipEventDispatcher.Subscription subscribe(MembershipListener listener) {
+
+        return this.eventDispatcher.subscribe(listener);
+    }
+
+    // Stop heartbeating for every hosted member and shut down the Hazelcast instance. The members stay in the cluster
+    // and are marked OFFLINE by the leader.
+    void shutdown() {
+
+        this.timers.stop();
+        this.executorService.shutdown();
+
+        synchronized (this) {
+
+            if (this.leaderService != null) {
+
+                this.leaderService.stop();
+            }
+        }
+
+        this.eventDispatcher.shutdown();
+        this.routingTable.stop();
+        this.clusterView.stop();
+        this.splitBrainHealer.stop();
+        this.instance.shutdown();
+    }
+
+    /******************************************************************************************************************/
+
+    // The longest hosted member stands for leader, and watches the ring, on behalf of all of them
+    private void runLeaderService() {
+
+        LeaderService leaderService;
+
+        synchronized (this) {
+
+            if (this.leaderService == null && !this.joinOrder.isEmpty()) {
+
+                this.leaderMember = this.joinOrder.get(0);
+                this.leaderService = new LeaderService(this.instance, this.leaderMember, this.clusterView);
+            }
+
+            leaderService = this.leaderService;
+
+            if (leaderService != null) {
+
+                List<MemberKey> positions = new ArrayList<>();
+
+                for (Member member : this.joinOrder) {
+
+                    positions.add(member.getKey());
+                }
+
+                leaderService.setRingPositions(positions);
+            }
+        }
+
+        if (leaderService != null) {
+
+            leaderService.run();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// The phi accrual failure detector (Hayashibara et al.). Instead of a fixed timeout, each member's heartbeat
+// inter-arrival times are modelled as a normal distribution and the suspicion level phi is -log10 of the probability
+// that a heartbeat is still to come after the time that has elapsed since the last one. A threshold of 8 means the
+// chance of a false positive is about 1 in 10^8 given the observed distribution, so members on jittery hosts are
+// given more slack and members with regular heartbeats are detected sooner.
+public class PhiAccrualFailureDetector implements FailureDetector {
+
+    private final double threshold;
+    private final int maxSamples;
+    private final long minStdDevMillis;
+    private final long acceptablePauseMillis;
+    private final long firstHeartbeatEstimateMillis;
+
+    private final ConcurrentMap<MemberKey, HeartbeatHistory> histories = new ConcurrentHashMap<>();
+
+    // acceptablePauseMillis is added to the mean interval to tolerate GC and scheduling pauses on the member.
+    // firstHeartbeatEstimateMillis seeds the history of a new member so it is not suspected before it has a history.
+    public PhiAccrualFailureDetector(double threshold, int maxSamples, long minStdDevMillis, long acceptablePauseMillis,
+                                     long firstHeartbeatEstimateMillis) {
+
+        this.threshold = threshold;
+        this.maxSamples = maxSamples;
+        this.minStdDevMillis = minStdDevMillis;
+        this.acceptablePauseMillis = acceptablePauseMillis;
+        this.firstHeartbeatEstimateMillis = firstHeartbeatEstimateMillis;
+    }
+
+    @Override
+    public void heartbeat(MemberKey key, long arrivalMillis) {
+
+        HeartbeatHistory history = this.histories.get(key);
+
+        if (history == null) {
+
+            history = this.histories.computeIfAbsent(key, k -> this.newHistory(arrivalMillis));
+        }
+
+        history.heartbeat(arrivalMillis);
+    }
+
+    @Override
+    public double suspicion(MemberKey key, long nowMillis) {
+
+        HeartbeatHistory history = this.histories.get(key);
+
+        if (history == null) {
+
+            return 0.0;
+        }
+
+        return history.phi(nowMillis, this.minStdDevMillis, this.acceptablePauseMillis);
+    }
+
+    @Override
+    public boolean isAvailable(MemberKey key, long nowMillis) {
+
+        return this.suspicion(key, nowMillis) < this.threshold;
+    }
+
+    @Override
+    public void remove(MemberKey key) {
+
+        this.histories.remove(key);
+    }
+
+    // Seed the history with two intervals around the estimate, so the first real intervals are compared against a
+    // sensible mean and standard deviation
+    private HeartbeatHistory newHistory(long arrivalMillis) {
+
+        HeartbeatHistory history = new HeartbeatHistory(this.maxSamples, arrivalMillis);
+
+        long deviation = this.firstHeartbeatEstimateMillis / 4;
+        history.add(this.firstHeartbeatEstimateMillis - deviation);
+        history.add(this.firstHeartbeatEstimateMillis + deviation);
+
+        return history;
+    }
+
+    // A fixed-size ring buffer of inter-arrival times with running sums, so recording a heartbeat and computing phi
+    // are O(1) and do not allocate
+    static final class HeartbeatHistory {
+
+        private final long[] intervals;
+        private int count;
+        private int next;
+        private long sum;
+        private double sumOfSquares;
+        private long lastArrival;
+
+        HeartbeatHistory(int maxSamples, long firstArrival) {
+
+            this.intervals = new long[maxSamples];
+            this.lastArrival = firstArrival;
+        }
+
+        synchronized void heartbeat(long arrivalMillis) {
+
+            long interval = arrivalMillis - this.lastArrival;
+
+            // Arrivals from before the last one carry no information
+            if (interval <= 0) {
+
+                return;
+            }
+
+            this.lastArrival = arrivalMillis;
+            this.add(interval);
+        }
+
+        synchronized void add(long interval) {
+
+            if (this.count == this.intervals.length) {
+
+                long evicted = this.intervals[this.next];
+                this.sum -= evicted;
+                this.sumOfSquares -= (double) evicted * evicted;
+
+            } else {
+
+                this.count++;
+            }
+
+            this.intervals[this.next] = interval;
+            this.next = (this.next + 1) % this.intervals.length;
+            this.sum += interval;
+            this.sumOfSquares += (double) interval * interval;
+        }
+
+        synchronized double phi(long nowMillis, long minStdDevMillis, long acceptablePauseMillis) {
+
+            double elapsed = nowMillis - this.lastArrival;
+            double mean = (double) this.sum / this.count;
+            double variance = Math.max(this.sumOfSquares / this.count - mean * mean, 0.0);
+            double stdDev = Math.max(Math.sqrt(variance), minStdDevMillis);
+
+            return phi(elapsed, mean + acceptablePauseMillis, stdDev);
+        }
+
+        // Uses the logistic approximation of the normal cumulative distribution function
+        private static double phi(double elapsed, double mean, double stdDev) {
+
+            double y = (elapsed - mean) / stdDev;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+
+            if (elapsed > mean) {
+
+                return -Math.log10(e / (1.0 + e));
+
+            } else {
+
+                return -Math.log10(1.0 - 1.0 / (1.0 + e));
+            }
+        }
+    }
+}
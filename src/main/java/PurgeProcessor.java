@@ -0,0 +1,75 @@
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Removes a removed member's clusterState entry that a split brain merge brought back, on the partition owner. The
+// entry is kept if its heartbeat is newer than the member's tombstone, as the member went on heartbeating on the other
+// side after it was removed on this one.
+public class PurgeProcessor implements EntryProcessor<MemberKey, StateEntry>, EntryBackupProcessor<MemberKey, StateEntry>,
+        IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long heartbeat;
+
+    public PurgeProcessor() { }
+
+    PurgeProcessor(long heartbeat) {
+
+        this.heartbeat = heartbeat;
+    }
+
+    @Override
+    public Object process(Map.Entry<MemberKey, StateEntry> entry) {
+
+        StateEntry state = entry.getValue();
+
+        if (state == null || state.getHeartbeat() > this.heartbeat) {
+
+            return false;
+        }
+
+        entry.setValue(null);
+
+        return true;
+    }
+
+    @Override
+    public EntryBackupProcessor<MemberKey, StateEntry> getBackupProcessor() {
+
+        return this;
+    }
+
+    @Override
+    public void processBackup(Map.Entry<MemberKey, StateEntry> entry) {
+
+        this.process(entry);
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeLong(heartbeat);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        heartbeat = in.readLong();
+    }
+
+    @Override
+    public int getFactoryId() {
+
+        return StateEntryDataSerializableFactory.ID;
+    }
+
+    @Override
+    public int getId() {
+
+        return StateEntryDataSerializableFactory.PURGE_PROCESSOR_TYPE;
+    }
+}
@@ -0,0 +1,72 @@
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Reserves a name in the registry for a member on the partition owner, as an atomic putIfAbsent that can be submitted
+// asynchronously. Returns the key now holding the name, so the caller has won the name if that is its own key
+// (including when it reserved it on an earlier attempt).
+public class ReserveNameProcessor implements EntryProcessor<String, MemberKey>, EntryBackupProcessor<String, MemberKey>,
+        IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private MemberKey key;
+
+    public ReserveNameProcessor() { }
+
+    ReserveNameProcessor(MemberKey key) {
+
+        this.key = key;
+    }
+
+    @Override
+    public Object process(Map.Entry<String, MemberKey> entry) {
+
+        if (entry.getValue() == null) {
+
+            entry.setValue(this.key);
+        }
+
+        return entry.getValue();
+    }
+
+    @Override
+    public EntryBackupProcessor<String, MemberKey> getBackupProcessor() {
+
+        return this;
+    }
+
+    @Override
+    public void processBackup(Map.Entry<String, MemberKey> entry) {
+
+        this.process(entry);
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        key.writeData(out);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        key = new MemberKey();
+        key.readData(in);
+    }
+
+    @Override
+    public int getFactoryId() {
+
+        return StateEntryDataSerializableFactory.ID;
+    }
+
+    @Override
+    public int getId() {
+
+        return StateEntryDataSerializableFactory.RESERVE_NAME_PROCESSOR_TYPE;
+    }
+}
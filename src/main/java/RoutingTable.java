@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Routes keys to ONLINE members over a consistent-hash ring built from the membership view. Each member is placed at a
+// number of virtual nodes derived from its UUID, so every node that sees the same ONLINE members builds the same ring,
+// and a member coming or going only moves the keys on its own arcs. The ring is an immutable snapshot of sorted points
+// behind one volatile field: lookups binary search it without locking or allocating, and each transition into or out
+// of ONLINE splices the member's points into a new snapshot that replaces it.
+public class RoutingTable implements MembershipView.Listener {
+
+    private static final int VIRTUAL_NODES = Integer.getInteger("membership.routing.virtualNodes", 128);
+
+    private final MembershipView view;
+
+    // The members on the ring. Guarded by this.
+    private final Set<MemberKey> members = new HashSet<>();
+    private volatile Ring ring = Ring.EMPTY;
+
+    RoutingTable(MembershipView view) {
+
+        this.view = view;
+    }
+
+    // Start following the view, then build the ring from every member already ONLINE in one pass. Transitions seen in
+    // between are reconciled against the view, so none is lost.
+    synchronized void start() {
+
+        this.view.addListener(this);
+
+        List<MemberKey> online = new ArrayList<>();
+
+        for (Map.Entry<MemberKey, StateEntry> entry : this.view.getMembers().entrySet()) {
+
+            if (entry.getValue().getStatus() == ClusterStatus.ONLINE && this.members.add(entry.getKey())) {
+
+                online.add(entry.getKey());
+            }
+        }
+
+        this.ring = this.ring.add(online);
+    }
+
+    void stop() {
+
+        this.view.removeListener(this);
+    }
+
+    // The ONLINE member that owns the key, or null if no member is ONLINE
+    public MemberKey route(Object key) {
+
+        return this.route(key.hashCode());
+    }
+
+    // As route, for callers that hash their keys themselves. The hash is mixed, so it need not be well distributed.
+    public MemberKey route(long hash) {
+
+        return this.ring.route(mix(hash));
+    }
+
+    // The number of members on the ring
+    public int size() {
+
+        return this.ring.size;
+    }
+
+    @Override
+    public void memberUpdated(MemberKey key, StateEntry previous, StateEntry current) {
+
+        // Most updates are heartbeats, which never move a member on or off the ring
+        if (previous == null || previous.getStatus() != current.getStatus()) {
+
+            this.reconcile(key);
+        }
+    }
+
+    @Override
+    public void memberRemoved(MemberKey key, StateEntry previous) {
+
+        this.reconcile(key);
+    }
+
+    /******************************************************************************************************************/
+
+    // Put the member on the ring if the view has it ONLINE and take it off otherwise. Reading the view rather than the
+    // event makes events that arrive late or twice harmless.
+    private synchronized void reconcile(MemberKey key) {
+
+        StateEntry state = this.view.getMember(key);
+
+        if (state != null && state.getStatus() == ClusterStatus.ONLINE) {
+
+            if (this.members.add(key)) {
+
+                this.ring = this.ring.add(Collections.singletonList(key));
+            }
+
+        } else if (this.members.remove(key)) {
+
+            this.ring = this.ring.remove(key);
+        }
+    }
+
+    // The MurmurHash3 64 bit finalizer
+    private static long mix(long hash) {
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+    // Sorted points and the member at each one. Equal points are ordered by member, so the order never depends on the
+    // order members were added in.
+    private static class Ring {
+
+        private static final Ring EMPTY = new Ring(new long[0], new MemberKey[0], 0);
+
+        private final long[] points;
+        private final MemberKey[] owners;
+        private final int size;
+
+        private Ring(long[] points, MemberKey[] owners, int size) {
+
+            this.points = points;
+            this.owners = owners;
+            this.size = size;
+        }
+
+        // The owner of the first point at or after the hash, wrapping around to the first point
+        private MemberKey route(long hash) {
+
+            long[] points = this.points;
+
+            if (points.length == 0) {
+
+                return null;
+            }
+
+            int low = 0;
+            int high = points.length;
+
+            while (low < high) {
+
+                int middle = (low + high) >>> 1;
+
+                if (points[middle] < hash) {
+
+                    low = middle + 1;
+
+                } else {
+
+                    high = middle;
+                }
+            }
+
+            return this.owners[low == points.length ? 0 : low];
+        }
+
+        // A ring with the members' points merged into these
+        private Ring add(List<MemberKey> keys) {
+
+            if (keys.isEmpty()) {
+
+                return this;
+            }
+
+            int added = keys.size() * VIRTUAL_NODES;
+            long[] addedPoints = new long[added];
+            MemberKey[] addedOwners = new MemberKey[added];
+
+            for (int i = 0; i < keys.size(); i++) {
+
+                MemberKey key = keys.get(i);
+                UUID uuid = key.toUUID();
+                long bits = uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits());
+
+                for (int j = 0; j < VIRTUAL_NODES; j++) {
+
+                    addedPoints[i * VIRTUAL_NODES + j] = mix(bits + j * 0x9e3779b97f4a7c15L);
+                    addedOwners[i * VIRTUAL_NODES + j] = key;
+                }
+            }
+
+            sort(addedPoints, addedOwners, 0, added);
+
+            long[] points = new long[this.points.length + added];
+            MemberKey[] owners = new MemberKey[points.length];
+            int i = 0;
+            int j = 0;
+
+            for (int k = 0; k < points.length; k++) {
+
+                if (j == added || (i < this.points.length && compare(this.points[i], this.owners[i], addedPoints[j], addedOwners[j]) <= 0)) {
+
+                    points[k] = this.points[i];
+                    owners[k] = this.owners[i++];
+
+                } else {
+
+                    points[k] = addedPoints[j];
+                    owners[k] = addedOwners[j++];
+                }
+            }
+
+            return new Ring(points, owners, this.size + keys.size());
+        }
+
+        // A ring without the member's points
+        private Ring remove(MemberKey key) {
+
+            long[] points = new long[this.points.length - VIRTUAL_NODES];
+            MemberKey[] owners = new MemberKey[points.length];
+            int k = 0;
+
+            for (int i = 0; i < this.points.length; i++) {
+
+                if (!this.owners[i].equals(key)) {
+
+                    points[k] = this.points[i];
+                    owners[k++] = this.owners[i];
+                }
+            }
+
+            return new Ring(points, owners, this.size - 1);
+        }
+
+        private static int compare(long point, MemberKey owner, long otherPoint, MemberKey otherOwner) {
+
+            int compared = Long.compare(point, otherPoint);
+
+            return compared != 0 ? compared : owner.compareTo(otherOwner);
+        }
+
+        // Sort the points in [from, to) along with their owners
+        private static void sort(long[] points, MemberKey[] owners, int from, int to) {
+
+            if (to - from < 2) {
+
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+
+            sort(points, owners, from, middle);
+            sort(points, owners, middle, to);
+
+            long[] leftPoints = Arrays.copyOfRange(points, from, middle);
+            MemberKey[] leftOwners = Arrays.copyOfRange(owners, from, middle);
+            int i = 0;
+            int j = middle;
+            int k = from;
+
+            while (i < leftPoints.length) {
+
+                if (j == to || compare(leftPoints[i], leftOwners[i], points[j], owners[j]) <= 0) {
+
+                    points[k] = leftPoints[i];
+                    owners[k++] = leftOwners[i++];
+
+                } else {
+
+                    points[k] = points[j];
+                    owners[k++] = owners[j++];
+                }
+            }
+        }
+    }
+}
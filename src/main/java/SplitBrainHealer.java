@@ -0,0 +1,90 @@
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.LifecycleEvent;
+import com.hazelcast.core.LifecycleListener;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Keeps members that were removed on one side of a split brain from coming back when it heals. Every removal leaves a
+// tombstone, and once this Hazelcast member's side has been merged into the other, every tombstoned member whose entry
+// the merge brought back is removed again, unless it heartbeated after its removal. Tombstones expire, so a split
+// brain that lasts longer than their time to live can still bring members back.
+class SplitBrainHealer implements LifecycleListener {
+
+    private static final long TOMBSTONE_TTL_MILLIS = Long.getLong("membership.tombstone.ttl.ms", TimeUnit.HOURS.toMillis(1));
+
+    private final IMap<MemberKey, Tombstone> mapTombstones;
+    private final IMap<MemberKey, StateEntry> mapClusterState;
+    private final IMap<String, MemberKey> mapRegistry;
+    private final HazelcastInstance instance;
+
+    private String listenerId;
+
+    SplitBrainHealer(HazelcastInstance instance) {
+
+        this.instance = instance;
+        this.mapTombstones = instance.getMap("tombstones");
+        this.mapClusterState = instance.getMap("clusterState");
+        this.mapRegistry = instance.getMap("registry");
+    }
+
+    void start() {
+
+        this.listenerId = this.instance.getLifecycleService().addLifecycleListener(this);
+    }
+
+    void stop() {
+
+        this.instance.getLifecycleService().removeLifecycleListener(this.listenerId);
+    }
+
+    // Record the removal of a member, along with the last heartbeat seen from it, or 0 if none was
+    static CompletableFuture<Tombstone> recordRemoval(HazelcastInstance instance, MemberKey key, String name, long heartbeat) {
+
+        IMap<MemberKey, Tombstone> mapTombstones = instance.getMap("tombstones");
+
+        return Futures.of("tombstones", mapTombstones.putAsync(key, new Tombstone(name, heartbeat), TOMBSTONE_TTL_MILLIS,
+                TimeUnit.MILLISECONDS));
+    }
+
+    // Called on the thread that ran the merge, so the purge runs elsewhere
+    @Override
+    public void stateChanged(LifecycleEvent event) {
+
+        if (event.getState() == LifecycleEvent.LifecycleState.MERGED) {
+
+            CompletableFuture.runAsync(this::purge);
+        }
+    }
+
+    /******************************************************************************************************************/
+
+    private void purge() {
+
+        long start = System.nanoTime();
+        int purged = 0;
+
+        for (Map.Entry<MemberKey, Tombstone> entry : this.mapTombstones.entrySet()) {
+
+            Tombstone tombstone = entry.getValue();
+
+            if (Boolean.TRUE.equals(this.mapClusterState.executeOnKey(entry.getKey(), new PurgeProcessor(tombstone.getHeartbeat())))) {
+
+                purged++;
+
+                if (tombstone.getName() != null) {
+
+                    this.mapRegistry.remove(tombstone.getName(), entry.getKey());
+                }
+            }
+        }
+
+        if (purged > 0) {
+
+            System.out.println("Purged " + purged + " removed members brought back by a split brain merge in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+        }
+    }
+}
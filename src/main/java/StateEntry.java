@@ -3,26 +3,45 @@ import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
 import java.io.IOException;
-import java.lang.StringBuilder;
 
+// The state of one member in clusterState, keyed by its MemberKey. The member's name is only stored in the registry.
+//
+// Each entry counts the changes to its member's status in a version, and records whether its last write was such a
+// change or only a heartbeat. Views listen for changes alone, with a predicate on that flag that the partition owner
+// evaluates, so heartbeats are never sent to them.
+//
+// Format version 2: a version byte, the status as a byte, the heartbeat and the entry's version as unsigned
+// variable-length longs (7 bits per byte), and a flags byte that says whether the last write was a change. Format
+// version 3 adds a flag that says whether the member's attributes follow (see MemberAttributes). Readers reject
+// versions they do not know, so a new format is rolled out by first deploying readers for it everywhere and then
+// raising FORMAT_VERSION.
 public class StateEntry implements IdentifiedDataSerializable {
 
-    private String name;
+    static final byte FORMAT_VERSION = 3;
+    private static final byte PLAIN_FORMAT_VERSION = 2;
+
+    private static final int CHANGED_FLAG = 1;
+    private static final int ATTRIBUTES_FLAG = 2;
+
     private ClusterStatus status;
-    private Long heartbeat;
+    private long heartbeat;
+    private long version;
+    private boolean isChanged = true;
+    private MemberAttributes attributes = MemberAttributes.NONE;
 
     public StateEntry() { }
 
-    StateEntry(String name, ClusterStatus status, Long heartbeat) {
+    StateEntry(ClusterStatus status, long heartbeat) {
 
-        this.name = name;
         this.status = status;
         this.heartbeat = heartbeat;
     }
 
-    public String getName() {
+    StateEntry(ClusterStatus status, long heartbeat, MemberAttributes attributes) {
 
-        return this.name;
+        this.status = status;
+        this.heartbeat = heartbeat;
+        this.attributes = attributes;
     }
 
     public ClusterStatus getStatus() {
@@ -30,37 +49,94 @@ public class StateEntry implements IdentifiedDataSerializable {
         return this.status;
     }
 
-    public Long getHeartbeat() {
+    public long getHeartbeat() {
 
         return this.heartbeat;
     }
 
+    // The number of status changes since the entry was written, which orders two entries with the same heartbeat
+    public long getVersion() {
+
+        return this.version;
+    }
+
+    // Whether the last write changed the member's status, or created the entry, rather than only its heartbeat
+    public boolean isChanged() {
+
+        return this.isChanged;
+    }
+
+    public MemberAttributes getAttributes() {
+
+        return this.attributes;
+    }
+
+    // The attributes are also exposed on their own, as the clusterState indexes are on these
+    public String getZone() {
+
+        return this.attributes.getZone();
+    }
+
+    public String getRack() {
+
+        return this.attributes.getRack();
+    }
+
+    public String getRole() {
+
+        return this.attributes.getRole();
+    }
+
+    // A processor that updates the heartbeat too must do so first, so the write still counts as a change
     public StateEntry updateStatus(ClusterStatus status) {
 
         this.status = status;
+        this.version++;
+        this.isChanged = true;
 
         return this;
     }
 
-    public StateEntry updateHeartbeat(Long heartbeat) {
+    public StateEntry updateHeartbeat(long heartbeat) {
 
         this.heartbeat = heartbeat;
+        this.isChanged = false;
 
         return this;
     }
 
     @Override
     public void writeData(ObjectDataOutput out) throws IOException {
-        out.writeUTF(name);
-        out.writeInt(status.ordinal());
-        out.writeLong(heartbeat);
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(status.ordinal());
+        writeVarLong(out, heartbeat);
+        writeVarLong(out, version);
+        out.writeByte((isChanged ? CHANGED_FLAG : 0) | (attributes.isEmpty() ? 0 : ATTRIBUTES_FLAG));
+
+        if (!attributes.isEmpty()) {
+
+            attributes.writeTo(out);
+        }
     }
 
+    // Entries written in the older format carry no attributes
     @Override
     public void readData(ObjectDataInput in) throws IOException {
-        name = in.readUTF();
-        status = ClusterStatus.values()[in.readInt()];
-        heartbeat = in.readLong();
+        byte formatVersion = in.readByte();
+
+        if (formatVersion != FORMAT_VERSION && formatVersion != PLAIN_FORMAT_VERSION) {
+
+            throw new IOException("Unsupported StateEntry format version " + formatVersion);
+        }
+
+        status = ClusterStatus.values()[in.readByte()];
+        heartbeat = readVarLong(in);
+        version = readVarLong(in);
+
+        int flags = in.readByte();
+
+        isChanged = (flags & CHANGED_FLAG) != 0;
+        attributes = (flags & ATTRIBUTES_FLAG) != 0 ? MemberAttributes.readFrom(in) : MemberAttributes.NONE;
     }
 
     @Override
@@ -78,13 +154,35 @@ public class StateEntry implements IdentifiedDataSerializable {
     @Override
     public String toString() {
 
-        StringBuilder s = new StringBuilder();
-        s.append("StateEntry( ");
-        s.append("Name: ").append(String.format("%16$-" + name));
-        s.append("Status: ").append(String.format("%10$-" + status.name()));
-        s.append("Heartbeat: ").append(String.format("%10$-" + heartbeat));
-        s.append(")");
+        return String.format("StateEntry(status: %s, heartbeat: %d, version: %d)", this.status, this.heartbeat, this.version);
+    }
+
+    static void writeVarLong(ObjectDataOutput out, long value) throws IOException {
+
+        while ((value & ~0x7FL) != 0) {
+
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(ObjectDataInput in) throws IOException {
+
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+
+                return value;
+            }
+        }
 
-        return s.toString();
+        throw new IOException("Malformed variable-length long");
     }
 }
@@ -5,6 +5,15 @@ public class StateEntryDataSerializableFactory implements  DataSerializableFacto
 
     static final int ID = 1;
     static final int STATE_TYPE = 1;
+    static final int HEARTBEAT_PROCESSOR_TYPE = 2;
+    static final int STATUS_TRANSITION_PROCESSOR_TYPE = 3;
+    static final int LEADER_LEASE_TYPE = 4;
+    static final int MEMBER_KEY_TYPE = 5;
+    static final int RESERVE_NAME_PROCESSOR_TYPE = 6;
+    static final int SUSPICION_TYPE = 7;
+    static final int TOMBSTONE_TYPE = 8;
+    static final int PURGE_PROCESSOR_TYPE = 9;
+    static final int MEMBER_COMPARATOR_TYPE = 10;
 
     @Override
     public IdentifiedDataSerializable create(int typeId) {
@@ -13,6 +22,42 @@ public class StateEntryDataSerializableFactory implements  DataSerializableFacto
 
             return new StateEntry();
 
+        } else if (typeId == HEARTBEAT_PROCESSOR_TYPE) {
+
+            return new HeartbeatEntryProcessor();
+
+        } else if (typeId == STATUS_TRANSITION_PROCESSOR_TYPE) {
+
+            return new StatusTransitionProcessor();
+
+        } else if (typeId == LEADER_LEASE_TYPE) {
+
+            return new LeaderLease();
+
+        } else if (typeId == MEMBER_KEY_TYPE) {
+
+            return new MemberKey();
+
+        } else if (typeId == RESERVE_NAME_PROCESSOR_TYPE) {
+
+            return new ReserveNameProcessor();
+
+        } else if (typeId == SUSPICION_TYPE) {
+
+            return new Suspicion();
+
+        } else if (typeId == TOMBSTONE_TYPE) {
+
+            return new Tombstone();
+
+        } else if (typeId == PURGE_PROCESSOR_TYPE) {
+
+            return new PurgeProcessor();
+
+        } else if (typeId == MEMBER_COMPARATOR_TYPE) {
+
+            return new MemberComparator();
+
         } else {
 
             return null;
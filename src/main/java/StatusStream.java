@@ -0,0 +1,147 @@
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.query.PagingPredicate;
+import com.hazelcast.query.Predicate;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+
+// Writes the status of every member, or of those matching a filter, a page at a time, for clusters too large to render
+// in one string. Members are paged out of clusterState in the requested order with a PagingPredicate, so each page is
+// sorted on the partition owners and only one page is held here at a time. Rows are written as text or as JSON Lines,
+// and the output is flushed after every page, so the first rows appear straight away whatever the cluster size.
+class StatusStream {
+
+    private static final int PAGE_SIZE = Integer.getInteger("membership.status.pageSize", 1000);
+
+    enum Format {
+        // A table like status, with the members' attributes
+        TEXT,
+        // One JSON object per member and line, as served by the admin endpoint's /members
+        JSONL
+    }
+
+    private final IMap<MemberKey, StateEntry> mapClusterState;
+    private final ClusterView clusterView;
+    private final MembershipMetrics metrics = MembershipMetrics.getMetrics();
+
+    // Reused for every text row
+    private final StringBuilder row = new StringBuilder();
+
+    StatusStream(HazelcastInstance instance, ClusterView clusterView) {
+
+        this.mapClusterState = instance.getMap("clusterState");
+        this.clusterView = clusterView;
+    }
+
+    // Write up to limit members matching the filter, which may be null, in the given order. Returns the number written.
+    int write(Writer out, Format format, MemberComparator.Order order, int limit, Predicate<MemberKey, StateEntry> filter)
+            throws IOException {
+
+        if (limit <= 0) {
+
+            return 0;
+        }
+
+        MemberComparator comparator = new MemberComparator(order);
+        int pageSize = Math.min(PAGE_SIZE, limit);
+        PagingPredicate<MemberKey, StateEntry> page = filter == null ? new PagingPredicate<>(comparator, pageSize)
+                : new PagingPredicate<>(filter, comparator, pageSize);
+
+        LeaderLease lease = this.clusterView.getLeader();
+        int written = 0;
+
+        if (format == Format.TEXT) {
+
+            this.writeRow(out, "UUID", "Name", "Status", "Heartbeat", "Zone", "Rack", "Role");
+        }
+
+        while (written < limit) {
+
+            long start = System.nanoTime();
+            Set<Map.Entry<MemberKey, StateEntry>> entries = this.mapClusterState.entrySet(page);
+            this.metrics.recordMapOperation("clusterState", start);
+
+            if (entries.isEmpty()) {
+
+                break;
+            }
+
+            for (Map.Entry<MemberKey, StateEntry> entry : entries) {
+
+                if (written == limit) {
+
+                    break;
+                }
+
+                MemberKey key = entry.getKey();
+                StateEntry state = entry.getValue();
+                String name = this.clusterView.getName(key);
+
+                if (format == Format.JSONL) {
+
+                    out.write(AdminServer.memberJson(key, name, state, lease != null && lease.getHolder().equals(key)));
+                    out.write('\n');
+
+                } else {
+
+                    this.writeRow(out, key.toString(), name, state.getStatus().toString(), String.valueOf(state.getHeartbeat()),
+                            orDash(state.getZone()), orDash(state.getRack()), orDash(state.getRole()));
+                }
+
+                written++;
+            }
+
+            out.flush();
+
+            if (entries.size() < pageSize) {
+
+                break;
+            }
+
+            page.nextPage();
+        }
+
+        out.flush();
+
+        return written;
+    }
+
+    /******************************************************************************************************************/
+
+    // The columns of the status table, padded without String.format
+    private void writeRow(Writer out, String uuid, String name, String status, String heartbeat, String zone, String rack,
+                          String role) throws IOException {
+
+        this.row.setLength(0);
+
+        pad(this.row, uuid, 38);
+        pad(this.row, name, 20);
+        pad(this.row, status, 8);
+        pad(this.row, heartbeat, 14);
+        pad(this.row, zone, 12);
+        pad(this.row, rack, 12);
+        pad(this.row, role, 12);
+
+        out.append(this.row).append('\n');
+    }
+
+    private static void pad(StringBuilder row, String value, int width) {
+
+        int start = row.length();
+
+        row.append(value);
+
+        while (row.length() - start < width) {
+
+            row.append(' ');
+        }
+    }
+
+    static String orDash(String value) {
+
+        return value == null ? "-" : value;
+    }
+}
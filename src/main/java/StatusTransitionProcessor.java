@@ -0,0 +1,91 @@
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Applies a status transition on the partition owner. The leader selects candidates from the heartbeats it has seen,
+// and a heartbeat may land before this processor runs, so the condition is checked again against the current entry:
+// a member is only taken OFFLINE if its heartbeat is still older than the cutoff, and only brought back ONLINE if its
+// heartbeat is at or after the cutoff.
+public class StatusTransitionProcessor implements EntryProcessor<MemberKey, StateEntry>, EntryBackupProcessor<MemberKey, StateEntry>,
+        IdentifiedDataSerializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private ClusterStatus from;
+    private ClusterStatus to;
+    private long heartbeatCutoff;
+
+    public StatusTransitionProcessor() { }
+
+    StatusTransitionProcessor(ClusterStatus from, ClusterStatus to, long heartbeatCutoff) {
+
+        this.from = from;
+        this.to = to;
+        this.heartbeatCutoff = heartbeatCutoff;
+    }
+
+    @Override
+    public Object process(Map.Entry<MemberKey, StateEntry> entry) {
+
+        StateEntry state = entry.getValue();
+
+        if (state == null || state.getStatus() != this.from) {
+
+            return false;
+        }
+
+        boolean isStale = state.getHeartbeat() < this.heartbeatCutoff;
+
+        if ((this.to == ClusterStatus.OFFLINE) != isStale) {
+
+            return false;
+        }
+
+        entry.setValue(state.updateStatus(this.to));
+
+        return true;
+    }
+
+    @Override
+    public EntryBackupProcessor<MemberKey, StateEntry> getBackupProcessor() {
+
+        return this;
+    }
+
+    @Override
+    public void processBackup(Map.Entry<MemberKey, StateEntry> entry) {
+
+        this.process(entry);
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeByte(from.ordinal());
+        out.writeByte(to.ordinal());
+        out.writeLong(heartbeatCutoff);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        from = ClusterStatus.values()[in.readByte()];
+        to = ClusterStatus.values()[in.readByte()];
+        heartbeatCutoff = in.readLong();
+    }
+
+    @Override
+    public int getFactoryId() {
+
+        return StateEntryDataSerializableFactory.ID;
+    }
+
+    @Override
+    public int getId() {
+
+        return StateEntryDataSerializableFactory.STATUS_TRANSITION_PROCESSOR_TYPE;
+    }
+}
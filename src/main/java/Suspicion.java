@@ -0,0 +1,109 @@
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+
+// A monitor's report that a member it watches on the ring should change status: OFFLINE when its heartbeats have
+// stopped, ONLINE when an OFFLINE member heartbeats again. Reports are kept in the suspicions map, keyed by the
+// suspected member and the monitor, so each monitor has one vote, until the leader has acted on them, the monitor has
+// withdrawn them or they expire.
+public class Suspicion implements IdentifiedDataSerializable {
+
+    private static final char KEY_SEPARATOR = '/';
+
+    private MemberKey suspect;
+    private MemberKey monitor;
+    private ClusterStatus status;
+    private long heartbeat;
+
+    public Suspicion() { }
+
+    Suspicion(MemberKey suspect, MemberKey monitor, ClusterStatus status, long heartbeat) {
+
+        this.suspect = suspect;
+        this.monitor = monitor;
+        this.status = status;
+        this.heartbeat = heartbeat;
+    }
+
+    static String key(MemberKey suspect, MemberKey monitor) {
+
+        return suspect.toString() + KEY_SEPARATOR + monitor;
+    }
+
+    static MemberKey suspectOf(String key) {
+
+        return MemberKey.fromString(key.substring(0, key.indexOf(KEY_SEPARATOR)));
+    }
+
+    static MemberKey monitorOf(String key) {
+
+        return MemberKey.fromString(key.substring(key.indexOf(KEY_SEPARATOR) + 1));
+    }
+
+    // The key of this report in the suspicions map
+    public String getKey() {
+
+        return key(this.suspect, this.monitor);
+    }
+
+    public MemberKey getSuspect() {
+
+        return this.suspect;
+    }
+
+    // The ring position the member was watched from
+    public MemberKey getMonitor() {
+
+        return this.monitor;
+    }
+
+    // The status the monitor proposes
+    public ClusterStatus getStatus() {
+
+        return this.status;
+    }
+
+    // The last heartbeat the monitor saw from the member
+    public long getHeartbeat() {
+
+        return this.heartbeat;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        suspect.writeData(out);
+        monitor.writeData(out);
+        out.writeByte(status.ordinal());
+        out.writeLong(heartbeat);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        suspect = new MemberKey();
+        suspect.readData(in);
+        monitor = new MemberKey();
+        monitor.readData(in);
+        status = ClusterStatus.values()[in.readByte()];
+        heartbeat = in.readLong();
+    }
+
+    @Override
+    public int getFactoryId() {
+
+        return StateEntryDataSerializableFactory.ID;
+    }
+
+    @Override
+    public int getId() {
+
+        return StateEntryDataSerializableFactory.SUSPICION_TYPE;
+    }
+
+    @Override
+    public String toString() {
+
+        return this.monitor + " suspects " + this.suspect + " " + this.status + " (heartbeat " + this.heartbeat + ")";
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// What one SWIM node believes about a member. Instances are immutable and double as the membership updates that are
+// piggybacked on protocol messages.
+public class SwimMember {
+
+    private final String uuid;
+    private final String name;
+    private final String address;
+    private final SwimStatus status;
+    private final long incarnation;
+
+    SwimMember(String uuid, String name, String address, SwimStatus status, long incarnation) {
+
+        this.uuid = uuid;
+        this.name = name;
+        this.address = address;
+        this.status = status;
+        this.incarnation = incarnation;
+    }
+
+    public String getUUID() {
+
+        return this.uuid;
+    }
+
+    public String getName() {
+
+        return this.name;
+    }
+
+    public String getAddress() {
+
+        return this.address;
+    }
+
+    public SwimStatus getStatus() {
+
+        return this.status;
+    }
+
+    public long getIncarnation() {
+
+        return this.incarnation;
+    }
+
+    SwimMember withStatus(SwimStatus status, long incarnation) {
+
+        return new SwimMember(this.uuid, this.name, this.address, status, incarnation);
+    }
+
+    // An update replaces what we know about a member if it has a higher incarnation, or the same incarnation and a
+    // higher precedence status. Only the member itself raises its incarnation, to refute a suspicion.
+    boolean supersedes(SwimMember other) {
+
+        if (this.incarnation != other.incarnation) {
+
+            return this.incarnation > other.incarnation;
+        }
+
+        return this.status.ordinal() > other.status.ordinal();
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+
+        out.writeUTF(this.uuid);
+        out.writeUTF(this.name);
+        out.writeUTF(this.address);
+        out.writeByte(this.status.ordinal());
+        out.writeLong(this.incarnation);
+    }
+
+    static SwimMember readFrom(DataInput in) throws IOException {
+
+        return new SwimMember(in.readUTF(), in.readUTF(), in.readUTF(), SwimStatus.values()[in.readByte()], in.readLong());
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder memberString = new StringBuilder();
+        memberString.append(this.name).append(", ").append(this.uuid).append(" ").append(this.status)
+                .append(" (incarnation ").append(this.incarnation).append(")");
+
+        return memberString.toString();
+    }
+}
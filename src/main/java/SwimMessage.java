@@ -0,0 +1,98 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A SWIM protocol message. Every message carries a bounded number of piggybacked membership updates, so
+// dissemination costs no extra messages.
+public class SwimMessage {
+
+    enum Type {
+        PING,
+        PING_REQ,
+        ACK,
+        JOIN,
+        SYNC
+    }
+
+    private final Type type;
+    private final String senderAddress;
+    private final long sequence;
+    private final String targetAddress;
+    private final List<SwimMember> updates;
+
+    SwimMessage(Type type, String senderAddress, long sequence, String targetAddress, List<SwimMember> updates) {
+
+        this.type = type;
+        this.senderAddress = senderAddress;
+        this.sequence = sequence;
+        this.targetAddress = targetAddress;
+        this.updates = updates;
+    }
+
+    Type getType() {
+
+        return this.type;
+    }
+
+    String getSenderAddress() {
+
+        return this.senderAddress;
+    }
+
+    long getSequence() {
+
+        return this.sequence;
+    }
+
+    // The member to probe on behalf of the sender of a PING_REQ, otherwise null
+    String getTargetAddress() {
+
+        return this.targetAddress;
+    }
+
+    List<SwimMember> getUpdates() {
+
+        return this.updates;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+
+        out.writeByte(this.type.ordinal());
+        out.writeUTF(this.senderAddress);
+        out.writeLong(this.sequence);
+        out.writeBoolean(this.targetAddress != null);
+
+        if (this.targetAddress != null) {
+
+            out.writeUTF(this.targetAddress);
+        }
+
+        out.writeShort(this.updates.size());
+
+        for (SwimMember update : this.updates) {
+
+            update.writeTo(out);
+        }
+    }
+
+    static SwimMessage readFrom(DataInput in) throws IOException {
+
+        Type type = Type.values()[in.readByte()];
+        String senderAddress = in.readUTF();
+        long sequence = in.readLong();
+        String targetAddress = in.readBoolean() ? in.readUTF() : null;
+
+        int count = in.readShort();
+        List<SwimMember> updates = count == 0 ? Collections.<SwimMember>emptyList() : new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+
+            updates.add(SwimMember.readFrom(in));
+        }
+
+        return new SwimMessage(type, senderAddress, sequence, targetAddress, updates);
+    }
+}
@@ -0,0 +1,457 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// A membership engine based on SWIM (Das et al.) with incarnation-based suspicion (as in Lifeguard/memberlist).
+// Once per protocol period each node pings one member, chosen round-robin over a shuffled list. If no ack arrives
+// within the ack timeout it asks a few other members to ping the target on its behalf, and if there is still no ack
+// by the end of the period the target becomes SUSPECT. A suspect that does not refute the suspicion by raising its
+// incarnation is declared DEAD after the suspicion timeout. Membership updates are piggybacked on protocol messages
+// a logarithmic number of times, so each node sends a constant number of messages per period however large the
+// cluster is, and no node ever scans the whole membership.
+public class SwimNode {
+
+    private static final long PROTOCOL_PERIOD_MILLIS = Long.getLong("membership.swim.period.ms", 1000L);
+    private static final long ACK_TIMEOUT_MILLIS = Long.getLong("membership.swim.ackTimeout.ms", 300L);
+    private static final long SUSPICION_TIMEOUT_MILLIS = Long.getLong("membership.swim.suspicionTimeout.ms", 5000L);
+    private static final int INDIRECT_PROBES = Integer.getInteger("membership.swim.indirectProbes", 3);
+    private static final int RETRANSMIT_MULTIPLIER = Integer.getInteger("membership.swim.retransmitMultiplier", 3);
+    private static final int MAX_PIGGYBACK = Integer.getInteger("membership.swim.maxPiggyback", 8);
+    private static final int SYNC_CHUNK_SIZE = 64;
+
+    private final String uuid;
+    private final String name;
+    private final SwimTransport transport;
+    private final TimerWheel timers;
+    private final Random random = new Random();
+
+    // All state below is guarded by this
+    private final Map<String, SwimMember> members = new HashMap<>();
+    private final Map<String, TimerWheel.Timeout> suspicionTimers = new HashMap<>();
+    private final Map<String, Dissemination> disseminations = new LinkedHashMap<>();
+    private final Map<Long, Relay> relays = new HashMap<>();
+
+    private final List<String> probeOrder = new ArrayList<>();
+    private int probeIndex;
+
+    private long incarnation;
+    private long nextSequence;
+    private boolean hasLeft;
+
+    private SwimMember probeTarget;
+    private long probeSequence = -1;
+    private boolean probeAcked;
+
+    private TimerWheel.Timeout protocolTask;
+
+    // Told of every update to the member list, this node's own included, while the lock is held
+    private Consumer<SwimMember> listener;
+
+    public SwimNode(String uuid, String name, SwimTransport transport, TimerWheel timers) {
+
+        this.uuid = uuid;
+        this.name = name;
+        this.transport = transport;
+        this.timers = timers;
+    }
+
+    // Announce this node to the seeds, which answer with their view of the membership, and start probing
+    public synchronized void start(Collection<String> seedAddresses) {
+
+        SwimMember self = new SwimMember(this.uuid, this.name, this.transport.getAddress(), SwimStatus.ALIVE, this.incarnation);
+        this.update(self);
+        this.disseminate(self);
+
+        this.transport.setHandler(this::receive);
+
+        for (String seedAddress : seedAddresses) {
+
+            if (!seedAddress.equals(this.transport.getAddress())) {
+
+                this.transport.send(seedAddress, new SwimMessage(SwimMessage.Type.JOIN, this.transport.getAddress(), 0L,
+                        null, Collections.singletonList(self)));
+            }
+        }
+
+        this.protocolTask = this.timers.scheduleAtFixedRate(this::probe, PROTOCOL_PERIOD_MILLIS, PROTOCOL_PERIOD_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Tell a few members directly that this node has left; they disseminate it to the rest
+    public synchronized void leave() {
+
+        this.hasLeft = true;
+
+        SwimMember self = this.members.get(this.uuid).withStatus(SwimStatus.LEFT, this.incarnation);
+        this.update(self);
+        this.disseminate(self);
+
+        List<SwimMember> others = this.liveMembers(null);
+        Collections.shuffle(others, this.random);
+
+        for (SwimMember member : others.subList(0, Math.min(others.size(), INDIRECT_PROBES + 1))) {
+
+            this.send(member.getAddress(), SwimMessage.Type.PING, this.nextSequence++, null);
+        }
+
+        this.stop();
+    }
+
+    public synchronized void stop() {
+
+        if (this.protocolTask != null) {
+
+            this.protocolTask.cancel();
+            this.protocolTask = null;
+        }
+
+        for (TimerWheel.Timeout timer : this.suspicionTimers.values()) {
+
+            timer.cancel();
+        }
+
+        this.suspicionTimers.clear();
+
+        this.transport.setHandler(null);
+    }
+
+    public String getUUID() {
+
+        return this.uuid;
+    }
+
+    public synchronized long getIncarnation() {
+
+        return this.incarnation;
+    }
+
+    // A snapshot of this node's view of the membership
+    public synchronized List<SwimMember> getMembers() {
+
+        return new ArrayList<>(this.members.values());
+    }
+
+    // Follow the member list from now on, starting with a call for every member already in it. Calls are made under the
+    // node's lock, in the order the updates were applied, so the listener must not block. Null stops following.
+    synchronized void setListener(Consumer<SwimMember> listener) {
+
+        this.listener = listener;
+
+        if (listener != null) {
+
+            for (SwimMember member : this.members.values()) {
+
+                listener.accept(member);
+            }
+        }
+    }
+
+    /******************************************************************************************************************/
+
+    private synchronized void probe() {
+
+        // The previous target did not answer directly or indirectly within the period
+        if (this.probeTarget != null && !this.probeAcked) {
+
+            this.suspect(this.probeTarget.getUUID());
+        }
+
+        this.expireRelays();
+
+        this.probeTarget = this.nextProbeTarget();
+        this.probeAcked = false;
+
+        if (this.probeTarget == null) {
+
+            return;
+        }
+
+        long sequence = this.nextSequence++;
+        this.probeSequence = sequence;
+        this.send(this.probeTarget.getAddress(), SwimMessage.Type.PING, sequence, null);
+
+        this.timers.schedule(() -> this.indirectProbe(sequence), ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void indirectProbe(long sequence) {
+
+        if (sequence != this.probeSequence || this.probeAcked || this.probeTarget == null) {
+
+            return;
+        }
+
+        List<SwimMember> helpers = this.liveMembers(this.probeTarget.getUUID());
+        Collections.shuffle(helpers, this.random);
+
+        for (SwimMember helper : helpers.subList(0, Math.min(helpers.size(), INDIRECT_PROBES))) {
+
+            this.send(helper.getAddress(), SwimMessage.Type.PING_REQ, sequence, this.probeTarget.getAddress());
+        }
+    }
+
+    private synchronized void receive(SwimMessage message) {
+
+        for (SwimMember update : message.getUpdates()) {
+
+            this.apply(update);
+        }
+
+        switch (message.getType()) {
+            case PING:
+                this.send(message.getSenderAddress(), SwimMessage.Type.ACK, message.getSequence(), null);
+                break;
+            case PING_REQ:
+                long relaySequence = this.nextSequence++;
+                this.relays.put(relaySequence, new Relay(message.getSenderAddress(), message.getSequence(), System.nanoTime()));
+                this.send(message.getTargetAddress(), SwimMessage.Type.PING, relaySequence, null);
+                break;
+            case ACK:
+                if (message.getSequence() == this.probeSequence) {
+
+                    this.probeAcked = true;
+
+                } else {
+
+                    Relay relay = this.relays.remove(message.getSequence());
+
+                    if (relay != null) {
+
+                        this.send(relay.address, SwimMessage.Type.ACK, relay.sequence, null);
+                    }
+                }
+                break;
+            case JOIN:
+                this.sync(message.getSenderAddress());
+                break;
+            case SYNC:
+                break;
+        }
+    }
+
+    private void apply(SwimMember update) {
+
+        // Refute suspicions about ourselves by raising our incarnation
+        if (update.getUUID().equals(this.uuid)) {
+
+            if (!this.hasLeft && update.getStatus() != SwimStatus.ALIVE && update.getIncarnation() >= this.incarnation) {
+
+                this.incarnation = update.getIncarnation() + 1;
+
+                SwimMember self = this.members.get(this.uuid).withStatus(SwimStatus.ALIVE, this.incarnation);
+                this.update(self);
+                this.disseminate(self);
+            }
+
+            return;
+        }
+
+        SwimMember current = this.members.get(update.getUUID());
+
+        if (current != null && !update.supersedes(current)) {
+
+            return;
+        }
+
+        this.update(update);
+
+        // Each suspicion has its own timer, which any newer update for the member cancels
+        TimerWheel.Timeout suspicionTimer = this.suspicionTimers.remove(update.getUUID());
+
+        if (suspicionTimer != null) {
+
+            suspicionTimer.cancel();
+        }
+
+        if (update.getStatus() == SwimStatus.SUSPECT) {
+
+            this.suspicionTimers.put(update.getUUID(), this.timers.schedule(() -> this.expireSuspicion(update),
+                    SUSPICION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+
+        // New members are inserted at a random position so every member is still probed once per round
+        if (current == null && update.getStatus() == SwimStatus.ALIVE) {
+
+            this.probeOrder.add(this.random.nextInt(this.probeOrder.size() + 1), update.getUUID());
+        }
+
+        this.disseminate(update);
+    }
+
+    private void update(SwimMember member) {
+
+        this.members.put(member.getUUID(), member);
+
+        if (this.listener != null) {
+
+            this.listener.accept(member);
+        }
+    }
+
+    private void suspect(String uuid) {
+
+        SwimMember current = this.members.get(uuid);
+
+        if (current != null && current.getStatus() == SwimStatus.ALIVE) {
+
+            this.apply(current.withStatus(SwimStatus.SUSPECT, current.getIncarnation()));
+        }
+    }
+
+    // The suspect did not refute the suspicion in time
+    private synchronized void expireSuspicion(SwimMember suspicion) {
+
+        if (this.members.get(suspicion.getUUID()) == suspicion) {
+
+            this.apply(suspicion.withStatus(SwimStatus.DEAD, suspicion.getIncarnation()));
+        }
+    }
+
+    // Relays whose target never answered are dropped after a protocol period
+    private void expireRelays() {
+
+        long now = System.nanoTime();
+
+        this.relays.values().removeIf(relay -> now - relay.createdAt > TimeUnit.MILLISECONDS.toNanos(PROTOCOL_PERIOD_MILLIS));
+    }
+
+    private SwimMember nextProbeTarget() {
+
+        for (int attempts = 0; attempts <= this.probeOrder.size(); attempts++) {
+
+            if (this.probeIndex >= this.probeOrder.size()) {
+
+                // Start a new round over the members that are still worth probing
+                this.probeOrder.clear();
+
+                for (SwimMember member : this.liveMembers(null)) {
+
+                    this.probeOrder.add(member.getUUID());
+                }
+
+                Collections.shuffle(this.probeOrder, this.random);
+                this.probeIndex = 0;
+
+                if (this.probeOrder.isEmpty()) {
+
+                    return null;
+                }
+            }
+
+            SwimMember candidate = this.members.get(this.probeOrder.get(this.probeIndex++));
+
+            if (candidate != null && isLive(candidate) && !candidate.getUUID().equals(this.uuid)) {
+
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    // Members other than this node (and the excluded one) that are ALIVE or SUSPECT
+    private List<SwimMember> liveMembers(String excludedUUID) {
+
+        List<SwimMember> live = new ArrayList<>();
+
+        for (SwimMember member : this.members.values()) {
+
+            if (isLive(member) && !member.getUUID().equals(this.uuid) && !member.getUUID().equals(excludedUUID)) {
+
+                live.add(member);
+            }
+        }
+
+        return live;
+    }
+
+    private static boolean isLive(SwimMember member) {
+
+        return member.getStatus() == SwimStatus.ALIVE || member.getStatus() == SwimStatus.SUSPECT;
+    }
+
+    // Send the full membership to a joining node, in chunks that fit a datagram
+    private void sync(String address) {
+
+        List<SwimMember> all = new ArrayList<>(this.members.values());
+
+        for (int from = 0; from < all.size(); from += SYNC_CHUNK_SIZE) {
+
+            List<SwimMember> chunk = new ArrayList<>(all.subList(from, Math.min(all.size(), from + SYNC_CHUNK_SIZE)));
+            this.transport.send(address, new SwimMessage(SwimMessage.Type.SYNC, this.transport.getAddress(), 0L, null, chunk));
+        }
+    }
+
+    private void send(String address, SwimMessage.Type type, long sequence, String targetAddress) {
+
+        this.transport.send(address, new SwimMessage(type, this.transport.getAddress(), sequence, targetAddress, this.piggyback()));
+    }
+
+    private void disseminate(SwimMember update) {
+
+        // Only the newest update about a member is worth spreading
+        this.disseminations.remove(update.getUUID());
+        this.disseminations.put(update.getUUID(), new Dissemination(update));
+    }
+
+    // Attach up to MAX_PIGGYBACK updates in the order they were queued, oldest first (a newer update about a member
+    // goes to the back), and retire each one after RETRANSMIT_MULTIPLIER * log2(n) transmissions
+    private List<SwimMember> piggyback() {
+
+        if (this.disseminations.isEmpty()) {
+
+            return Collections.emptyList();
+        }
+
+        int limit = RETRANSMIT_MULTIPLIER * (32 - Integer.numberOfLeadingZeros(this.members.size()));
+
+        List<SwimMember> updates = new ArrayList<>(Math.min(MAX_PIGGYBACK, this.disseminations.size()));
+        Iterator<Dissemination> iterator = this.disseminations.values().iterator();
+
+        while (iterator.hasNext() && updates.size() < MAX_PIGGYBACK) {
+
+            Dissemination dissemination = iterator.next();
+            updates.add(dissemination.update);
+
+            if (++dissemination.transmissions >= limit) {
+
+                iterator.remove();
+            }
+        }
+
+        return updates;
+    }
+
+    private static final class Dissemination {
+
+        private final SwimMember update;
+        private int transmissions;
+
+        Dissemination(SwimMember update) {
+
+            this.update = update;
+        }
+    }
+
+    // A probe this node is making on behalf of another one
+    private static final class Relay {
+
+        private final String address;
+        private final long sequence;
+        private final long createdAt;
+
+        Relay(String address, long sequence, long createdAt) {
+
+            this.address = address;
+            this.sequence = sequence;
+            this.createdAt = createdAt;
+        }
+    }
+}
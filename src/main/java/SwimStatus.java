@@ -0,0 +1,7 @@
+// Member states of the SWIM membership engine, in increasing order of precedence for the same incarnation
+public enum SwimStatus {
+    ALIVE,
+    SUSPECT,
+    DEAD,
+    LEFT
+}
@@ -0,0 +1,15 @@
+import java.util.function.Consumer;
+
+// Carries SWIM messages between nodes. Delivery is best effort: messages may be lost, and the protocol copes with
+// that. Messages must be delivered to the handler on a thread other than the sender's.
+public interface SwimTransport {
+
+    // The address other nodes use to reach this one
+    String getAddress();
+
+    void setHandler(Consumer<SwimMessage> handler);
+
+    void send(String address, SwimMessage message);
+
+    void close();
+}
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// The membership view of the swim engine, built from a SWIM node's member list, so subscriptions, the routing table
+// and member queries work as they do with Hazelcast. ALIVE and SUSPECT members are ONLINE, DEAD members are OFFLINE,
+// and members that have left are removed. A member's incarnation stands in for its heartbeat, as the only value that
+// orders its updates. SWIM has no leader. The view is empty until a node is attached, and detaching the node removes
+// every member, so followers see this node leave the cluster.
+class SwimView implements MembershipView {
+
+    private final ConcurrentMap<MemberKey, StateEntry> members = new ConcurrentHashMap<>();
+    private final Map<MemberKey, StateEntry> unmodifiableMembers = Collections.unmodifiableMap(this.members);
+    private final ConcurrentMap<MemberKey, String> names = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this. Updates arrive under the node's lock, so they never take this one.
+    private SwimNode node;
+
+    // Follow the node's member list, starting with every member it already knows
+    synchronized void attach(SwimNode node) {
+
+        this.detach();
+
+        this.node = node;
+        node.setListener(this::memberChanged);
+    }
+
+    // Once the node has stopped calling back, remove every member it reported
+    synchronized void detach() {
+
+        if (this.node == null) {
+
+            return;
+        }
+
+        this.node.setListener(null);
+        this.node = null;
+
+        for (MemberKey key : new ArrayList<>(this.members.keySet())) {
+
+            this.removeMember(key);
+        }
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+
+        this.listeners.remove(listener);
+    }
+
+    @Override
+    public Map<MemberKey, StateEntry> getMembers() {
+
+        return this.unmodifiableMembers;
+    }
+
+    @Override
+    public StateEntry getMember(MemberKey key) {
+
+        return this.members.get(key);
+    }
+
+    @Override
+    public String getName(MemberKey key) {
+
+        return this.names.get(key);
+    }
+
+    @Override
+    public LeaderLease getLeader() {
+
+        return null;
+    }
+
+    /******************************************************************************************************************/
+
+    // The node applies updates one at a time, so each member's entries are replaced in order
+    private void memberChanged(SwimMember member) {
+
+        MemberKey key = MemberKey.fromString(member.getUUID());
+
+        if (member.getStatus() == SwimStatus.LEFT) {
+
+            this.removeMember(key);
+            return;
+        }
+
+        ClusterStatus status = member.getStatus() == SwimStatus.DEAD ? ClusterStatus.OFFLINE : ClusterStatus.ONLINE;
+        StateEntry current = new StateEntry(status, member.getIncarnation());
+
+        this.names.put(key, member.getName());
+        StateEntry previous = this.members.put(key, current);
+
+        for (Listener listener : this.listeners) {
+
+            listener.memberUpdated(key, previous, current);
+        }
+    }
+
+    private void removeMember(MemberKey key) {
+
+        StateEntry previous = this.members.remove(key);
+
+        if (previous != null) {
+
+            for (Listener listener : this.listeners) {
+
+                listener.memberRemoved(key, previous);
+            }
+        }
+
+        this.names.remove(key);
+    }
+}
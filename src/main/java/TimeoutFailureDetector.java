@@ -0,0 +1,54 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Marks a member unavailable once it has been silent for longer than a fixed timeout
+public class TimeoutFailureDetector implements FailureDetector {
+
+    private final long timeoutMillis;
+    private final ConcurrentMap<MemberKey, AtomicLong> lastArrivals = new ConcurrentHashMap<>();
+
+    public TimeoutFailureDetector(long timeoutMillis) {
+
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void heartbeat(MemberKey key, long arrivalMillis) {
+
+        AtomicLong lastArrival = this.lastArrivals.get(key);
+
+        if (lastArrival == null) {
+
+            lastArrival = this.lastArrivals.computeIfAbsent(key, k -> new AtomicLong());
+        }
+
+        lastArrival.set(arrivalMillis);
+    }
+
+    // The fraction of the timeout that has elapsed since the last heartbeat
+    @Override
+    public double suspicion(MemberKey key, long nowMillis) {
+
+        AtomicLong lastArrival = this.lastArrivals.get(key);
+
+        if (lastArrival == null) {
+
+            return 0.0;
+        }
+
+        return (double) (nowMillis - lastArrival.get()) / this.timeoutMillis;
+    }
+
+    @Override
+    public boolean isAvailable(MemberKey key, long nowMillis) {
+
+        return this.suspicion(key, nowMillis) <= 1.0;
+    }
+
+    @Override
+    public void remove(MemberKey key) {
+
+        this.lastArrivals.remove(key);
+    }
+}
@@ -0,0 +1,359 @@
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.logging.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A hashed timer wheel (Varghese and Lauck) that drives membership timers: heartbeat, leader and view ticks, SWIM
+// probes and suspicion expiry. Scheduling and cancelling are O(1) and lock-free for the caller: new and cancelled
+// timeouts are queued and moved in or out of their bucket by the worker thread, which advances one bucket per tick.
+// A timeout fires within one tick of its deadline. Expired tasks run on the given executor, so tasks that block (such
+// as map operations) should be given a pool, while short tasks can run on the worker itself. Stopping the wheel keeps
+// its timeouts, and starting it again fires any that fell due in the meantime.
+class TimerWheel {
+
+    private static final ILogger LOGGER = Logger.getLogger(TimerWheel.class);
+
+    private static final long TICK_MILLIS = Long.getLong("membership.timer.tick.ms", 10L);
+    private static final int WHEEL_SIZE = Integer.getInteger("membership.timer.wheelSize", 512);
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final Executor executor;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    // Ticks are counted from when the wheel was created, across restarts
+    private final long startedAt = System.nanoTime();
+    private long tick;
+
+    private Thread worker;
+    private volatile boolean isRunning;
+
+    TimerWheel(String name, Executor executor) {
+
+        this(name, TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE, executor);
+    }
+
+    // The wheel size is rounded up to a power of two
+    TimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize, Executor executor) {
+
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+
+        this.name = name;
+        this.tickNanos = Math.max(1L, unit.toNanos(tickDuration));
+        this.buckets = new Bucket[size];
+        this.mask = size - 1;
+        this.executor = executor;
+
+        for (int i = 0; i < size; i++) {
+
+            this.buckets[i] = new Bucket();
+        }
+    }
+
+    synchronized void start() {
+
+        if (this.isRunning) {
+
+            return;
+        }
+
+        this.isRunning = true;
+        this.worker = new Thread(this::work, this.name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    synchronized void stop() {
+
+        if (!this.isRunning) {
+
+            return;
+        }
+
+        this.isRunning = false;
+        this.worker.interrupt();
+
+        if (Thread.currentThread() != this.worker) {
+
+            try {
+
+                this.worker.join();
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        this.worker = null;
+    }
+
+    boolean isRunning() {
+
+        return this.isRunning;
+    }
+
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+
+        return this.add(new Timeout(task, this.now() + unit.toNanos(Math.max(0L, delay)), 0L));
+    }
+
+    // Run the task every period. A run that overruns the period delays the next one rather than overlapping it.
+    Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+
+        return this.add(new Timeout(task, this.now() + unit.toNanos(Math.max(0L, initialDelay)), Math.max(1L, unit.toNanos(period))));
+    }
+
+    /******************************************************************************************************************/
+
+    private Timeout add(Timeout timeout) {
+
+        this.pending.add(timeout);
+
+        return timeout;
+    }
+
+    private long now() {
+
+        return System.nanoTime() - this.startedAt;
+    }
+
+    private void work() {
+
+        while (this.isRunning) {
+
+            long deadline = (this.tick + 1) * this.tickNanos;
+            long sleepNanos = deadline - this.now();
+
+            if (sleepNanos > 0) {
+
+                try {
+
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+
+                } catch (InterruptedException e) {
+
+                    // Woken by stop()
+                    continue;
+                }
+            }
+
+            this.removeCancelled();
+            this.transferPending();
+
+            this.buckets[(int) (this.tick & this.mask)].expire();
+            this.tick++;
+        }
+    }
+
+    private void removeCancelled() {
+
+        Timeout timeout;
+
+        while ((timeout = this.cancelled.poll()) != null) {
+
+            if (timeout.bucket != null) {
+
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    // Place new timeouts in the bucket for their deadline, counting the full turns of the wheel until then. A deadline
+    // that has already passed goes in the current bucket.
+    private void transferPending() {
+
+        Timeout timeout;
+
+        while ((timeout = this.pending.poll()) != null) {
+
+            if (timeout.state.get() == Timeout.CANCELLED) {
+
+                continue;
+            }
+
+            long ticks = Math.max(this.tick, timeout.deadline / this.tickNanos);
+
+            timeout.remainingRounds = (ticks - this.tick) / this.buckets.length;
+            this.buckets[(int) (ticks & this.mask)].add(timeout);
+        }
+    }
+
+    private void fire(Timeout timeout) {
+
+        try {
+
+            this.executor.execute(timeout::run);
+
+        } catch (RuntimeException e) {
+
+            // The executor has been shut down; the timeout is dropped
+            timeout.state.set(Timeout.CANCELLED);
+        }
+    }
+
+    class Timeout {
+
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int CANCELLED = 2;
+        private static final int DONE = 3;
+
+        private final Runnable task;
+        private final long period;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        // Owned by the worker thread
+        private long deadline;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline, long period) {
+
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        // Returns false if the timeout had already fired (for a one-shot timeout) or been cancelled. A periodic task
+        // that is running when it is cancelled finishes that run and is not run again.
+        boolean cancel() {
+
+            while (true) {
+
+                int current = this.state.get();
+
+                if (current == CANCELLED || current == DONE) {
+
+                    return false;
+                }
+
+                if (this.state.compareAndSet(current, CANCELLED)) {
+
+                    if (current == WAITING) {
+
+                        cancelled.add(this);
+                    }
+
+                    return true;
+                }
+            }
+        }
+
+        boolean isCancelled() {
+
+            return this.state.get() == CANCELLED;
+        }
+
+        private void run() {
+
+            if (!this.state.compareAndSet(WAITING, RUNNING)) {
+
+                return;
+            }
+
+            try {
+
+                this.task.run();
+
+            } catch (RuntimeException e) {
+
+                LOGGER.warning(name + ": timer task failed", e);
+            }
+
+            if (this.period == 0L) {
+
+                this.state.compareAndSet(RUNNING, DONE);
+
+            } else if (this.state.compareAndSet(RUNNING, WAITING)) {
+
+                // Fixed rate, but never behind the present
+                this.deadline = Math.max(this.deadline + this.period, now());
+                pending.add(this);
+            }
+        }
+    }
+
+    // A doubly linked list of timeouts, so a cancelled timeout is unlinked in O(1). Only used by the worker thread.
+    private class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+
+            timeout.bucket = this;
+            timeout.previous = this.tail;
+            timeout.next = null;
+
+            if (this.tail == null) {
+
+                this.head = timeout;
+
+            } else {
+
+                this.tail.next = timeout;
+            }
+
+            this.tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+
+            if (timeout.previous == null) {
+
+                this.head = timeout.next;
+
+            } else {
+
+                timeout.previous.next = timeout.next;
+            }
+
+            if (timeout.next == null) {
+
+                this.tail = timeout.previous;
+
+            } else {
+
+                timeout.next.previous = timeout.previous;
+            }
+
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+
+        // Fire the timeouts due on this turn of the wheel, counting down the rest
+        void expire() {
+
+            Timeout timeout = this.head;
+
+            while (timeout != null) {
+
+                Timeout next = timeout.next;
+
+                if (timeout.remainingRounds <= 0) {
+
+                    this.remove(timeout);
+                    fire(timeout);
+
+                } else {
+
+                    timeout.remainingRounds--;
+                }
+
+                timeout = next;
+            }
+        }
+    }
+}
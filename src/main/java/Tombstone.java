@@ -0,0 +1,54 @@
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import java.io.IOException;
+
+// Left in the tombstones map when a member is removed: its name, and the last heartbeat seen from it when it was
+public class Tombstone implements IdentifiedDataSerializable {
+
+    private String name;
+    private long heartbeat;
+
+    public Tombstone() { }
+
+    Tombstone(String name, long heartbeat) {
+
+        this.name = name;
+        this.heartbeat = heartbeat;
+    }
+
+    public String getName() {
+
+        return this.name;
+    }
+
+    public long getHeartbeat() {
+
+        return this.heartbeat;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeLong(heartbeat);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        name = in.readUTF();
+        heartbeat = in.readLong();
+    }
+
+    @Override
+    public int getFactoryId() {
+
+        return StateEntryDataSerializableFactory.ID;
+    }
+
+    @Override
+    public int getId() {
+
+        return StateEntryDataSerializableFactory.TOMBSTONE_TYPE;
+    }
+}
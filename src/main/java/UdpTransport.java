@@ -0,0 +1,113 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.function.Consumer;
+
+// A SWIM transport over UDP, one datagram per message. Addresses are host:port.
+public class UdpTransport implements SwimTransport {
+
+    private static final int MAX_DATAGRAM_SIZE = 65507;
+
+    private final String address;
+    private final DatagramChannel channel;
+    private final Thread receiver;
+    private volatile Consumer<SwimMessage> handler;
+
+    public UdpTransport(String address) throws IOException {
+
+        this.address = address;
+        this.channel = DatagramChannel.open();
+        this.channel.bind(toSocketAddress(address));
+
+        this.receiver = new Thread(this::receive, "swim-receiver-" + address);
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+
+    @Override
+    public String getAddress() {
+
+        return this.address;
+    }
+
+    @Override
+    public void setHandler(Consumer<SwimMessage> handler) {
+
+        this.handler = handler;
+    }
+
+    @Override
+    public void send(String address, SwimMessage message) {
+
+        try {
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            message.writeTo(new DataOutputStream(bytes));
+
+            this.channel.send(ByteBuffer.wrap(bytes.toByteArray()), toSocketAddress(address));
+
+        } catch (IOException e) {
+
+            // Lost messages are handled by the protocol like any other packet loss
+        }
+    }
+
+    @Override
+    public void close() {
+
+        try {
+
+            this.channel.close();
+
+        } catch (IOException e) {
+
+            // Nothing more to release
+        }
+    }
+
+    private void receive() {
+
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+
+        while (this.channel.isOpen()) {
+
+            try {
+
+                buffer.clear();
+                this.channel.receive(buffer);
+                buffer.flip();
+
+                SwimMessage message = SwimMessage.readFrom(new DataInputStream(
+                        new ByteArrayInputStream(buffer.array(), 0, buffer.limit())));
+
+                Consumer<SwimMessage> current = this.handler;
+
+                if (current != null) {
+
+                    current.accept(message);
+                }
+
+            } catch (ClosedChannelException e) {
+
+                return;
+
+            } catch (IOException | RuntimeException e) {
+
+                // Drop malformed datagrams
+            }
+        }
+    }
+
+    private static InetSocketAddress toSocketAddress(String address) {
+
+        int separator = address.lastIndexOf(':');
+
+        return new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+    }
+}
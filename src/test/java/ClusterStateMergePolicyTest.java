@@ -0,0 +1,80 @@
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.spi.impl.merge.MapMergingEntryImpl;
+import com.hazelcast.spi.merge.SplitBrainMergeTypes.MapMergeTypes;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+// Merges the entries two sides of a split brain could hold for one member, in both orders, as either side may be the
+// one merging into the other.
+public class ClusterStateMergePolicyTest {
+
+    private final InternalSerializationService serializationService = new DefaultSerializationServiceBuilder()
+            .addDataSerializableFactory(StateEntryDataSerializableFactory.ID, new StateEntryDataSerializableFactory()).build();
+
+    private final ClusterStateMergePolicy policy = new ClusterStateMergePolicy();
+    private final MemberKey key = new MemberKey(UUID.randomUUID());
+
+    @Test
+    public void higherHeartbeatWins() {
+
+        StateEntry older = new StateEntry(ClusterStatus.OFFLINE, 100L);
+        StateEntry newer = new StateEntry(ClusterStatus.ONLINE, 200L);
+
+        this.assertMerged(newer, older, newer);
+        this.assertMerged(newer, newer, older);
+    }
+
+    @Test
+    public void offlineWinsATie() {
+
+        StateEntry online = new StateEntry(ClusterStatus.ONLINE, 100L);
+        StateEntry offline = new StateEntry(ClusterStatus.OFFLINE, 100L);
+
+        this.assertMerged(offline, online, offline);
+        this.assertMerged(offline, offline, online);
+    }
+
+    @Test
+    public void recoveredMemberWinsOverTheOfflineEntryItRecoveredFrom() {
+
+        // One side took the member OFFLINE at its last heartbeat, and the other side recovered it
+        StateEntry offline = new StateEntry(ClusterStatus.OFFLINE, 100L);
+        StateEntry recovered = new StateEntry(ClusterStatus.ONLINE, 101L);
+
+        this.assertMerged(recovered, offline, recovered);
+        this.assertMerged(recovered, recovered, offline);
+    }
+
+    @Test
+    public void entryOnlyOneSideHasIsKept() {
+
+        StateEntry merging = new StateEntry(ClusterStatus.JOINING, 0L);
+
+        StateEntry merged = this.serializationService.toObject(this.policy.merge(this.entry(merging), null));
+
+        assertEquals(ClusterStatus.JOINING, merged.getStatus());
+    }
+
+    /******************************************************************************************************************/
+
+    private void assertMerged(StateEntry expected, StateEntry merging, StateEntry existing) {
+
+        StateEntry merged = this.serializationService.toObject(this.policy.merge(this.entry(merging), this.entry(existing)));
+
+        assertEquals(expected.getStatus(), merged.getStatus());
+        assertEquals(expected.getHeartbeat(), merged.getHeartbeat());
+    }
+
+    private MapMergeTypes entry(StateEntry state) {
+
+        Data key = this.serializationService.toData(this.key);
+        Data value = this.serializationService.toData(state);
+
+        return new MapMergingEntryImpl(this.serializationService).setKey(key).setValue(value);
+    }
+}
@@ -0,0 +1,220 @@
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Drives a cluster view from the processors the nodes run against a single, standalone Hazelcast member. Events for
+// one key arrive in order, so once the view has seen a later change it would also have seen any heartbeat before it.
+public class ClusterViewTest {
+
+    private static final long WAIT_MILLIS = 10000L;
+
+    private static HazelcastInstance instance;
+
+    private IMap<MemberKey, StateEntry> mapClusterState;
+    private ClusterView clusterView;
+    private final List<StateEntry> updates = new CopyOnWriteArrayList<>();
+    private final List<MemberKey> removals = new CopyOnWriteArrayList<>();
+
+    @BeforeClass
+    public static void startInstance() {
+
+        Config config = new Config();
+
+        config.getSerializationConfig().addDataSerializableFactory(1, new StateEntryDataSerializableFactory());
+
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+
+        instance = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+
+        instance.shutdown();
+    }
+
+    @Before
+    public void setUp() {
+
+        this.mapClusterState = instance.getMap("clusterState");
+        this.mapClusterState.clear();
+
+        this.clusterView = new ClusterView(instance);
+        this.clusterView.start();
+        this.clusterView.addListener(new MembershipView.Listener() {
+
+            @Override
+            public void memberUpdated(MemberKey memberKey, StateEntry previous, StateEntry current) {
+
+                updates.add(current);
+            }
+
+            @Override
+            public void memberRemoved(MemberKey memberKey, StateEntry previous) {
+
+                removals.add(memberKey);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+
+        this.clusterView.stop();
+    }
+
+    @Test
+    public void heartbeatsAreFilteredOutAndStatusChangesAreNot() {
+
+        MemberKey key = new MemberKey(UUID.randomUUID());
+
+        this.mapClusterState.put(key, new StateEntry(ClusterStatus.JOINING, 0L));
+        awaitUntil(() -> this.updates.size() == 1, "the join");
+
+        // The first heartbeat brings the member ONLINE, the next ones only move its heartbeat
+        this.mapClusterState.executeOnKey(key, new HeartbeatEntryProcessor().setHeartbeat(100L));
+        this.mapClusterState.executeOnKey(key, new HeartbeatEntryProcessor().setHeartbeat(200L));
+        this.mapClusterState.executeOnKey(key, new HeartbeatEntryProcessor().setHeartbeat(300L));
+        this.mapClusterState.executeOnKey(key, new StatusTransitionProcessor(ClusterStatus.ONLINE, ClusterStatus.OFFLINE, 1000L));
+
+        awaitUntil(() -> this.clusterView.getMember(key).getStatus() == ClusterStatus.OFFLINE, "the member to go OFFLINE");
+
+        assertEquals(3, this.updates.size());
+        assertEquals(ClusterStatus.ONLINE, this.updates.get(1).getStatus());
+        assertEquals(100L, this.updates.get(1).getHeartbeat());
+
+        // A status change carries the heartbeat it was made at
+        assertEquals(300L, this.clusterView.getMember(key).getHeartbeat());
+        assertEquals(2L, this.clusterView.getMember(key).getVersion());
+    }
+
+    @Test
+    public void removalsAreNotFilteredOut() {
+
+        MemberKey key = new MemberKey(UUID.randomUUID());
+
+        this.mapClusterState.put(key, new StateEntry(ClusterStatus.ONLINE, 1L));
+        this.mapClusterState.executeOnKey(key, new HeartbeatEntryProcessor().setHeartbeat(100L));
+        awaitUntil(() -> this.clusterView.getMember(key) != null, "the member to join");
+
+        // The entry removed was last written by a heartbeat, which would not match the change filter
+        this.mapClusterState.remove(key);
+        awaitUntil(() -> this.clusterView.getMember(key) == null, "the member to be removed");
+
+        assertEquals(1, this.removals.size());
+    }
+
+    @Test
+    public void resyncPicksUpHeartbeats() {
+
+        MemberKey key = new MemberKey(UUID.randomUUID());
+
+        this.mapClusterState.put(key, new StateEntry(ClusterStatus.ONLINE, 1L));
+        this.mapClusterState.executeOnKey(key, new HeartbeatEntryProcessor().setHeartbeat(100L));
+        awaitUntil(() -> this.clusterView.getMember(key) != null, "the member to join");
+
+        this.clusterView.requestResync();
+        this.clusterView.run();
+
+        assertEquals(100L, this.clusterView.getMember(key).getHeartbeat());
+        assertEquals(ClusterView.Consistency.CURRENT, this.clusterView.getConsistency());
+    }
+
+    @Test
+    public void deltaHoldsOnlyTheChangesSinceAVersion() {
+
+        MemberKey changed = new MemberKey(UUID.randomUUID());
+        MemberKey removed = new MemberKey(UUID.randomUUID());
+        MemberKey unchanged = new MemberKey(UUID.randomUUID());
+
+        this.mapClusterState.put(changed, new StateEntry(ClusterStatus.ONLINE, 1L));
+        this.mapClusterState.put(removed, new StateEntry(ClusterStatus.ONLINE, 1L));
+        this.mapClusterState.put(unchanged, new StateEntry(ClusterStatus.ONLINE, 1L));
+        awaitUntil(() -> this.clusterView.getMembers().size() == 3, "the members to join");
+
+        long since = this.clusterView.getVersion();
+
+        this.mapClusterState.executeOnKey(unchanged, new HeartbeatEntryProcessor().setHeartbeat(100L));
+        this.mapClusterState.executeOnKey(changed, new StatusTransitionProcessor(ClusterStatus.ONLINE, ClusterStatus.OFFLINE, 1000L));
+        this.mapClusterState.remove(removed);
+        awaitUntil(() -> this.clusterView.getMember(removed) == null
+                && this.clusterView.getMember(changed).getStatus() == ClusterStatus.OFFLINE, "the changes");
+
+        ClusterView.Delta delta = this.clusterView.getChangesSince(since);
+
+        assertFalse(delta.isFull());
+        assertEquals(this.clusterView.getVersion(), delta.getVersion());
+        assertEquals(Collections.singleton(changed), delta.getMembers().keySet());
+        assertEquals(Collections.singleton(removed), delta.getRemoved().keySet());
+
+        // Nothing has changed since the delta
+        assertTrue(this.clusterView.getChangesSince(delta.getVersion()).getMembers().isEmpty());
+    }
+
+    @Test
+    public void versionTheViewDidNotHandOutGetsEveryMember() {
+
+        MemberKey key = new MemberKey(UUID.randomUUID());
+
+        this.mapClusterState.put(key, new StateEntry(ClusterStatus.ONLINE, 1L));
+        awaitUntil(() -> this.clusterView.getMember(key) != null, "the member to join");
+
+        // A version from before the view started, or from a view that has seen more changes than this one
+        for (long since : new long[] { 0L, this.clusterView.getVersion() + 1 }) {
+
+            ClusterView.Delta delta = this.clusterView.getChangesSince(since);
+
+            assertTrue(delta.isFull());
+            assertEquals(Collections.singleton(key), delta.getMembers().keySet());
+            assertTrue(delta.getRemoved().isEmpty());
+        }
+    }
+
+    /******************************************************************************************************************/
+
+    private static void awaitUntil(BooleanSupplier condition, String description) {
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (!condition.getAsBoolean()) {
+
+            if (System.currentTimeMillis() > deadline) {
+
+                fail("Timed out waiting for " + description);
+            }
+
+            try {
+
+                Thread.sleep(5L);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                fail("Interrupted waiting for " + description);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Feeds the detectors arrival times directly, so no test waits on a clock.
+public class FailureDetectorTest {
+
+    private static final long INTERVAL_MILLIS = 1000L;
+
+    private final MemberKey regular = new MemberKey(UUID.randomUUID());
+    private final MemberKey jittery = new MemberKey(UUID.randomUUID());
+
+    @Test
+    public void unknownMemberIsNotSuspected() {
+
+        FailureDetector detector = phi(200);
+
+        assertEquals(0.0, detector.suspicion(this.regular, 1000000L), 0.0);
+        assertTrue(detector.isAvailable(this.regular, 1000000L));
+    }
+
+    @Test
+    public void phiGrowsWithSilenceUntilTheMemberIsUnavailable() {
+
+        FailureDetector detector = phi(200);
+        long last = heartbeats(detector, this.regular, 0L, INTERVAL_MILLIS, 100);
+
+        // About an interval on, a heartbeat is as likely to have come as not
+        assertTrue(detector.isAvailable(this.regular, last + INTERVAL_MILLIS));
+        assertTrue(detector.suspicion(this.regular, last + INTERVAL_MILLIS) < 1.0);
+
+        double previous = 0.0;
+
+        for (long silence = 0; silence <= 3 * INTERVAL_MILLIS; silence += 100) {
+
+            double suspicion = detector.suspicion(this.regular, last + silence);
+
+            assertTrue(suspicion >= previous);
+            previous = suspicion;
+        }
+
+        assertFalse(detector.isAvailable(this.regular, last + 3 * INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void jitteryMemberIsGivenMoreSlack() {
+
+        FailureDetector detector = phi(200);
+        long regularLast = heartbeats(detector, this.regular, 0L, INTERVAL_MILLIS, 100);
+        long jitteryLast = 0L;
+
+        // The same mean interval, but alternately half and one and a half of it
+        for (int i = 0; i < 100; i++) {
+
+            jitteryLast += i % 2 == 0 ? INTERVAL_MILLIS / 2 : 3 * INTERVAL_MILLIS / 2;
+            detector.heartbeat(this.jittery, jitteryLast);
+        }
+
+        long silence = 2 * INTERVAL_MILLIS;
+
+        assertTrue(detector.suspicion(this.jittery, jitteryLast + silence)
+                < detector.suspicion(this.regular, regularLast + silence));
+        assertTrue(detector.isAvailable(this.jittery, jitteryLast + silence));
+        assertFalse(detector.isAvailable(this.regular, regularLast + silence));
+    }
+
+    @Test
+    public void historyFollowsTheLatestIntervals() {
+
+        FailureDetector detector = phi(10);
+        long last = heartbeats(detector, this.regular, 0L, INTERVAL_MILLIS, 100);
+
+        assertTrue(detector.isAvailable(this.regular, last + INTERVAL_MILLIS));
+
+        // Once the window only holds short intervals, a silence of the old interval is suspicious
+        last = heartbeats(detector, this.regular, last, INTERVAL_MILLIS / 10, 10);
+
+        assertFalse(detector.isAvailable(this.regular, last + INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void lateArrivalsAndRemovedMembersCarryNoHistory() {
+
+        FailureDetector detector = phi(200);
+        long last = heartbeats(detector, this.regular, 0L, INTERVAL_MILLIS, 100);
+        double suspicion = detector.suspicion(this.regular, last + INTERVAL_MILLIS);
+
+        // An arrival from before the last one changes nothing
+        detector.heartbeat(this.regular, last - INTERVAL_MILLIS / 2);
+
+        assertEquals(suspicion, detector.suspicion(this.regular, last + INTERVAL_MILLIS), 0.0);
+
+        detector.remove(this.regular);
+
+        assertEquals(0.0, detector.suspicion(this.regular, last + 10 * INTERVAL_MILLIS), 0.0);
+    }
+
+    @Test
+    public void timeoutDetectorAllowsExactlyTheTimeout() {
+
+        FailureDetector detector = new TimeoutFailureDetector(10 * INTERVAL_MILLIS);
+
+        detector.heartbeat(this.regular, 5000L);
+
+        assertEquals(0.5, detector.suspicion(this.regular, 10000L), 0.0);
+        assertTrue(detector.isAvailable(this.regular, 15000L));
+        assertFalse(detector.isAvailable(this.regular, 15001L));
+
+        detector.heartbeat(this.regular, 15001L);
+
+        assertTrue(detector.isAvailable(this.regular, 15001L));
+
+        detector.remove(this.regular);
+
+        assertTrue(detector.isAvailable(this.regular, 1000000L));
+    }
+
+    /******************************************************************************************************************/
+
+    // A detector with the default threshold, no allowance for pauses and a tight minimum deviation, so the tests see
+    // the distribution of the intervals rather than the safety margins
+    private static FailureDetector phi(int maxSamples) {
+
+        return new PhiAccrualFailureDetector(8.0, maxSamples, 100L, 0L, INTERVAL_MILLIS);
+    }
+
+    // Heartbeats at a fixed interval after the given time, returning the last arrival
+    private static long heartbeats(FailureDetector detector, MemberKey key, long from, long interval, int count) {
+
+        long arrival = from;
+
+        for (int i = 0; i < count; i++) {
+
+            arrival += interval;
+            detector.heartbeat(key, arrival);
+        }
+
+        return arrival;
+    }
+}
@@ -0,0 +1,97 @@
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Queries members by status and attributes through a manager around a single, standalone Hazelcast member, which
+// holds every partition and so answers the indexed queries itself.
+public class FindMembersTest {
+
+    private static MembershipManager manager;
+
+    private static final MemberKey EU_STORAGE = new MemberKey(UUID.randomUUID());
+    private static final MemberKey EU_COMPUTE = new MemberKey(UUID.randomUUID());
+    private static final MemberKey US_STORAGE = new MemberKey(UUID.randomUUID());
+    private static final MemberKey UNPLACED = new MemberKey(UUID.randomUUID());
+
+    @BeforeClass
+    public static void startManager() {
+
+        Config config = MembershipManager.newConfig();
+
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(config);
+        IMap<MemberKey, StateEntry> mapClusterState = instance.getMap("clusterState");
+
+        manager = new MembershipManager(instance);
+
+        mapClusterState.put(EU_STORAGE, new StateEntry(ClusterStatus.ONLINE, 1L,
+                new MemberAttributes("eu-1", "r1", "storage")));
+        mapClusterState.put(EU_COMPUTE, new StateEntry(ClusterStatus.OFFLINE, 1L,
+                new MemberAttributes("eu-1", "r2", "compute")));
+        mapClusterState.put(US_STORAGE, new StateEntry(ClusterStatus.ONLINE, 1L,
+                new MemberAttributes("us-1", "r1", "storage")));
+        mapClusterState.put(UNPLACED, new StateEntry(ClusterStatus.JOINING, 0L));
+    }
+
+    @AfterClass
+    public static void stopManager() {
+
+        manager.shutdown();
+    }
+
+    @Test
+    public void emptyFilterFindsEveryMember() {
+
+        assertEquals(4, manager.findMembers(null, MemberAttributes.NONE).size());
+    }
+
+    @Test
+    public void attributesAndStatusAreAllMatched() {
+
+        assertFound(manager.findMembers(null, new MemberAttributes("eu-1", null, null)), EU_STORAGE, EU_COMPUTE);
+        assertFound(manager.findMembers(null, new MemberAttributes(null, "r1", "storage")), EU_STORAGE, US_STORAGE);
+        assertFound(manager.findMembers(ClusterStatus.ONLINE, new MemberAttributes("eu-1", null, null)), EU_STORAGE);
+        assertFound(manager.findMembers(ClusterStatus.JOINING, MemberAttributes.NONE), UNPLACED);
+    }
+
+    @Test
+    public void noMatchFindsNothing() {
+
+        assertTrue(manager.findMembers(ClusterStatus.OFFLINE, new MemberAttributes(null, null, "storage")).isEmpty());
+        assertTrue(manager.findMembers(null, new MemberAttributes("ap-1", null, null)).isEmpty());
+    }
+
+    @Test
+    public void foundEntriesCarryTheirAttributes() {
+
+        Map<MemberKey, StateEntry> found = manager.findMembers(null, new MemberAttributes(null, "r2", null));
+
+        assertEquals(new MemberAttributes("eu-1", "r2", "compute"), found.get(EU_COMPUTE).getAttributes());
+    }
+
+    /******************************************************************************************************************/
+
+    private static void assertFound(Map<MemberKey, StateEntry> found, MemberKey... expected) {
+
+        assertEquals(new HashSet<>(Arrays.asList(expected)), found.keySet());
+    }
+}
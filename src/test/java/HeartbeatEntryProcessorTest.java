@@ -0,0 +1,79 @@
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// Runs the processor against plain map entries, as the partition owner and its backups would.
+public class HeartbeatEntryProcessorTest {
+
+    private final MemberKey key = new MemberKey(UUID.randomUUID());
+
+    @Test
+    public void firstHeartbeatBringsAJoiningMemberOnline() {
+
+        Map.Entry<MemberKey, StateEntry> entry = this.entry(new StateEntry(ClusterStatus.JOINING, 0L));
+
+        assertEquals(true, new HeartbeatEntryProcessor().setHeartbeat(100L).process(entry));
+        assertEquals(ClusterStatus.ONLINE, entry.getValue().getStatus());
+        assertEquals(100L, entry.getValue().getHeartbeat());
+        assertTrue(entry.getValue().isChanged());
+
+        // Only the first heartbeat finalizes the join
+        assertEquals(false, new HeartbeatEntryProcessor().setHeartbeat(200L).process(entry));
+        assertEquals(ClusterStatus.ONLINE, entry.getValue().getStatus());
+        assertFalse(entry.getValue().isChanged());
+    }
+
+    @Test
+    public void heartbeatsOnlyEverIncrease() {
+
+        Map.Entry<MemberKey, StateEntry> entry = this.entry(new StateEntry(ClusterStatus.ONLINE, 1000L));
+
+        // A clock that stepped back still moves the heartbeat forward by one
+        new HeartbeatEntryProcessor().setHeartbeat(500L).process(entry);
+        assertEquals(1001L, entry.getValue().getHeartbeat());
+
+        new HeartbeatEntryProcessor().setHeartbeat(1001L).process(entry);
+        assertEquals(1002L, entry.getValue().getHeartbeat());
+
+        new HeartbeatEntryProcessor().setHeartbeat(5000L).process(entry);
+        assertEquals(5000L, entry.getValue().getHeartbeat());
+    }
+
+    @Test
+    public void backupAppliesTheSameUpdate() {
+
+        Map.Entry<MemberKey, StateEntry> owner = this.entry(new StateEntry(ClusterStatus.JOINING, 10L));
+        Map.Entry<MemberKey, StateEntry> backup = this.entry(new StateEntry(ClusterStatus.JOINING, 10L));
+
+        HeartbeatEntryProcessor processor = new HeartbeatEntryProcessor().setHeartbeat(5L);
+
+        processor.process(owner);
+        processor.getBackupProcessor().processBackup(backup);
+
+        assertEquals(owner.getValue().getStatus(), backup.getValue().getStatus());
+        assertEquals(owner.getValue().getHeartbeat(), backup.getValue().getHeartbeat());
+    }
+
+    @Test
+    public void removedMemberIsLeftAlone() {
+
+        Map.Entry<MemberKey, StateEntry> entry = this.entry(null);
+
+        assertFalse((Boolean) new HeartbeatEntryProcessor().setHeartbeat(100L).process(entry));
+        assertNull(entry.getValue());
+    }
+
+    /******************************************************************************************************************/
+
+    private Map.Entry<MemberKey, StateEntry> entry(StateEntry state) {
+
+        return new AbstractMap.SimpleEntry<>(this.key, state);
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// A SWIM transport between nodes in the same JVM, for tests. Each transport delivers its inbound messages on its own
+// thread, and the network can cut nodes off to simulate crashes and partitions.
+public class InJvmTransport implements SwimTransport {
+
+    private final Network network;
+    private final String address;
+    private final ExecutorService deliveryService = Executors.newSingleThreadExecutor();
+    private volatile Consumer<SwimMessage> handler;
+
+    private InJvmTransport(Network network, String address) {
+
+        this.network = network;
+        this.address = address;
+    }
+
+    @Override
+    public String getAddress() {
+
+        return this.address;
+    }
+
+    @Override
+    public void setHandler(Consumer<SwimMessage> handler) {
+
+        this.handler = handler;
+    }
+
+    @Override
+    public void send(String address, SwimMessage message) {
+
+        InJvmTransport target = this.network.transports.get(address);
+
+        if (target == null || this.network.isCutOff(this.address) || this.network.isCutOff(address)) {
+
+            return;
+        }
+
+        target.deliver(message);
+    }
+
+    @Override
+    public void close() {
+
+        this.network.transports.remove(this.address, this);
+        this.deliveryService.shutdownNow();
+    }
+
+    private void deliver(SwimMessage message) {
+
+        if (this.deliveryService.isShutdown()) {
+
+            return;
+        }
+
+        this.deliveryService.execute(() -> {
+
+            Consumer<SwimMessage> current = this.handler;
+
+            if (current != null) {
+
+                current.accept(message);
+            }
+        });
+    }
+
+    public static class Network {
+
+        private final ConcurrentMap<String, InJvmTransport> transports = new ConcurrentHashMap<>();
+        private final Set<String> cutOff = ConcurrentHashMap.newKeySet();
+
+        public InJvmTransport newTransport(String address) {
+
+            InJvmTransport transport = new InJvmTransport(this, address);
+
+            if (this.transports.putIfAbsent(address, transport) != null) {
+
+                throw new IllegalArgumentException("Address already in use: " + address);
+            }
+
+            return transport;
+        }
+
+        // Drop every message to and from the address until it is reconnected
+        public void disconnect(String address) {
+
+            this.cutOff.add(address);
+        }
+
+        public void reconnect(String address) {
+
+            this.cutOff.remove(address);
+        }
+
+        private boolean isCutOff(String address) {
+
+            return this.cutOff.contains(address);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+// Stages joins against a single, standalone Hazelcast member. The registry decides who owns a name, so a name already
+// held by another key fails the join without writing a clusterState entry.
+public class JoinPipelineTest {
+
+    private static HazelcastInstance instance;
+
+    private IMap<String, MemberKey> mapRegistry;
+    private IMap<MemberKey, StateEntry> mapClusterState;
+    private JoinPipeline pipeline;
+
+    @BeforeClass
+    public static void startInstance() {
+
+        Config config = MembershipManager.newConfig();
+
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+
+        instance = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+
+        instance.shutdown();
+    }
+
+    @Before
+    public void setUp() {
+
+        this.mapRegistry = instance.getMap("registry");
+        this.mapClusterState = instance.getMap("clusterState");
+        this.mapRegistry.clear();
+        this.mapClusterState.clear();
+
+        this.pipeline = new JoinPipeline(instance);
+    }
+
+    @Test
+    public void stagesEveryMemberJoining() {
+
+        List<Member> members = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+
+            members.add(new Member("member" + i));
+        }
+
+        Map<Member, Result> results = this.pipeline.stage(members);
+
+        assertEquals(members, new ArrayList<>(results.keySet()));
+
+        for (Member member : members) {
+
+            assertEquals(ResultStatus.SUCCESS, results.get(member).getStatus());
+            assertEquals(member.getKey(), this.mapRegistry.get(member.getName()));
+            assertEquals(ClusterStatus.JOINING, this.mapClusterState.get(member.getKey()).getStatus());
+        }
+    }
+
+    @Test
+    public void nameHeldByAnotherMemberIsNotStaged() {
+
+        Member holder = new Member("taken");
+        Member other = new Member("taken");
+        Member free = new Member("free");
+
+        this.mapRegistry.put(holder.getName(), holder.getKey());
+
+        List<Member> members = new ArrayList<>();
+        members.add(other);
+        members.add(free);
+
+        Map<Member, Result> results = this.pipeline.stage(members);
+
+        assertEquals(ResultStatus.FAILED, results.get(other).getStatus());
+        assertEquals(ResultStatus.SUCCESS, results.get(free).getStatus());
+        assertEquals(holder.getKey(), this.mapRegistry.get("taken"));
+        assertFalse(this.mapClusterState.containsKey(other.getKey()));
+    }
+
+    @Test
+    public void memberMayRetryItsOwnReservation() {
+
+        Member member = new Member("retry", UUID.randomUUID());
+
+        this.mapRegistry.put(member.getName(), member.getKey());
+
+        assertEquals(ResultStatus.SUCCESS, this.pipeline.stageAsync(member).join().getStatus());
+        assertEquals(ClusterStatus.JOINING, this.mapClusterState.get(member.getKey()).getStatus());
+    }
+
+    @Test
+    public void asyncStagingFailsOnATakenName() {
+
+        Member holder = new Member("async");
+        Member other = new Member("async");
+
+        assertEquals(ResultStatus.SUCCESS, this.pipeline.stageAsync(holder).join().getStatus());
+        assertEquals(ResultStatus.FAILED, this.pipeline.stageAsync(other).join().getStatus());
+        assertFalse(this.mapClusterState.containsKey(other.getKey()));
+    }
+}
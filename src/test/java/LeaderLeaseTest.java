@@ -0,0 +1,242 @@
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+// Runs several LeaderServices, standing in for the nodes of a cluster, against one standalone Hazelcast member. Their
+// ticks race on purpose: the compare-and-set on the lease must leave exactly one leader per epoch however they land.
+public class LeaderLeaseTest {
+
+    private static final int NODES = 5;
+    private static final long WAIT_MILLIS = 10000L;
+
+    private static HazelcastInstance instance;
+
+    private IMap<MemberKey, StateEntry> mapClusterState;
+    private IMap<String, LeaderLease> mapLeadership;
+    private ClusterView clusterView;
+    private final List<Member> members = new ArrayList<>();
+    private final List<LeaderService> services = new ArrayList<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(NODES);
+
+    @BeforeClass
+    public static void startInstance() {
+
+        Config config = new Config();
+
+        config.getSerializationConfig().addDataSerializableFactory(1, new StateEntryDataSerializableFactory());
+
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+
+        instance = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+
+        instance.shutdown();
+    }
+
+    @Before
+    public void setUp() {
+
+        this.mapClusterState = instance.getMap("clusterState");
+        this.mapLeadership = instance.getMap("leadership");
+        this.mapClusterState.clear();
+        this.mapLeadership.clear();
+
+        for (int i = 0; i < NODES; i++) {
+
+            Member member = new Member("node" + i);
+
+            this.mapClusterState.put(member.getKey(), new StateEntry(ClusterStatus.ONLINE, 1L));
+            this.members.add(member);
+        }
+
+        this.clusterView = new ClusterView(instance);
+        this.clusterView.start();
+
+        awaitUntil(() -> this.clusterView.getMembers().size() == NODES, "the view to load every node");
+
+        for (Member member : this.members) {
+
+            this.services.add(new LeaderService(instance, member, this.clusterView));
+        }
+    }
+
+    @After
+    public void tearDown() {
+
+        for (LeaderService service : this.services) {
+
+            service.stop();
+        }
+
+        this.executor.shutdownNow();
+        this.clusterView.stop();
+    }
+
+    @Test
+    public void racingNodesElectExactlyOneLeader() throws Exception {
+
+        this.tickTogether(this.services);
+
+        LeaderLease lease = this.mapLeadership.get(LeaderService.LEASE_KEY);
+
+        assertEquals(1L, lease.getEpoch());
+        assertEquals(1, this.leaders(this.services));
+
+        // The losers picked up the winner's lease straight from the map
+        for (int i = 0; i < NODES; i++) {
+
+            LeaderService service = this.services.get(i);
+
+            assertEquals(1L, service.getEpoch());
+            assertEquals(this.members.get(i).getKey().equals(lease.getHolder()), service.isLeader());
+        }
+
+        // A healthy leader's lease is never rewritten
+        this.tickTogether(this.services);
+
+        assertEquals(lease, this.mapLeadership.get(LeaderService.LEASE_KEY));
+    }
+
+    @Test
+    public void departedLeaderIsReplacedOnceWithTheNextEpoch() throws Exception {
+
+        this.tickTogether(this.services);
+
+        MemberKey holder = this.mapLeadership.get(LeaderService.LEASE_KEY).getHolder();
+        List<LeaderService> survivors = new ArrayList<>();
+
+        for (int i = 0; i < NODES; i++) {
+
+            if (this.members.get(i).getKey().equals(holder)) {
+
+                this.services.get(i).stop();
+
+            } else {
+
+                survivors.add(this.services.get(i));
+            }
+        }
+
+        // Leaving the view expires the holder's lease at once, so the survivors race for it on their next ticks
+        this.mapClusterState.remove(holder);
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (this.mapLeadership.get(LeaderService.LEASE_KEY).getEpoch() == 1L) {
+
+            if (System.currentTimeMillis() > deadline) {
+
+                fail("Timed out waiting for a new leader");
+            }
+
+            this.tickTogether(survivors);
+        }
+
+        // Every survivor contended for epoch 2, but only one replace could match the epoch 1 lease
+        this.tickTogether(survivors);
+
+        LeaderLease lease = this.mapLeadership.get(LeaderService.LEASE_KEY);
+
+        assertEquals(2L, lease.getEpoch());
+        assertNotEquals(holder, lease.getHolder());
+        assertEquals(1, this.leaders(survivors));
+
+        for (LeaderService service : survivors) {
+
+            assertEquals(2L, service.getEpoch());
+        }
+    }
+
+    /******************************************************************************************************************/
+
+    // Releases a tick on every service at the same moment and waits for all of them
+    private void tickTogether(List<LeaderService> services) throws Exception {
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> ticks = new ArrayList<>();
+
+        for (LeaderService service : services) {
+
+            ticks.add(this.executor.submit(() -> {
+
+                start.await();
+                service.run();
+
+                return null;
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<?> tick : ticks) {
+
+            tick.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private int leaders(List<LeaderService> services) {
+
+        int leaders = 0;
+
+        for (LeaderService service : services) {
+
+            if (service.isLeader()) {
+
+                leaders++;
+            }
+        }
+
+        return leaders;
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String description) {
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (!condition.getAsBoolean()) {
+
+            if (System.currentTimeMillis() > deadline) {
+
+                fail("Timed out waiting for " + description);
+            }
+
+            try {
+
+                Thread.sleep(5L);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                fail("Interrupted waiting for " + description);
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Feeds a dispatcher from a view the test updates itself, and holds its listener inside a batch so the events offered
+// meanwhile pile up as they would for a slow subscriber.
+public class MembershipEventDispatcherTest {
+
+    private static final int CAPACITY = 10;
+    private static final long WAIT_MILLIS = 10000L;
+
+    private final TestView view = new TestView();
+    private final MembershipEventDispatcher dispatcher = new MembershipEventDispatcher(this.view, CAPACITY);
+    private final SlowListener listener = new SlowListener();
+
+    @After
+    public void tearDown() {
+
+        this.listener.release();
+        this.dispatcher.shutdown();
+    }
+
+    @Test
+    public void subscriptionStartsWithEveryMember() {
+
+        MemberKey online = this.view.update(ClusterStatus.ONLINE);
+        MemberKey joining = this.view.update(ClusterStatus.JOINING);
+
+        this.listener.release();
+        this.dispatcher.subscribe(this.listener);
+
+        awaitUntil(() -> this.listener.received.size() == 2, "the baseline");
+
+        assertEquals(ClusterStatus.ONLINE, this.listener.last(online).getNewStatus());
+        assertEquals(ClusterStatus.JOINING, this.listener.last(joining).getNewStatus());
+        assertNull(this.listener.last(online).getOldStatus());
+    }
+
+    @Test
+    public void slowListenerReceivesOneCoalescedEventPerMember() {
+
+        MemberKey first = this.view.update(ClusterStatus.ONLINE);
+
+        this.dispatcher.subscribe(this.listener);
+        this.listener.awaitHeld();
+
+        MemberKey flapping = this.view.update(ClusterStatus.JOINING);
+        this.view.update(flapping, ClusterStatus.ONLINE);
+        this.view.update(flapping, ClusterStatus.OFFLINE);
+        this.view.update(flapping, ClusterStatus.ONLINE);
+        this.view.update(flapping, ClusterStatus.OFFLINE);
+
+        // Going OFFLINE and back cancels out
+        this.view.update(first, ClusterStatus.OFFLINE);
+        this.view.update(first, ClusterStatus.ONLINE);
+
+        this.listener.release();
+
+        awaitUntil(() -> this.listener.received.size() == 2, "the pending event");
+
+        MembershipEvent event = this.listener.last(flapping);
+
+        assertNull(event.getOldStatus());
+        assertEquals(ClusterStatus.OFFLINE, event.getNewStatus());
+        assertEquals(0, this.listener.resyncs.get());
+    }
+
+    @Test
+    public void listenerBeyondCapacityIsResynced() throws Exception {
+
+        this.view.update(ClusterStatus.ONLINE);
+
+        this.dispatcher.subscribe(this.listener);
+        this.listener.awaitHeld();
+
+        List<MemberKey> joined = new ArrayList<>();
+
+        for (int i = 0; i <= CAPACITY; i++) {
+
+            joined.add(this.view.update(ClusterStatus.JOINING));
+        }
+
+        // Changes after the overflow are folded into the state the resync delivers
+        for (MemberKey key : joined) {
+
+            this.view.update(key, ClusterStatus.ONLINE);
+        }
+
+        MemberKey removed = joined.remove(0);
+        this.view.remove(removed);
+
+        this.listener.release();
+
+        awaitUntil(() -> this.listener.resyncs.get() == 1, "the resync");
+        awaitUntil(() -> this.listener.afterResync.size() >= this.view.getMembers().size(), "the new baseline");
+
+        // Pending events may follow the baseline, but none precede it and every member is in it
+        Map<MemberKey, ClusterStatus> baseline = new HashMap<>();
+
+        for (MembershipEvent event : this.listener.afterResync.subList(0, this.view.getMembers().size())) {
+
+            assertNull(event.getOldStatus());
+            baseline.put(event.getKey(), event.getNewStatus());
+        }
+
+        assertEquals(this.view.getMembers().keySet(), baseline.keySet());
+
+        for (MemberKey key : joined) {
+
+            assertEquals(ClusterStatus.ONLINE, baseline.get(key));
+        }
+
+        Thread.sleep(100L);
+
+        assertEquals(1, this.listener.resyncs.get());
+        assertTrue(this.listener.afterResync.size() <= this.view.getMembers().size() + CAPACITY);
+    }
+
+    @Test
+    public void cancelledSubscriptionReceivesNothingMore() throws Exception {
+
+        this.view.update(ClusterStatus.ONLINE);
+
+        MembershipEventDispatcher.Subscription subscription = this.dispatcher.subscribe(this.listener);
+        this.listener.awaitHeld();
+
+        this.view.update(ClusterStatus.ONLINE);
+        subscription.cancel();
+        this.view.update(ClusterStatus.ONLINE);
+
+        this.listener.release();
+        Thread.sleep(100L);
+
+        assertEquals(1, this.listener.received.size());
+    }
+
+    /******************************************************************************************************************/
+
+    private static void awaitUntil(BooleanSupplier condition, String description) {
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (!condition.getAsBoolean()) {
+
+            if (System.currentTimeMillis() > deadline) {
+
+                fail("Timed out waiting for " + description);
+            }
+
+            try {
+
+                Thread.sleep(5L);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                fail("Interrupted waiting for " + description);
+            }
+        }
+    }
+
+    // Holds the first batch until released
+    private static class SlowListener implements MembershipListener {
+
+        private final CountDownLatch held = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final List<MembershipEvent> received = Collections.synchronizedList(new ArrayList<>());
+        private final List<MembershipEvent> afterResync = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger resyncs = new AtomicInteger();
+
+        @Override
+        public void onEvents(List<MembershipEvent> events) {
+
+            this.held.countDown();
+
+            try {
+
+                this.released.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+
+            this.received.addAll(events);
+
+            if (this.resyncs.get() > 0) {
+
+                this.afterResync.addAll(events);
+            }
+        }
+
+        @Override
+        public void onResync() {
+
+            this.resyncs.incrementAndGet();
+        }
+
+        void awaitHeld() {
+
+            try {
+
+                assertTrue(this.held.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                fail("Interrupted waiting for the listener");
+            }
+        }
+
+        void release() {
+
+            this.released.countDown();
+        }
+
+        MembershipEvent last(MemberKey key) {
+
+            synchronized (this.received) {
+
+                MembershipEvent last = null;
+
+                for (MembershipEvent event : this.received) {
+
+                    if (event.getKey().equals(key)) {
+
+                        last = event;
+                    }
+                }
+
+                return last;
+            }
+        }
+    }
+
+    // A view whose changes are made by the test, and reported to the dispatcher as the cluster view reports them
+    private class TestView implements MembershipView {
+
+        private final Map<MemberKey, StateEntry> members = new ConcurrentHashMap<>();
+
+        MemberKey update(ClusterStatus status) {
+
+            return this.update(new MemberKey(UUID.randomUUID()), status);
+        }
+
+        MemberKey update(MemberKey key, ClusterStatus status) {
+
+            StateEntry current = new StateEntry(status, 1L);
+            StateEntry previous = this.members.put(key, current);
+
+            dispatcher.memberUpdated(key, previous, current);
+
+            return key;
+        }
+
+        void remove(MemberKey key) {
+
+            dispatcher.memberRemoved(key, this.members.remove(key));
+        }
+
+        @Override
+        public void addListener(Listener listener) { }
+
+        @Override
+        public void removeListener(Listener listener) { }
+
+        @Override
+        public Map<MemberKey, StateEntry> getMembers() {
+
+            return this.members;
+        }
+
+        @Override
+        public StateEntry getMember(MemberKey key) {
+
+            return this.members.get(key);
+        }
+
+        @Override
+        public String getName(MemberKey key) {
+
+            return key.toString();
+        }
+
+        @Override
+        public LeaderLease getLeader() {
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// Journals live in target/journals and start at 4 KB (see the surefire configuration), so a few hundred records are
+// enough to compact them.
+public class MembershipJournalTest {
+
+    private static final File DIRECTORY = new File(System.getProperty("membership.journal.dir", "."));
+    private static final long INITIAL_CAPACITY = Long.getLong("membership.journal.size.bytes", 1 << 20);
+
+    // Header, type, key, status, value and name length, and for a member the lengths of its zone, rack and role
+    private static final int RECORD_BYTES = 8 + 1 + 16 + 1 + 8 + 2;
+    private static final int MEMBER_RECORD_BYTES = RECORD_BYTES + 3 * 2;
+
+    private final Member member = new Member("journal-test", UUID.randomUUID());
+    private final MemberKey first = new MemberKey(UUID.randomUUID());
+    private final MemberKey second = new MemberKey(UUID.randomUUID());
+
+    @Before
+    public void setUp() {
+
+        DIRECTORY.mkdirs();
+        this.file().delete();
+    }
+
+    @After
+    public void tearDown() {
+
+        this.file().delete();
+        new File(this.file().getPath() + ".compacting").delete();
+    }
+
+    @Test
+    public void replaysIdentityMembersAndLeader() throws IOException {
+
+        MembershipJournal journal = MembershipJournal.open(this.member.getName());
+
+        journal.recordIdentity(this.member, 3L);
+        journal.memberUpdated(this.first, null, new StateEntry(ClusterStatus.ONLINE, 10L));
+        journal.memberUpdated(this.second, null, new StateEntry(ClusterStatus.JOINING, 0L));
+        journal.memberUpdated(this.first, null, new StateEntry(ClusterStatus.OFFLINE, 12L));
+        journal.memberRemoved(this.second, null);
+        journal.leaderChanged(new LeaderLease(this.first, 7L));
+        journal.close();
+
+        MembershipJournal replayed = MembershipJournal.open(this.member.getName());
+
+        assertEquals(this.member.getKey(), replayed.getMember().getKey());
+        assertEquals(this.member.getName(), replayed.getMember().getName());
+        assertEquals(3L, replayed.getIncarnation());
+        assertEquals(1, replayed.getMembers().size());
+        assertEquals(ClusterStatus.OFFLINE, replayed.getMembers().get(this.first).getStatus());
+        assertEquals(12L, replayed.getMembers().get(this.first).getHeartbeat());
+        assertEquals(new LeaderLease(this.first, 7L), replayed.getLeader());
+
+        replayed.close();
+    }
+
+    @Test
+    public void tornTailEndsTheLogAndIsOverwritten() throws IOException {
+
+        MembershipJournal journal = MembershipJournal.open(this.member.getName());
+
+        journal.recordIdentity(this.member, 0L);
+        journal.memberUpdated(this.first, null, new StateEntry(ClusterStatus.ONLINE, 10L));
+        journal.memberUpdated(this.second, null, new StateEntry(ClusterStatus.ONLINE, 20L));
+        journal.close();
+
+        // Corrupt the last record's heartbeat, as a crash part way through writing it would
+        int identityBytes = RECORD_BYTES + this.member.getName().length();
+        long lastRecordAt = identityBytes + MEMBER_RECORD_BYTES;
+
+        try (RandomAccessFile raw = new RandomAccessFile(this.file(), "rw")) {
+
+            raw.seek(lastRecordAt + MEMBER_RECORD_BYTES - 3 * 2 - 2 - 4);
+            raw.writeByte(raw.readByte() ^ 0xff);
+        }
+
+        MembershipJournal replayed = MembershipJournal.open(this.member.getName());
+
+        assertEquals(this.member.getKey(), replayed.getMember().getKey());
+        assertEquals(1, replayed.getMembers().size());
+        assertTrue(replayed.getMembers().containsKey(this.first));
+        assertFalse(replayed.getMembers().containsKey(this.second));
+
+        // The next append goes where the torn record was, and the log is whole again
+        replayed.memberUpdated(this.second, null, new StateEntry(ClusterStatus.OFFLINE, 21L));
+        replayed.close();
+
+        MembershipJournal repaired = MembershipJournal.open(this.member.getName());
+
+        assertEquals(2, repaired.getMembers().size());
+        assertEquals(ClusterStatus.OFFLINE, repaired.getMembers().get(this.second).getStatus());
+
+        repaired.close();
+    }
+
+    @Test
+    public void compactionKeepsTheLatestStateInTheSameSpace() throws IOException {
+
+        MembershipJournal journal = MembershipJournal.open(this.member.getName());
+
+        journal.recordIdentity(this.member, 1L);
+        journal.leaderChanged(new LeaderLease(this.second, 2L));
+
+        // Many times the file's size in status changes for two members
+        int changes = (int) (4 * INITIAL_CAPACITY / MEMBER_RECORD_BYTES);
+        long firstHeartbeat = 0L;
+        long secondHeartbeat = 0L;
+
+        for (int i = 0; i < changes; i++) {
+
+            ClusterStatus status = i % 2 == 0 ? ClusterStatus.OFFLINE : ClusterStatus.ONLINE;
+
+            if (i % 4 < 2) {
+
+                journal.memberUpdated(this.first, null, new StateEntry(status, i));
+                firstHeartbeat = i;
+
+            } else {
+
+                journal.memberUpdated(this.second, null, new StateEntry(status, i));
+                secondHeartbeat = i;
+            }
+        }
+
+        journal.close();
+
+        assertEquals(INITIAL_CAPACITY, this.file().length());
+        assertFalse(new File(this.file().getPath() + ".compacting").exists());
+
+        MembershipJournal replayed = MembershipJournal.open(this.member.getName());
+
+        assertEquals(this.member.getKey(), replayed.getMember().getKey());
+        assertEquals(1L, replayed.getIncarnation());
+        assertEquals(new LeaderLease(this.second, 2L), replayed.getLeader());
+        assertEquals(2, replayed.getMembers().size());
+
+        assertEquals(firstHeartbeat, replayed.getMembers().get(this.first).getHeartbeat());
+        assertEquals(secondHeartbeat, replayed.getMembers().get(this.second).getHeartbeat());
+
+        replayed.close();
+    }
+
+    @Test
+    public void compactionGrowsTheFileForALargeView() throws IOException {
+
+        MembershipJournal journal = MembershipJournal.open(this.member.getName());
+
+        journal.recordIdentity(this.member, 0L);
+
+        int count = (int) (2 * INITIAL_CAPACITY / MEMBER_RECORD_BYTES);
+
+        for (int i = 0; i < count; i++) {
+
+            journal.memberUpdated(new MemberKey(new UUID(0L, i)), null, new StateEntry(ClusterStatus.ONLINE, i));
+        }
+
+        journal.close();
+
+        assertTrue(this.file().length() > INITIAL_CAPACITY);
+
+        MembershipJournal replayed = MembershipJournal.open(this.member.getName());
+
+        assertEquals(count, replayed.getMembers().size());
+        assertEquals(count - 1L, replayed.getMembers().get(new MemberKey(new UUID(0L, count - 1))).getHeartbeat());
+        assertNull(replayed.getLeader());
+
+        replayed.close();
+    }
+
+    @Test
+    public void attributesAreJournaled() throws IOException {
+
+        MemberAttributes attributes = new MemberAttributes("eu-west-1a", null, "storage");
+        MembershipJournal journal = MembershipJournal.open(this.member.getName());
+
+        journal.recordIdentity(this.member, 0L);
+        journal.memberUpdated(this.first, null, new StateEntry(ClusterStatus.JOINING, 0L, attributes));
+        journal.memberUpdated(this.second, null, new StateEntry(ClusterStatus.ONLINE, 5L));
+        journal.close();
+
+        MembershipJournal replayed = MembershipJournal.open(this.member.getName());
+
+        assertEquals(attributes, replayed.getMembers().get(this.first).getAttributes());
+        assertEquals(MemberAttributes.NONE, replayed.getMembers().get(this.second).getAttributes());
+
+        replayed.close();
+    }
+
+    @Test
+    public void compactionMakesRoomForLongAttributes() throws IOException {
+
+        MembershipJournal journal = MembershipJournal.open(this.member.getName());
+
+        journal.recordIdentity(this.member, 0L);
+
+        // Each record is well over the size of a record with short attributes
+        String role = new String(new char[1000]).replace('\0', 'r');
+        MemberAttributes attributes = new MemberAttributes("zone", "rack", role);
+        int count = (int) (2 * INITIAL_CAPACITY / (MEMBER_RECORD_BYTES + role.length()));
+
+        for (int i = 0; i < count; i++) {
+
+            journal.memberUpdated(new MemberKey(0L, i), null, new StateEntry(ClusterStatus.ONLINE, i, attributes));
+        }
+
+        journal.close();
+
+        assertTrue(this.file().length() > INITIAL_CAPACITY);
+
+        MembershipJournal replayed = MembershipJournal.open(this.member.getName());
+
+        assertEquals(count, replayed.getMembers().size());
+        assertEquals(attributes, replayed.getMembers().get(new MemberKey(0L, count - 1)).getAttributes());
+
+        replayed.close();
+    }
+
+    /******************************************************************************************************************/
+
+    private File file() {
+
+        return new File(DIRECTORY, this.member.getName() + ".journal");
+    }
+}
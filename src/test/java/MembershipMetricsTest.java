@@ -0,0 +1,66 @@
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// The metrics are one instance per JVM, so the MBean checks compare counts before and after rather than absolutes.
+public class MembershipMetricsTest {
+
+    @Test
+    public void percentilesAreTheUpperBoundOfTheirBucket() {
+
+        Histogram histogram = new Histogram();
+
+        for (int i = 0; i < 99; i++) {
+
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        // 100 us falls in the bucket below 128 us, and the slowest value is only reported as the maximum
+        assertEquals(100L, histogram.getCount());
+        assertEquals(127L, histogram.getPercentileMicros(50));
+        assertEquals(127L, histogram.getPercentileMicros(99));
+        assertEquals(10000L, histogram.getPercentileMicros(100));
+        assertEquals(10000L, histogram.getMaxMicros());
+        assertEquals((99 * 100 + 10000) / 100, histogram.getMeanMicros());
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+
+        Histogram histogram = new Histogram();
+
+        assertEquals(0L, histogram.getPercentileMicros(99));
+        assertEquals(0L, histogram.getMeanMicros());
+    }
+
+    @Test
+    public void recordedWorkIsPublishedOverJmx() throws Exception {
+
+        MembershipMetrics.register();
+        MembershipMetrics.register();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MembershipMetrics.OBJECT_NAME);
+
+        long heartbeats = (Long) server.getAttribute(name, "heartbeat.count");
+        long registryOperations = (Long) server.getAttribute(name, "map.registry.count");
+        long transitions = (Long) server.getAttribute(name, "leaderTick.transitions");
+
+        MembershipMetrics.getMetrics().recordHeartbeat(System.nanoTime());
+        MembershipMetrics.getMetrics().recordMapOperation("registry", System.nanoTime());
+        MembershipMetrics.getMetrics().recordLeaderTick(System.nanoTime(), 3);
+
+        assertEquals(heartbeats + 1, server.getAttribute(name, "heartbeat.count"));
+        assertEquals(registryOperations + 1, server.getAttribute(name, "map.registry.count"));
+        assertEquals(transitions + 3, server.getAttribute(name, "leaderTick.transitions"));
+        assertTrue(MembershipMetrics.getMetrics().snapshot().containsKey("map.metadata.p99.us"));
+    }
+}
@@ -0,0 +1,96 @@
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Hosts members on a standalone Hazelcast member of their own, which the manager shuts down with itself.
+public class MultiMembershipManagerTest {
+
+    private MultiMembershipManager manager;
+    private IMap<String, MemberKey> mapRegistry;
+    private IMap<MemberKey, StateEntry> mapClusterState;
+    private IMap<MemberKey, Tombstone> mapTombstones;
+    private final List<Member> members = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+
+        Config config = MembershipManager.newConfig();
+
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(config);
+
+        this.manager = new MultiMembershipManager(instance);
+        this.mapRegistry = instance.getMap("registry");
+        this.mapClusterState = instance.getMap("clusterState");
+        this.mapTombstones = instance.getMap("tombstones");
+
+        for (int i = 0; i < 3; i++) {
+
+            this.members.add(new Member("shard" + i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+
+        this.manager.shutdown();
+    }
+
+    @Test
+    public void joinedMembersAreHosted() {
+
+        Map<Member, Result> results = this.manager.join(this.members);
+
+        for (Member member : this.members) {
+
+            assertEquals(ResultStatus.SUCCESS, results.get(member).getStatus());
+        }
+
+        assertEquals(3, this.manager.getMembers().size());
+    }
+
+    @Test
+    public void leavingMemberIsRemovedAndTombstoned() {
+
+        this.manager.join(this.members);
+
+        Member leaving = this.members.get(1);
+
+        // The second heartbeat changes nothing but the heartbeat, so only the map has it
+        this.mapClusterState.executeOnKey(leaving.getKey(), new HeartbeatEntryProcessor().setHeartbeat(12345L));
+        this.mapClusterState.executeOnKey(leaving.getKey(), new HeartbeatEntryProcessor().setHeartbeat(23456L));
+
+        assertEquals(ResultStatus.SUCCESS, this.manager.leave(leaving.getName()).getStatus());
+
+        assertFalse(this.mapRegistry.containsKey(leaving.getName()));
+        assertFalse(this.mapClusterState.containsKey(leaving.getKey()));
+        assertEquals(leaving.getName(), this.mapTombstones.get(leaving.getKey()).getName());
+        assertTrue(this.mapTombstones.get(leaving.getKey()).getHeartbeat() >= 23456L);
+        assertEquals(2, this.manager.getMembers().size());
+    }
+
+    @Test
+    public void memberHostedElsewhereCannotLeave() {
+
+        assertEquals(ResultStatus.FAILED, this.manager.leave("nobody").getStatus());
+    }
+}
@@ -0,0 +1,196 @@
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Plays the monitors of a cluster by writing their reports straight into the suspicions map, and checks what the
+// leader makes of them. The leader's own detector never times out, so its own reports stay out of the way.
+public class RingDetectionTest {
+
+    private static final int MEMBERS = 5;
+    private static final long HEARTBEAT = 1000L;
+    private static final long WAIT_MILLIS = 10000L;
+    private static final long SETTLE_MILLIS = 500L;
+
+    private static HazelcastInstance instance;
+
+    private IMap<MemberKey, StateEntry> mapClusterState;
+    private IMap<String, Suspicion> mapSuspicions;
+    private ClusterView clusterView;
+    private LeaderService leaderService;
+    private final List<MemberKey> members = new ArrayList<>();
+
+    @BeforeClass
+    public static void startInstance() {
+
+        System.setProperty("membership.failureDetector", "timeout");
+        System.setProperty("membership.node.timeout.ms", String.valueOf(Long.MAX_VALUE / 2));
+
+        Config config = MembershipManager.newConfig();
+
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+
+        instance = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+
+        instance.shutdown();
+
+        System.clearProperty("membership.failureDetector");
+        System.clearProperty("membership.node.timeout.ms");
+    }
+
+    @Before
+    public void setUp() {
+
+        this.mapClusterState = instance.getMap("clusterState");
+        this.mapSuspicions = instance.getMap("suspicions");
+        this.mapClusterState.clear();
+        this.mapSuspicions.clear();
+
+        Member leader = new Member("leader");
+
+        this.mapClusterState.put(leader.getKey(), new StateEntry(ClusterStatus.ONLINE, HEARTBEAT));
+
+        for (int i = 1; i < MEMBERS; i++) {
+
+            Member member = new Member("member" + i);
+
+            this.mapClusterState.put(member.getKey(), new StateEntry(ClusterStatus.ONLINE, HEARTBEAT));
+            this.members.add(member.getKey());
+        }
+
+        this.clusterView = new ClusterView(instance);
+        this.clusterView.start();
+
+        awaitUntil(() -> this.clusterView.getMembers().size() == MEMBERS, "the view to load every member");
+
+        this.leaderService = new LeaderService(instance, leader, this.clusterView);
+        this.leaderService.run();
+
+        assertTrue(this.leaderService.isLeader());
+    }
+
+    @After
+    public void tearDown() {
+
+        this.leaderService.stop();
+        this.clusterView.stop();
+    }
+
+    @Test
+    public void quorumOfMonitorsTakesAMemberOffline() throws Exception {
+
+        MemberKey suspect = this.members.get(0);
+
+        // Of the three monitors a member has in a cluster of five, two make a quorum
+        this.report(suspect, this.members.get(1), ClusterStatus.OFFLINE, HEARTBEAT);
+        Thread.sleep(SETTLE_MILLIS);
+
+        assertEquals(ClusterStatus.ONLINE, this.mapClusterState.get(suspect).getStatus());
+
+        this.report(suspect, this.members.get(2), ClusterStatus.OFFLINE, HEARTBEAT);
+
+        awaitUntil(() -> this.mapClusterState.get(suspect).getStatus() == ClusterStatus.OFFLINE, "the member to go OFFLINE");
+        awaitUntil(() -> this.mapSuspicions.isEmpty(), "the reports acted on to be removed");
+    }
+
+    @Test
+    public void memberThatHeartbeatedSinceTheReportsStaysOnline() {
+
+        MemberKey suspect = this.members.get(0);
+
+        this.mapClusterState.executeOnKey(suspect, new HeartbeatEntryProcessor().setHeartbeat(2 * HEARTBEAT));
+
+        this.report(suspect, this.members.get(1), ClusterStatus.OFFLINE, HEARTBEAT);
+        this.report(suspect, this.members.get(2), ClusterStatus.OFFLINE, HEARTBEAT);
+
+        awaitUntil(() -> this.mapSuspicions.isEmpty(), "the reports acted on to be removed");
+
+        assertEquals(ClusterStatus.ONLINE, this.mapClusterState.get(suspect).getStatus());
+    }
+
+    @Test
+    public void quorumOfMonitorsBringsAMemberBackOnline() {
+
+        MemberKey suspect = this.members.get(0);
+
+        this.mapClusterState.executeOnKey(suspect,
+                new StatusTransitionProcessor(ClusterStatus.ONLINE, ClusterStatus.OFFLINE, HEARTBEAT + 1));
+        this.mapClusterState.executeOnKey(suspect, new HeartbeatEntryProcessor().setHeartbeat(2 * HEARTBEAT));
+
+        awaitUntil(() -> this.clusterView.getMember(suspect).getStatus() == ClusterStatus.OFFLINE,
+                "the view to see the member OFFLINE");
+
+        // An OFFLINE member is not one of the live members, so its own monitors are still three
+        this.report(suspect, this.members.get(1), ClusterStatus.ONLINE, 2 * HEARTBEAT);
+        this.report(suspect, this.members.get(2), ClusterStatus.ONLINE, 2 * HEARTBEAT);
+
+        awaitUntil(() -> this.mapClusterState.get(suspect).getStatus() == ClusterStatus.ONLINE, "the member to come back");
+    }
+
+    @Test
+    public void reportsThatNoLongerApplyAreDropped() {
+
+        MemberKey suspect = this.members.get(0);
+
+        this.report(suspect, this.members.get(1), ClusterStatus.ONLINE, HEARTBEAT);
+
+        awaitUntil(() -> this.mapSuspicions.isEmpty(), "the report to be dropped");
+
+        assertEquals(ClusterStatus.ONLINE, this.mapClusterState.get(suspect).getStatus());
+    }
+
+    /******************************************************************************************************************/
+
+    private void report(MemberKey suspect, MemberKey monitor, ClusterStatus status, long heartbeat) {
+
+        Suspicion suspicion = new Suspicion(suspect, monitor, status, heartbeat);
+
+        this.mapSuspicions.put(suspicion.getKey(), suspicion);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String description) {
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (!condition.getAsBoolean()) {
+
+            if (System.currentTimeMillis() > deadline) {
+
+                fail("Timed out waiting for " + description);
+            }
+
+            try {
+
+                Thread.sleep(5L);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                fail("Interrupted waiting for " + description);
+            }
+        }
+    }
+}
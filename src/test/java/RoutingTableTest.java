@@ -0,0 +1,258 @@
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Drives routing tables from a cluster view over a single, standalone Hazelcast member. The ring must depend only on
+// which members are ONLINE, however it was built, so tables that followed different histories are compared key by key.
+public class RoutingTableTest {
+
+    private static final int KEYS = 10000;
+    private static final long WAIT_MILLIS = 10000L;
+
+    private static HazelcastInstance instance;
+
+    private IMap<MemberKey, StateEntry> mapClusterState;
+    private ClusterView clusterView;
+    private final List<RoutingTable> tables = new ArrayList<>();
+
+    @BeforeClass
+    public static void startInstance() {
+
+        Config config = MembershipManager.newConfig();
+
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+
+        instance = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+
+        instance.shutdown();
+    }
+
+    @Before
+    public void setUp() {
+
+        this.mapClusterState = instance.getMap("clusterState");
+        this.mapClusterState.clear();
+
+        this.clusterView = new ClusterView(instance);
+        this.clusterView.start();
+    }
+
+    @After
+    public void tearDown() {
+
+        for (RoutingTable table : this.tables) {
+
+            table.stop();
+        }
+
+        this.clusterView.stop();
+    }
+
+    @Test
+    public void emptyTableRoutesToNull() {
+
+        RoutingTable table = this.startTable();
+
+        assertNull(table.route("key"));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void routesOnlyToOnlineMembers() {
+
+        RoutingTable table = this.startTable();
+        Set<MemberKey> online = new HashSet<>();
+
+        for (int i = 0; i < 5; i++) {
+
+            online.add(this.put(ClusterStatus.ONLINE));
+        }
+
+        this.put(ClusterStatus.JOINING);
+        this.put(ClusterStatus.OFFLINE);
+
+        awaitSize(table, online.size());
+
+        Set<MemberKey> routed = new HashSet<>();
+
+        for (long hash = 0; hash < KEYS; hash++) {
+
+            MemberKey owner = table.route(hash);
+
+            assertNotNull(owner);
+            assertTrue(online.contains(owner));
+            routed.add(owner);
+        }
+
+        // With 128 points each, every member owns some of ten thousand keys
+        assertEquals(online, routed);
+    }
+
+    @Test
+    public void addedMembersGiveTheSameRingWhateverTheOrder() {
+
+        // One table sees the members arrive one at a time, the other loads them all at once when it starts
+        RoutingTable incremental = this.startTable();
+
+        for (int i = 0; i < 20; i++) {
+
+            this.put(ClusterStatus.ONLINE);
+        }
+
+        awaitSize(incremental, 20);
+
+        RoutingTable bulk = this.startTable();
+
+        assertEquals(20, bulk.size());
+        assertSameRoutes(incremental, bulk);
+    }
+
+    @Test
+    public void removedMembersLeaveTheSameRingAsNeverAdding() {
+
+        RoutingTable table = this.startTable();
+        List<MemberKey> members = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+
+            members.add(this.put(ClusterStatus.ONLINE));
+        }
+
+        awaitSize(table, 10);
+
+        // One member goes OFFLINE and another is removed outright
+        this.mapClusterState.put(members.get(3), new StateEntry(ClusterStatus.OFFLINE, 2L));
+        this.mapClusterState.remove(members.get(7));
+
+        awaitSize(table, 8);
+
+        assertSameRoutes(table, this.startTable());
+    }
+
+    @Test
+    public void removingAMemberOnlyMovesItsOwnKeys() {
+
+        RoutingTable table = this.startTable();
+        List<MemberKey> members = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+
+            members.add(this.put(ClusterStatus.ONLINE));
+        }
+
+        awaitSize(table, 10);
+
+        MemberKey[] before = new MemberKey[KEYS];
+
+        for (int i = 0; i < KEYS; i++) {
+
+            before[i] = table.route((long) i);
+        }
+
+        MemberKey removed = members.get(5);
+        this.mapClusterState.put(removed, new StateEntry(ClusterStatus.OFFLINE, 2L));
+
+        awaitSize(table, 9);
+
+        for (int i = 0; i < KEYS; i++) {
+
+            MemberKey after = table.route((long) i);
+
+            if (before[i].equals(removed)) {
+
+                assertNotEquals(removed, after);
+
+            } else {
+
+                assertEquals(before[i], after);
+            }
+        }
+    }
+
+    /******************************************************************************************************************/
+
+    private RoutingTable startTable() {
+
+        RoutingTable table = new RoutingTable(this.clusterView);
+
+        table.start();
+        this.tables.add(table);
+
+        return table;
+    }
+
+    private MemberKey put(ClusterStatus status) {
+
+        MemberKey key = new MemberKey(UUID.randomUUID());
+
+        this.mapClusterState.put(key, new StateEntry(status, 1L));
+
+        return key;
+    }
+
+    private static void assertSameRoutes(RoutingTable expected, RoutingTable actual) {
+
+        for (long hash = 0; hash < KEYS; hash++) {
+
+            assertEquals(expected.route(hash), actual.route(hash));
+        }
+    }
+
+    private static void awaitSize(RoutingTable table, int size) {
+
+        awaitUntil(() -> table.size() == size, "the ring to hold " + size + " members");
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String description) {
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (!condition.getAsBoolean()) {
+
+            if (System.currentTimeMillis() > deadline) {
+
+                fail("Timed out waiting for " + description);
+            }
+
+            try {
+
+                Thread.sleep(5L);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                fail("Interrupted waiting for " + description);
+            }
+        }
+    }
+}
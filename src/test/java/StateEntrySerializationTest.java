@@ -0,0 +1,130 @@
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.BufferObjectDataInput;
+import com.hazelcast.nio.BufferObjectDataOutput;
+import com.hazelcast.nio.serialization.Data;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Round-trips entries and keys through Hazelcast's serialization service, as every map operation does, and reads the
+// older entry format that members not yet upgraded still write.
+public class StateEntrySerializationTest {
+
+    private final InternalSerializationService serializationService = new DefaultSerializationServiceBuilder()
+            .addDataSerializableFactory(StateEntryDataSerializableFactory.ID, new StateEntryDataSerializableFactory()).build();
+
+    @Test
+    public void entryRoundTrips() {
+
+        StateEntry entry = new StateEntry(ClusterStatus.ONLINE, System.currentTimeMillis());
+        entry.updateStatus(ClusterStatus.OFFLINE);
+
+        StateEntry copy = this.roundTrip(entry);
+
+        assertEquals(ClusterStatus.OFFLINE, copy.getStatus());
+        assertEquals(entry.getHeartbeat(), copy.getHeartbeat());
+        assertEquals(1L, copy.getVersion());
+        assertTrue(copy.isChanged());
+        assertEquals(MemberAttributes.NONE, copy.getAttributes());
+    }
+
+    @Test
+    public void heartbeatOnlyWriteRoundTripsAsUnchanged() {
+
+        StateEntry entry = new StateEntry(ClusterStatus.ONLINE, 0L).updateHeartbeat(Long.MAX_VALUE);
+
+        StateEntry copy = this.roundTrip(entry);
+
+        assertEquals(Long.MAX_VALUE, copy.getHeartbeat());
+        assertFalse(copy.isChanged());
+    }
+
+    @Test
+    public void attributesRoundTrip() {
+
+        MemberAttributes attributes = new MemberAttributes("eu-west-1a", "r12", "storage");
+
+        StateEntry copy = this.roundTrip(new StateEntry(ClusterStatus.JOINING, 42L, attributes));
+
+        assertEquals(ClusterStatus.JOINING, copy.getStatus());
+        assertEquals(42L, copy.getHeartbeat());
+        assertEquals(attributes, copy.getAttributes());
+    }
+
+    @Test
+    public void keyRoundTrips() {
+
+        MemberKey key = new MemberKey(UUID.randomUUID());
+
+        assertEquals(key, this.serializationService.toObject(this.serializationService.toData(key)));
+    }
+
+    @Test
+    public void readsThePlainFormat() throws IOException {
+
+        BufferObjectDataOutput out = this.serializationService.createObjectDataOutput();
+
+        out.writeByte(2);
+        out.writeByte(ClusterStatus.ONLINE.ordinal());
+        StateEntry.writeVarLong(out, 1533341430137L);
+        StateEntry.writeVarLong(out, 3L);
+        out.writeByte(0);
+
+        StateEntry entry = this.read(out);
+
+        assertEquals(ClusterStatus.ONLINE, entry.getStatus());
+        assertEquals(1533341430137L, entry.getHeartbeat());
+        assertEquals(3L, entry.getVersion());
+        assertFalse(entry.isChanged());
+        assertEquals(MemberAttributes.NONE, entry.getAttributes());
+    }
+
+    @Test
+    public void rejectsUnknownFormats() {
+
+        BufferObjectDataOutput out = this.serializationService.createObjectDataOutput();
+
+        try {
+
+            out.writeByte(StateEntry.FORMAT_VERSION + 1);
+            this.read(out);
+            fail("Read an unknown format");
+
+        } catch (IOException e) {
+
+            assertTrue(e.getMessage().contains("format version"));
+        }
+    }
+
+    @Test
+    public void toStringShowsTheFields() {
+
+        assertEquals("StateEntry(status: ONLINE, heartbeat: 5, version: 0)", new StateEntry(ClusterStatus.ONLINE, 5L).toString());
+    }
+
+    /******************************************************************************************************************/
+
+    private StateEntry roundTrip(StateEntry entry) {
+
+        Data data = this.serializationService.toData(entry);
+
+        return this.serializationService.toObject(data);
+    }
+
+    private StateEntry read(BufferObjectDataOutput out) throws IOException {
+
+        BufferObjectDataInput in = this.serializationService.createObjectDataInput(out.toByteArray());
+        StateEntry entry = new StateEntry();
+
+        entry.readData(in);
+
+        return entry;
+    }
+}
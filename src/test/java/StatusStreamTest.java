@@ -0,0 +1,159 @@
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Streams the members of a single, standalone Hazelcast member through a manager. Pages hold 10 members (see the
+// surefire configuration), so the 25 members here take three pages.
+public class StatusStreamTest {
+
+    private static final int MEMBERS = 25;
+    private static final Pattern UUID_FIELD = Pattern.compile("\"uuid\":\"([^\"]+)\"");
+    private static final Pattern HEARTBEAT_FIELD = Pattern.compile("\"heartbeat\":(\\d+)");
+
+    private static MembershipManager manager;
+    private static final List<MemberKey> KEYS = new ArrayList<>();
+
+    @BeforeClass
+    public static void startManager() {
+
+        Config config = MembershipManager.newConfig();
+
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+
+        HazelcastInstance instance = Hazelcast.newHazelcastInstance(config);
+        IMap<MemberKey, StateEntry> mapClusterState = instance.getMap("clusterState");
+
+        manager = new MembershipManager(instance);
+
+        // Heartbeats run opposite to the UUIDs, and every third member is OFFLINE
+        for (int i = 0; i < MEMBERS; i++) {
+
+            MemberKey key = new MemberKey(0L, i);
+            ClusterStatus status = i % 3 == 0 ? ClusterStatus.OFFLINE : ClusterStatus.ONLINE;
+
+            mapClusterState.put(key, new StateEntry(status, 1000L - i, new MemberAttributes("zone", null, null)));
+            KEYS.add(key);
+        }
+    }
+
+    @AfterClass
+    public static void stopManager() {
+
+        manager.shutdown();
+    }
+
+    @Test
+    public void everyMemberIsWrittenInUuidOrderAcrossPages() {
+
+        List<String> lines = stream(MemberComparator.Order.UUID, Integer.MAX_VALUE, null);
+
+        assertEquals(MEMBERS, lines.size());
+
+        for (int i = 0; i < MEMBERS; i++) {
+
+            assertEquals(KEYS.get(i).toString(), field(UUID_FIELD, lines.get(i)));
+        }
+    }
+
+    @Test
+    public void heartbeatOrderIsOldestFirst() {
+
+        List<String> lines = stream(MemberComparator.Order.HEARTBEAT, Integer.MAX_VALUE, null);
+
+        assertEquals(MEMBERS, lines.size());
+
+        for (int i = 1; i < MEMBERS; i++) {
+
+            assertTrue(Long.parseLong(field(HEARTBEAT_FIELD, lines.get(i - 1)))
+                    < Long.parseLong(field(HEARTBEAT_FIELD, lines.get(i))));
+        }
+    }
+
+    @Test
+    public void limitStopsPartWayThroughAPage() {
+
+        List<String> lines = stream(MemberComparator.Order.UUID, 15, null);
+
+        assertEquals(15, lines.size());
+        assertEquals(KEYS.get(14).toString(), field(UUID_FIELD, lines.get(14)));
+    }
+
+    @Test
+    public void filterIsAppliedBeforePaging() {
+
+        List<String> lines = stream(MemberComparator.Order.STATUS, Integer.MAX_VALUE, ClusterStatus.OFFLINE);
+
+        assertEquals((MEMBERS + 2) / 3, lines.size());
+
+        for (String line : lines) {
+
+            assertTrue(line.contains("\"status\":\"OFFLINE\""));
+        }
+    }
+
+    @Test
+    public void textHasAHeaderAndARowPerMember() {
+
+        StringWriter out = new StringWriter();
+        Result result = manager.status(out, StatusStream.Format.TEXT, MemberComparator.Order.UUID, 3, null,
+                MemberAttributes.NONE);
+
+        String[] lines = out.toString().split("\n");
+
+        assertEquals("3 members written.", result.getMessage());
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("UUID"));
+        assertTrue(lines[1].startsWith(KEYS.get(0).toString()));
+        assertTrue(lines[1].contains("zone"));
+    }
+
+    /******************************************************************************************************************/
+
+    private static List<String> stream(MemberComparator.Order order, int limit, ClusterStatus status) {
+
+        StringWriter out = new StringWriter();
+        Result result = manager.status(out, StatusStream.Format.JSONL, order, limit, status, MemberAttributes.NONE);
+
+        assertEquals(ResultStatus.SUCCESS, result.getStatus());
+
+        List<String> lines = new ArrayList<>();
+
+        for (String line : out.toString().split("\n")) {
+
+            if (!line.isEmpty()) {
+
+                lines.add(line);
+            }
+        }
+
+        return lines;
+    }
+
+    private static String field(Pattern pattern, String line) {
+
+        Matcher matcher = pattern.matcher(line);
+
+        assertTrue(line, matcher.find());
+
+        return matcher.group(1);
+    }
+}
@@ -0,0 +1,74 @@
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+// The leader picks candidates from heartbeats it has seen, so the processor checks them again against the entry on the
+// partition owner. A heartbeat that landed in between must win.
+public class StatusTransitionProcessorTest {
+
+    private final MemberKey key = new MemberKey(UUID.randomUUID());
+
+    @Test
+    public void staleMemberGoesOffline() {
+
+        Map.Entry<MemberKey, StateEntry> entry = this.entry(ClusterStatus.ONLINE, 99L);
+
+        assertEquals(true, offline(100L).process(entry));
+        assertEquals(ClusterStatus.OFFLINE, entry.getValue().getStatus());
+    }
+
+    @Test
+    public void heartbeatAtTheCutoffKeepsAMemberOnline() {
+
+        Map.Entry<MemberKey, StateEntry> entry = this.entry(ClusterStatus.ONLINE, 100L);
+
+        assertEquals(false, offline(100L).process(entry));
+        assertEquals(ClusterStatus.ONLINE, entry.getValue().getStatus());
+    }
+
+    @Test
+    public void recoveredMemberComesBackOnlyWithANewHeartbeat() {
+
+        Map.Entry<MemberKey, StateEntry> entry = this.entry(ClusterStatus.OFFLINE, 99L);
+
+        assertEquals(false, online(100L).process(entry));
+        assertEquals(ClusterStatus.OFFLINE, entry.getValue().getStatus());
+
+        entry.getValue().updateHeartbeat(100L);
+
+        assertEquals(true, online(100L).process(entry));
+        assertEquals(ClusterStatus.ONLINE, entry.getValue().getStatus());
+    }
+
+    @Test
+    public void memberNoLongerInTheExpectedStatusIsLeftAlone() {
+
+        Map.Entry<MemberKey, StateEntry> joining = this.entry(ClusterStatus.JOINING, 0L);
+        Map.Entry<MemberKey, StateEntry> removed = new AbstractMap.SimpleEntry<>(this.key, null);
+
+        assertEquals(false, offline(100L).process(joining));
+        assertEquals(ClusterStatus.JOINING, joining.getValue().getStatus());
+        assertEquals(false, offline(100L).process(removed));
+    }
+
+    /******************************************************************************************************************/
+
+    private Map.Entry<MemberKey, StateEntry> entry(ClusterStatus status, long heartbeat) {
+
+        return new AbstractMap.SimpleEntry<>(this.key, new StateEntry(status, heartbeat));
+    }
+
+    private static StatusTransitionProcessor offline(long cutoff) {
+
+        return new StatusTransitionProcessor(ClusterStatus.ONLINE, ClusterStatus.OFFLINE, cutoff);
+    }
+
+    private static StatusTransitionProcessor online(long cutoff) {
+
+        return new StatusTransitionProcessor(ClusterStatus.OFFLINE, ClusterStatus.ONLINE, cutoff);
+    }
+}
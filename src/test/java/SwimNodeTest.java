@@ -0,0 +1,195 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Drives SwimNodes over an InJvmTransport network. The protocol period, ack timeout and suspicion timeout are
+// shortened by the surefire configuration, so each test runs in a few seconds.
+public class SwimNodeTest {
+
+    private static final long WAIT_MILLIS = 10000L;
+
+    private final InJvmTransport.Network network = new InJvmTransport.Network();
+    private final List<SwimNode> nodes = new ArrayList<>();
+    private final List<InJvmTransport> transports = new ArrayList<>();
+    private TimerWheel timers;
+
+    @Before
+    public void setUp() {
+
+        this.timers = new TimerWheel("swim-test-timers", Runnable::run);
+        this.timers.start();
+    }
+
+    @After
+    public void tearDown() {
+
+        for (SwimNode node : this.nodes) {
+
+            node.stop();
+        }
+
+        for (InJvmTransport transport : this.transports) {
+
+            transport.close();
+        }
+
+        this.timers.stop();
+    }
+
+    @Test
+    public void joinsThroughSeed() {
+
+        SwimNode a = this.startNode("a");
+        SwimNode b = this.startNode("b", "a");
+        SwimNode c = this.startNode("c", "a");
+
+        // c only told a about itself, so b learns of c from updates piggybacked on the protocol messages
+        for (SwimNode node : this.nodes) {
+
+            awaitStatus(node, a, SwimStatus.ALIVE);
+            awaitStatus(node, b, SwimStatus.ALIVE);
+            awaitStatus(node, c, SwimStatus.ALIVE);
+        }
+    }
+
+    @Test
+    public void crashedMemberIsSuspectedThenDeclaredDead() {
+
+        SwimNode a = this.startNode("a");
+        SwimNode b = this.startNode("b", "a");
+        SwimNode c = this.startNode("c", "a");
+
+        awaitStatus(a, c, SwimStatus.ALIVE);
+        awaitStatus(b, c, SwimStatus.ALIVE);
+
+        this.network.disconnect("c");
+
+        awaitUntil(() -> status(a, c) == SwimStatus.SUSPECT || status(b, c) == SwimStatus.SUSPECT,
+                "c to be suspected");
+
+        awaitStatus(a, c, SwimStatus.DEAD);
+        awaitStatus(b, c, SwimStatus.DEAD);
+
+        // Nobody spoke for c, so the suspicion stood at its original incarnation
+        assertEquals(0L, member(a, c).getIncarnation());
+    }
+
+    @Test
+    public void suspectRefutesByRaisingItsIncarnation() {
+
+        SwimNode a = this.startNode("a");
+        SwimNode b = this.startNode("b", "a");
+        SwimNode c = this.startNode("c", "a");
+
+        awaitStatus(a, c, SwimStatus.ALIVE);
+        awaitStatus(b, c, SwimStatus.ALIVE);
+
+        // Cut c off only until the first suspicion, well inside the suspicion timeout
+        this.network.disconnect("c");
+
+        awaitUntil(() -> status(a, c) == SwimStatus.SUSPECT || status(b, c) == SwimStatus.SUSPECT,
+                "c to be suspected");
+
+        this.network.reconnect("c");
+
+        awaitUntil(() -> c.getIncarnation() >= 1L, "c to refute the suspicion");
+
+        // The refutation supersedes the suspicion everywhere, so c is never declared dead
+        awaitUntil(() -> isAliveAtIncarnation(a, c, 1L) && isAliveAtIncarnation(b, c, 1L), "a and b to accept the refutation");
+
+        assertEquals(SwimStatus.ALIVE, status(c, c));
+    }
+
+    @Test
+    public void staleUpdateDoesNotOverrideNewerIncarnation() {
+
+        SwimMember alive = new SwimMember("uuid", "name", "c", SwimStatus.ALIVE, 1L);
+        SwimMember suspect = new SwimMember("uuid", "name", "c", SwimStatus.SUSPECT, 0L);
+        SwimMember dead = new SwimMember("uuid", "name", "c", SwimStatus.DEAD, 1L);
+
+        assertTrue(alive.supersedes(suspect));
+        assertTrue(!suspect.supersedes(alive));
+        assertTrue(dead.supersedes(alive));
+    }
+
+    /******************************************************************************************************************/
+
+    private SwimNode startNode(String address, String... seeds) {
+
+        InJvmTransport transport = this.network.newTransport(address);
+        SwimNode node = new SwimNode("uuid-" + address, "node-" + address, transport, this.timers);
+
+        this.transports.add(transport);
+        this.nodes.add(node);
+
+        List<String> seedAddresses = new ArrayList<>();
+        Collections.addAll(seedAddresses, seeds);
+        node.start(seedAddresses);
+
+        return node;
+    }
+
+    private static SwimMember member(SwimNode observer, SwimNode subject) {
+
+        for (SwimMember member : observer.getMembers()) {
+
+            if (member.getUUID().equals(subject.getUUID())) {
+
+                return member;
+            }
+        }
+
+        return null;
+    }
+
+    private static SwimStatus status(SwimNode observer, SwimNode subject) {
+
+        SwimMember member = member(observer, subject);
+
+        return member == null ? null : member.getStatus();
+    }
+
+    private static boolean isAliveAtIncarnation(SwimNode observer, SwimNode subject, long incarnation) {
+
+        SwimMember member = member(observer, subject);
+
+        return member != null && member.getStatus() == SwimStatus.ALIVE && member.getIncarnation() >= incarnation;
+    }
+
+    private static void awaitStatus(SwimNode observer, SwimNode subject, SwimStatus status) {
+
+        awaitUntil(() -> status(observer, subject) == status, observer.getUUID() + " to see " + subject.getUUID() + " " + status);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String description) {
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (!condition.getAsBoolean()) {
+
+            if (System.currentTimeMillis() > deadline) {
+
+                fail("Timed out waiting for " + description);
+            }
+
+            try {
+
+                Thread.sleep(5L);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                fail("Interrupted waiting for " + description);
+            }
+        }
+    }
+}
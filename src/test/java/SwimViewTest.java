@@ -0,0 +1,213 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Follows one SwimNode of a small InJvmTransport network through a SwimView, with the routing table, an event
+// dispatcher and a recording listener on top, as the swim engine wires them. Protocol timings come from the surefire configuration.
+public class SwimViewTest {
+
+    private static final long WAIT_MILLIS = 10000L;
+
+    private final InJvmTransport.Network network = new InJvmTransport.Network();
+    private final List<SwimNode> nodes = new ArrayList<>();
+    private final List<InJvmTransport> transports = new ArrayList<>();
+    private final SwimView view = new SwimView();
+    private final RoutingTable routingTable = new RoutingTable(this.view);
+    private final MembershipEventDispatcher dispatcher = new MembershipEventDispatcher(this.view);
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final List<MembershipEvent> delivered = Collections.synchronizedList(new ArrayList<>());
+    private TimerWheel timers;
+
+    @Before
+    public void setUp() {
+
+        this.timers = new TimerWheel("swim-view-test-timers", Runnable::run);
+        this.timers.start();
+
+        this.routingTable.start();
+        this.view.addListener(this.dispatcher);
+        this.dispatcher.subscribe(this.delivered::addAll);
+        this.view.addListener(new MembershipView.Listener() {
+
+            @Override
+            public void memberUpdated(MemberKey key, StateEntry previous, StateEntry current) {
+
+                if (previous == null || previous.getStatus() != current.getStatus()) {
+
+                    events.add(view.getName(key) + " " + current.getStatus());
+                }
+            }
+
+            @Override
+            public void memberRemoved(MemberKey key, StateEntry previous) {
+
+                events.add(view.getName(key) + " removed");
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+
+        this.view.detach();
+        this.routingTable.stop();
+        this.dispatcher.shutdown();
+
+        for (SwimNode node : this.nodes) {
+
+            node.stop();
+        }
+
+        for (InJvmTransport transport : this.transports) {
+
+            transport.close();
+        }
+
+        this.timers.stop();
+    }
+
+    @Test
+    public void membersFollowTheirSwimStatus() {
+
+        SwimNode a = this.startNode("a", true);
+        SwimNode b = this.startNode("b", false, "a");
+        SwimNode c = this.startNode("c", false, "a");
+
+        awaitStatus(a, ClusterStatus.ONLINE);
+        awaitStatus(b, ClusterStatus.ONLINE);
+        awaitStatus(c, ClusterStatus.ONLINE);
+
+        assertEquals("node-c", this.view.getName(key(c)));
+        assertNull(this.view.getLeader());
+        awaitUntil(() -> this.routingTable.size() == 3, "the ring to hold every member");
+
+        // A crashed member is declared DEAD, which the view has OFFLINE and the ring no longer routes to
+        this.network.disconnect("c");
+
+        awaitStatus(c, ClusterStatus.OFFLINE);
+        awaitUntil(() -> this.routingTable.size() == 2, "the ring to drop c");
+        awaitUntil(() -> this.events.contains("node-c OFFLINE"), "the listener to see c go OFFLINE");
+
+        assertTrue(this.events.contains("node-c ONLINE"));
+
+        // Subscribers are told of the same transitions
+        awaitUntil(() -> this.isDelivered(key(c), ClusterStatus.OFFLINE), "the subscriber to see c go OFFLINE");
+    }
+
+    @Test
+    public void leftMembersAreRemovedAndDetachingEmptiesTheView() {
+
+        SwimNode a = this.startNode("a", true);
+        SwimNode b = this.startNode("b", false, "a");
+
+        awaitStatus(b, ClusterStatus.ONLINE);
+
+        // b tells the members it knows of that it is leaving, so it must have heard of a first
+        awaitUntil(() -> b.getMembers().size() == 2, "b to learn of a");
+
+        b.leave();
+
+        // The member leaves the view before its listeners are told, so wait for the event
+        awaitUntil(() -> this.events.contains("node-b removed"), "b to be removed");
+        assertNull(this.view.getMember(key(b)));
+
+        this.view.detach();
+
+        assertTrue(this.view.getMembers().isEmpty());
+        assertEquals(0, this.routingTable.size());
+        assertTrue(this.events.contains("node-a removed"));
+
+        // Attaching again starts from everything the node knows
+        this.view.attach(a);
+
+        assertEquals(ClusterStatus.ONLINE, this.view.getMember(key(a)).getStatus());
+    }
+
+    /******************************************************************************************************************/
+
+    private SwimNode startNode(String address, boolean isFollowed, String... seeds) {
+
+        InJvmTransport transport = this.network.newTransport(address);
+        SwimNode node = new SwimNode(UUID.randomUUID().toString(), "node-" + address, transport, this.timers);
+
+        this.transports.add(transport);
+        this.nodes.add(node);
+
+        if (isFollowed) {
+
+            this.view.attach(node);
+        }
+
+        List<String> seedAddresses = new ArrayList<>();
+        Collections.addAll(seedAddresses, seeds);
+        node.start(seedAddresses);
+
+        return node;
+    }
+
+    private boolean isDelivered(MemberKey key, ClusterStatus status) {
+
+        synchronized (this.delivered) {
+
+            for (MembershipEvent event : this.delivered) {
+
+                if (event.getKey().equals(key) && event.getNewStatus() == status) {
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static MemberKey key(SwimNode node) {
+
+        return MemberKey.fromString(node.getUUID());
+    }
+
+    private void awaitStatus(SwimNode node, ClusterStatus status) {
+
+        awaitUntil(() -> {
+
+            StateEntry state = this.view.getMember(key(node));
+
+            return state != null && state.getStatus() == status;
+
+        }, node.getUUID() + " to be " + status);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String description) {
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (!condition.getAsBoolean()) {
+
+            if (System.currentTimeMillis() > deadline) {
+
+                fail("Timed out waiting for " + description);
+            }
+
+            try {
+
+                Thread.sleep(5L);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                fail("Interrupted waiting for " + description);
+            }
+        }
+    }
+}
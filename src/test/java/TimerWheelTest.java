@@ -0,0 +1,205 @@
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Runs a small wheel (8 buckets of 25 ms, so one turn is 200 ms) to check the rounds and bucket arithmetic, the cancel
+// races and the restart behaviour in well under a second per test.
+public class TimerWheelTest {
+
+    private static final long TICK_MILLIS = 25L;
+    private static final int WHEEL_SIZE = 8;
+    private static final long TURN_MILLIS = TICK_MILLIS * WHEEL_SIZE;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final TimerWheel timers = new TimerWheel("timer-wheel-test", TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE,
+            this.executor);
+
+    @After
+    public void tearDown() {
+
+        this.timers.stop();
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void firesExactlyOneTurnOutOnTime() throws InterruptedException {
+
+        this.timers.start();
+
+        assertFiresOnTime(TURN_MILLIS);
+    }
+
+    @Test
+    public void firesSeveralTurnsOutOnTime() throws InterruptedException {
+
+        this.timers.start();
+
+        assertFiresOnTime(2 * TURN_MILLIS + TICK_MILLIS);
+    }
+
+    @Test
+    public void cancelWhilePendingPreventsRun() throws InterruptedException {
+
+        AtomicInteger runs = new AtomicInteger();
+
+        // Not started, so the timeout is still in the pending queue when it is cancelled
+        TimerWheel.Timeout timeout = this.timers.schedule(runs::incrementAndGet, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+
+        this.timers.start();
+        Thread.sleep(4 * TICK_MILLIS);
+
+        assertEquals(0, runs.get());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void cancelWhileInBucketPreventsRun() throws InterruptedException {
+
+        AtomicInteger runs = new AtomicInteger();
+
+        this.timers.start();
+
+        TimerWheel.Timeout timeout = this.timers.schedule(runs::incrementAndGet, TURN_MILLIS, TimeUnit.MILLISECONDS);
+
+        // Long enough for the worker to have moved it into its bucket
+        Thread.sleep(4 * TICK_MILLIS);
+
+        assertTrue(timeout.cancel());
+
+        Thread.sleep(TURN_MILLIS + 4 * TICK_MILLIS);
+
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void cancelAfterFiringReturnsFalse() throws InterruptedException {
+
+        CountDownLatch ran = new CountDownLatch(1);
+
+        this.timers.start();
+
+        TimerWheel.Timeout timeout = this.timers.schedule(ran::countDown, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+
+        // The state moves to DONE just after the task returns
+        Thread.sleep(TICK_MILLIS);
+
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isCancelled());
+    }
+
+    @Test
+    public void cancelWhileRunningFinishesRunAndStopsPeriod() throws InterruptedException {
+
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        this.timers.start();
+
+        TimerWheel.Timeout timeout = this.timers.scheduleAtFixedRate(() -> {
+
+            runs.incrementAndGet();
+            started.countDown();
+
+            try {
+
+                release.await();
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+
+        }, 0L, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertTrue(timeout.cancel());
+
+        release.countDown();
+        Thread.sleep(6 * TICK_MILLIS);
+
+        assertEquals(1, runs.get());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void periodicTaskRunsRepeatedly() throws InterruptedException {
+
+        CountDownLatch runs = new CountDownLatch(5);
+
+        this.timers.start();
+
+        long start = System.nanoTime();
+        TimerWheel.Timeout timeout = this.timers.scheduleAtFixedRate(runs::countDown, TICK_MILLIS, 2 * TICK_MILLIS,
+                TimeUnit.MILLISECONDS);
+
+        assertTrue(runs.await(2, TimeUnit.SECONDS));
+
+        // Five runs at a fixed rate take at least the initial delay and four periods
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 9 * TICK_MILLIS);
+        assertTrue(timeout.cancel());
+    }
+
+    @Test
+    public void restartFiresTimeoutsThatFellDueWhileStopped() throws InterruptedException {
+
+        CountDownLatch ran = new CountDownLatch(1);
+
+        this.timers.start();
+
+        TimerWheel.Timeout timeout = this.timers.schedule(ran::countDown, 2 * TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        this.timers.stop();
+        assertFalse(this.timers.isRunning());
+
+        // Well past the deadline, and more than a full turn, while nothing advances the wheel
+        Thread.sleep(TURN_MILLIS + 4 * TICK_MILLIS);
+
+        assertEquals(1, ran.getCount());
+        assertFalse(timeout.isCancelled());
+
+        this.timers.start();
+
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+    }
+
+    /******************************************************************************************************************/
+
+    // Never before the deadline, and within a couple of ticks after it rather than a turn late
+    private void assertFiresOnTime(long delayMillis) throws InterruptedException {
+
+        CountDownLatch ran = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+
+        long start = System.nanoTime();
+
+        this.timers.schedule(() -> {
+
+            firedAt.set(System.nanoTime());
+            ran.countDown();
+
+        }, delayMillis, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(delayMillis + 2 * TURN_MILLIS, TimeUnit.MILLISECONDS));
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(firedAt.get() - start);
+
+        assertTrue("fired early, after " + elapsedMillis + " ms", elapsedMillis >= delayMillis);
+        assertTrue("fired a turn late, after " + elapsedMillis + " ms", elapsedMillis < delayMillis + TURN_MILLIS - TICK_MILLIS);
+    }
+}